@@ -0,0 +1,149 @@
+package gui;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import io.JourneyReader;
+import io.SyntheticFeed;
+import search.StopSearcher;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Measures how long the map takes to draw by drawing scripted sequences of frames into an image.
+ * <p>
+ * Each sequence pans, zooms or changes the selection between frames the way the window does, and
+ * reports the distribution of frame times, the bytes allocated and the stops drawn per frame.
+ * <p>
+ * Usage: {@code RenderBenchmark [stopCount]}. With no stop count the bundled Darwin feed in the
+ * working directory is used, otherwise a synthetic feed of that size is generated.
+ *
+ * @author Matthew Corfiatis
+ */
+public class RenderBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int FRAMES = 600;
+
+    private final StopSearcher searcher;
+    private final List<Stop> stops;
+    private final Dimension size = new Dimension(WIDTH, HEIGHT);
+    private final Graphics2D graphics = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB).createGraphics();
+    private final Location centre;
+    private final double fitScale; // Shows the whole network
+    private final Set<Stop> selectedStops = new HashSet<>();
+    private final Set<Trip> selectedTrips = new HashSet<>();
+
+    private RenderBenchmark(StopGraph graph) {
+        stops = graph.getStops();
+        searcher = new StopSearcher(graph);
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Stop stop : stops) {
+            minX = Math.min(minX, stop.getLocation().x);
+            minY = Math.min(minY, stop.getLocation().y);
+            maxX = Math.max(maxX, stop.getLocation().x);
+            maxY = Math.max(maxY, stop.getLocation().y);
+        }
+
+        centre = new Location((minX + maxX) / 2, (minY + maxY) / 2);
+        fitScale = Math.min(WIDTH / Math.max(maxX - minX, 1e-9), HEIGHT / Math.max(maxY - minY, 1e-9));
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        File directory = new File(".");
+
+        if (args.length > 0) {
+            directory = Files.createTempDirectory("journey-feed").toFile();
+            SyntheticFeed.generate(directory, Integer.parseInt(args[0]), 42);
+        }
+
+        StopGraph graph = JourneyReader.readGraph(new File(directory, "stops.txt"), new File(directory, "trips.txt"), false);
+        List<Stop> stops = graph.getStops();
+        RenderBenchmark benchmark = new RenderBenchmark(graph);
+
+        System.out.printf("%d stops, %dx%d drawing area, %d frames per sequence%n", stops.size(), WIDTH, HEIGHT, FRAMES);
+        System.out.printf("%-22s %10s %10s %10s %14s %12s%n", "Sequence", "p50 ms", "p99 ms", "max ms", "KB/frame", "stops/frame");
+
+        // The first run only warms up so the timed runs measure compiled code.
+        benchmark.runAll(FRAMES / 5, false);
+        benchmark.runAll(FRAMES, true);
+    }
+
+    private void runAll(int frames, boolean print) {
+        for (double zoom : new double[]{1, 8, 64}) {
+            run(String.format("pan x%.0f", zoom), frames, print, zoom, frame -> {
+                // Drag a few pixels each frame, in a circle so the view keeps leaving the cached image.
+                double angle = frame * 2 * Math.PI / 200;
+                double radius = 0.75 * WIDTH / (fitScale * zoom);
+                return new Location(centre.x + radius * Math.cos(angle), centre.y + radius * Math.sin(angle));
+            }, false);
+        }
+
+        run("zoom", frames, print, 1, null, true);
+
+        Random random = new Random(42);
+        for (double zoom : new double[]{1, 8}) {
+            run(String.format("select x%.0f", zoom), frames, print, zoom, frame -> {
+                Stop stop = stops.get(random.nextInt(stops.size()));
+                selectedStops.clear();
+                selectedStops.add(stop);
+                selectedTrips.clear();
+                selectedTrips.addAll(stop.getTrips());
+                return centre;
+            }, false);
+        }
+        selectedStops.clear();
+        selectedTrips.clear();
+    }
+
+    /**
+     * Changes the view before a frame is drawn.
+     */
+    private interface Step {
+        Location origin(int frame);
+    }
+
+    /**
+     * Draws a sequence of frames and prints their statistics.
+     *
+     * @param name   Name of the sequence.
+     * @param frames Number of frames to draw.
+     * @param print  Whether to print the statistics.
+     * @param zoom   Scale relative to showing the whole network.
+     * @param step   Moves the view before each frame, or null to keep it centred.
+     * @param zooms  Whether to zoom in and out between frames.
+     */
+    private void run(String name, int frames, boolean print, double zoom, Step step, boolean zooms) {
+        FrameStats stats = new FrameStats(frames);
+        MapRenderer renderer = new MapRenderer(stats);
+
+        // Draw the first frame before timing, as the window does when the network is loaded.
+        double scale = fitScale * zoom;
+        renderer.render(graphics, size, searcher, centre, scale, selectedStops, selectedTrips);
+        stats.clear();
+
+        for (int frame = 0; frame < frames; ++frame) {
+            Location origin = step == null ? centre : step.origin(frame);
+            if (zooms) // Zoom in for 20 frames then back out, like scrolling the mouse wheel.
+                scale = fitScale * Math.pow(1.1, frame % 40 < 20 ? frame % 20 : 20 - frame % 20);
+
+            renderer.render(graphics, size, searcher, origin, scale, selectedStops, selectedTrips);
+        }
+
+        if (print) {
+            System.out.printf("%-22s %10.3f %10.3f %10.3f %14.1f %12.0f%n", name,
+                    stats.getFrameTime(50), stats.getFrameTime(99), stats.getFrameTime(100),
+                    stats.getMeanAllocation() / 1024, stats.getMeanStopsDrawn());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * JMH state holding a synthetic feed on disk, generated once per trial for each network size.
+ *
+ * @author Matthew Corfiatis
+ */
+@State(Scope.Benchmark)
+public class FeedState {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int stopCount;
+
+    public File directory;
+    public File stopsFile;
+    public File tripsFile;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("journey-feed").toFile();
+        stopsFile = new File(directory, "stops.txt");
+        tripsFile = new File(directory, "trips.txt");
+        SyntheticFeed.generate(directory, stopCount, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        directory.delete();
+    }
+}
@@ -0,0 +1,46 @@
+package io;
+
+import common.StopGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for loading a network from the TSV files and from a snapshot.
+ *
+ * @author Matthew Corfiatis
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmarks {
+    @State(Scope.Benchmark)
+    public static class SnapshotState {
+        public File snapshotFile;
+
+        @Setup(Level.Trial)
+        public void write(FeedState feed) throws IOException {
+            snapshotFile = new File(feed.directory, "network.snapshot");
+            NetworkSnapshot.write(JourneyReader.readGraph(feed.stopsFile, feed.tripsFile, false), snapshotFile);
+        }
+    }
+
+    @Benchmark
+    public StopGraph loadSequential(FeedState feed) throws IOException {
+        return JourneyReader.readGraph(feed.stopsFile, feed.tripsFile, false);
+    }
+
+    @Benchmark
+    public StopGraph loadParallel(FeedState feed) throws IOException {
+        return JourneyReader.readGraph(feed.stopsFile, feed.tripsFile, true);
+    }
+
+    @Benchmark
+    public StopGraph loadSnapshot(SnapshotState snapshot) throws IOException {
+        return NetworkSnapshot.read(snapshot.snapshotFile);
+    }
+}
@@ -0,0 +1,46 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compares the sequential TSV loader against the parallel chunked loader.
+ * <p>
+ * Usage: {@code ParallelLoadBenchmark [stopCount] [iterations]}, defaults to 1,000,000 stops and 5 iterations.
+ *
+ * @author Matthew Corfiatis
+ */
+public class ParallelLoadBenchmark {
+    public static void main(String[] args) throws IOException {
+        int stopCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File directory = Files.createTempDirectory("journey-feed").toFile();
+        File stopsFile = new File(directory, "stops.txt");
+        File tripsFile = new File(directory, "trips.txt");
+
+        System.out.printf("Generating feed with %d stops in %s%n", stopCount, directory);
+        SyntheticFeed.generate(directory, stopCount, 42);
+        System.out.printf("Parallelism: %d%n", Runtime.getRuntime().availableProcessors());
+
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            int sequentialStops = JourneyReader.getConnectedStops(stopsFile, tripsFile, false).size();
+            long sequentialTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int parallelStops = JourneyReader.getConnectedStops(stopsFile, tripsFile, true).size();
+            long parallelTime = System.nanoTime() - start;
+
+            if (sequentialStops != parallelStops)
+                throw new IllegalStateException("Parallel stop count does not match sequential stop count.");
+
+            System.out.printf("Iteration %d: sequential %d ms, parallel %d ms%n", i + 1, sequentialTime / 1_000_000, parallelTime / 1_000_000);
+        }
+
+        stopsFile.delete();
+        tripsFile.delete();
+        directory.delete();
+    }
+}
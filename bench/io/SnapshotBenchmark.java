@@ -0,0 +1,51 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compares loading a network from the TSV files against loading it from a binary snapshot.
+ * <p>
+ * Usage: {@code SnapshotBenchmark [stopCount] [iterations]}, defaults to 1,000,000 stops and 5 iterations.
+ *
+ * @author Matthew Corfiatis
+ */
+public class SnapshotBenchmark {
+    public static void main(String[] args) throws IOException {
+        int stopCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File directory = Files.createTempDirectory("journey-feed").toFile();
+        File stopsFile = new File(directory, "stops.txt");
+        File tripsFile = new File(directory, "trips.txt");
+        File snapshotFile = new File(directory, "network.snapshot");
+
+        System.out.printf("Generating feed with %d stops in %s%n", stopCount, directory);
+        SyntheticFeed.generate(directory, stopCount, 42);
+
+        NetworkSnapshot.write(JourneyReader.readGraph(stopsFile, tripsFile, false), snapshotFile);
+        System.out.printf("TSV size: %d bytes, snapshot size: %d bytes%n",
+                stopsFile.length() + tripsFile.length(), snapshotFile.length());
+
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            int tsvStops = JourneyReader.getConnectedStops(stopsFile, tripsFile).size();
+            long tsvTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int snapshotStops = NetworkSnapshot.read(snapshotFile).getStopCount();
+            long snapshotTime = System.nanoTime() - start;
+
+            if (tsvStops != snapshotStops)
+                throw new IllegalStateException("Snapshot stop count does not match TSV stop count.");
+
+            System.out.printf("Iteration %d: TSV %d ms, snapshot %d ms%n", i + 1, tsvTime / 1_000_000, snapshotTime / 1_000_000);
+        }
+
+        stopsFile.delete();
+        tripsFile.delete();
+        snapshotFile.delete();
+        directory.delete();
+    }
+}
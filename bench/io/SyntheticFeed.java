@@ -0,0 +1,88 @@
+package io;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic stops and trips files in the same format as the bundled Darwin feed.
+ * Stops are scattered around the centre of the network and trips visit runs of nearby stops.
+ *
+ * @author Matthew Corfiatis
+ */
+public class SyntheticFeed {
+    private static final double CENTRE_LAT = -12.499435;
+    private static final double CENTRE_LON = 130.94329;
+    private static final double SPREAD = 0.5; // Degrees either side of the centre
+    private static final int STOPS_PER_TRIP = 20;
+
+    /**
+     * Generates a feed from the command line.
+     * <p>
+     * Usage: {@code SyntheticFeed directory stopCount [seed]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticFeed directory stopCount [seed]");
+            System.exit(1);
+        }
+
+        File directory = new File(args[0]);
+        directory.mkdirs();
+        generate(directory, Integer.parseInt(args[1]), args.length > 2 ? Long.parseLong(args[2]) : 42);
+    }
+
+    /**
+     * Writes a stops.txt and trips.txt file into a directory.
+     *
+     * @param directory Directory to write the files into.
+     * @param stopCount Number of stops to generate.
+     * @param seed      Random seed, the same seed always generates the same feed.
+     * @throws IOException When an error occurs writing the files.
+     */
+    public static void generate(File directory, int stopCount, long seed) throws IOException {
+        Random random = new Random(seed);
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, "stops.txt"))))) {
+            out.print("stop_id\tstop_name\tstop_lat\tstop_lon\n");
+            for (int i = 0; i < stopCount; ++i) {
+                double lat = CENTRE_LAT + (random.nextDouble() * 2 - 1) * SPREAD;
+                double lon = CENTRE_LON + (random.nextDouble() * 2 - 1) * SPREAD;
+                out.printf(Locale.ROOT, "%s\t%s\t%.5f\t%.5f\n", stopId(i), stopName(i, random), lat, lon);
+            }
+        }
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, "trips.txt"))))) {
+            out.print("trip_id\tstop_sequence\n");
+            int tripCount = Math.max(1, stopCount / (STOPS_PER_TRIP / 2)); // Each stop is visited by about two trips
+            for (int i = 0; i < tripCount; ++i) {
+                out.print("t" + i);
+                int stop = random.nextInt(stopCount);
+                for (int j = 0; j < STOPS_PER_TRIP; ++j) {
+                    out.print('\t');
+                    out.print(stopId(stop));
+                    stop = Math.floorMod(stop + random.nextInt(7) - 3, stopCount); // Wander to a nearby stop ID
+                }
+                out.print('\n');
+            }
+        }
+    }
+
+    public static String stopId(int index) {
+        return String.format("SYN%07d", index);
+    }
+
+    private static final String[] NAME_WORDS = {
+            "Casuarina", "Trower", "Nightcliff", "Parap", "Stuart", "Bagot", "Fannie Bay", "Winnellie",
+            "Palmerston", "Karama", "Malak", "Leanyer", "Rapid Creek", "Coconut Grove", "Ludmilla", "Millner"
+    };
+
+    private static final String[] NAME_SUFFIXES = {
+            "Interchange", "Shops", "School", "Road", "Street", "Hospital", "Park", "Terminal"
+    };
+
+    private static String stopName(int index, Random random) {
+        return NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " " +
+                NAME_SUFFIXES[random.nextInt(NAME_SUFFIXES.length)] + " " + index;
+    }
+}
@@ -0,0 +1,56 @@
+package search;
+
+import common.Stop;
+import io.JourneyReader;
+import io.SyntheticFeed;
+import search.route.Journey;
+import search.route.RaptorSearcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how many Pareto route queries per second the RaptorSearcher answers on a single thread.
+ * <p>
+ * Usage: {@code RaptorBenchmark [queries] [stopCount]}. With no stop count the bundled Darwin feed
+ * in the working directory is used, otherwise a synthetic feed of that size is generated.
+ *
+ * @author Matthew Corfiatis
+ */
+public class RaptorBenchmark {
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        File directory = new File(".");
+
+        if (args.length > 1) {
+            directory = Files.createTempDirectory("journey-feed").toFile();
+            SyntheticFeed.generate(directory, Integer.parseInt(args[1]), 42);
+        }
+
+        List<Stop> stops = new ArrayList<>(JourneyReader.getConnectedStops(new File(directory, "stops.txt"), new File(directory, "trips.txt")));
+        RaptorSearcher searcher = new RaptorSearcher();
+        Random random = new Random(42);
+
+        // Warm up so the timed run measures compiled code.
+        for (int i = 0; i < queries / 10; ++i)
+            searcher.searchPareto(stops.get(random.nextInt(stops.size())), stops.get(random.nextInt(stops.size())));
+
+        int found = 0;
+        long journeys = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; ++i) {
+            List<Journey> pareto = searcher.searchPareto(stops.get(random.nextInt(stops.size())), stops.get(random.nextInt(stops.size())));
+            if (!pareto.isEmpty())
+                ++found;
+            journeys += pareto.size();
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.printf("%d stops, %d queries, %d routes found, %.2f journeys per route%n", stops.size(), queries, found, (double) journeys / Math.max(found, 1));
+        System.out.printf("%.0f queries per second, %.1f us per query%n", queries / (time / 1e9), time / 1e3 / queries);
+    }
+}
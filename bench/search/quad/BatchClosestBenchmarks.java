@@ -0,0 +1,72 @@
+package search.quad;
+
+import common.Stop;
+import common.StopGraph;
+import io.FeedState;
+import io.JourneyReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing closest stop searches one point at a time with the batch search.
+ * Scores are points resolved per second.
+ *
+ * @author Matthew Corfiatis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchClosestBenchmarks {
+    private static final int BATCH_SIZE = 65536;
+
+    @State(Scope.Benchmark)
+    public static class BatchState {
+        public FlatQuadTree flatTree;
+        public double[] xs = new double[BATCH_SIZE];
+        public double[] ys = new double[BATCH_SIZE];
+
+        @Setup(Level.Trial)
+        public void build(FeedState feed) throws IOException {
+            StopGraph graph = JourneyReader.readGraph(feed.stopsFile, feed.tripsFile, false);
+            Collection<Stop> stops = graph.getStops();
+            flatTree = new FlatQuadTree(graph);
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (Stop stop : stops) {
+                minX = Math.min(minX, stop.getLocation().x);
+                minY = Math.min(minY, stop.getLocation().y);
+                maxX = Math.max(maxX, stop.getLocation().x);
+                maxY = Math.max(maxY, stop.getLocation().y);
+            }
+
+            // Query points spread over the network's bounds, in no particular order.
+            Random random = new Random(42);
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                xs[i] = minX + random.nextDouble() * (maxX - minX);
+                ys[i] = minY + random.nextDouble() * (maxY - minY);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Stop[] searchClosestEach(BatchState state) {
+        Stop[] closest = new Stop[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; ++i)
+            closest[i] = state.flatTree.searchClosest(state.xs[i], state.ys[i]);
+        return closest;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] searchClosestBatch(BatchState state) {
+        return state.flatTree.searchClosest(state.xs, state.ys);
+    }
+}
@@ -0,0 +1,79 @@
+package search.quad;
+
+import common.Stop;
+import common.StopGraph;
+import io.FeedState;
+import io.JourneyReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the closest stop searches.
+ *
+ * @author Matthew Corfiatis
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClosestStopBenchmarks {
+    private static final int QUERY_COUNT = 1024; // Power of two so the next query can be masked
+
+    @State(Scope.Benchmark)
+    public static class SearchState {
+        public QuadSearcher searcher;
+        public FlatQuadTree flatTree;
+        public Point2D[] queries = new Point2D[QUERY_COUNT];
+        public int next = 0;
+
+        @Setup(Level.Trial)
+        public void build(FeedState feed) throws IOException {
+            StopGraph graph = JourneyReader.readGraph(feed.stopsFile, feed.tripsFile, false);
+            Collection<Stop> stops = graph.getStops();
+            searcher = new QuadSearcher(graph);
+            flatTree = new FlatQuadTree(graph);
+
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (Stop stop : stops) {
+                minX = Math.min(minX, stop.getLocation().x);
+                minY = Math.min(minY, stop.getLocation().y);
+                maxX = Math.max(maxX, stop.getLocation().x);
+                maxY = Math.max(maxY, stop.getLocation().y);
+            }
+
+            // Query points spread over the network's bounds.
+            Random random = new Random(42);
+            for (int i = 0; i < QUERY_COUNT; ++i)
+                queries[i] = new Point2D.Double(
+                        minX + random.nextDouble() * (maxX - minX),
+                        minY + random.nextDouble() * (maxY - minY));
+        }
+
+        public Point2D nextQuery() {
+            return queries[next++ & (QUERY_COUNT - 1)];
+        }
+    }
+
+    @Benchmark
+    public Stop searchClosestPriorityQueue(SearchState state) {
+        return state.searcher.searchClosestPriorityQueue(state.nextQuery());
+    }
+
+    @Benchmark
+    public Stop searchClosestElimination(SearchState state) {
+        return state.searcher.searchClosestElimination(state.nextQuery());
+    }
+
+    @Benchmark
+    public Stop searchClosestFlatTree(SearchState state) {
+        Point2D query = state.nextQuery();
+        return state.flatTree.searchClosest(query.getX(), query.getY());
+    }
+}
@@ -0,0 +1,107 @@
+package search.quad;
+
+import common.Stop;
+import common.StopGraph;
+import io.JourneyReader;
+import io.SyntheticFeed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the build time, memory use and closest stop query time of the incremental
+ * QuadSearcher against the bulk loaded FlatQuadTree.
+ * <p>
+ * Usage: {@code QuadTreeBenchmark [queries] [stopCount] [leafSize]}. With no stop count the
+ * bundled Darwin feed in the working directory is used, otherwise a synthetic feed of that size
+ * is generated. Memory is measured from the heap after a collection, so it is only approximate.
+ *
+ * @author Matthew Corfiatis
+ */
+public class QuadTreeBenchmark {
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int leafSize = args.length > 2 ? Integer.parseInt(args[2]) : FlatQuadTree.DEFAULT_LEAF_SIZE;
+        File directory = new File(".");
+
+        if (args.length > 1) {
+            directory = Files.createTempDirectory("journey-feed").toFile();
+            SyntheticFeed.generate(directory, Integer.parseInt(args[1]), 42);
+        }
+
+        StopGraph graph = JourneyReader.readGraph(new File(directory, "stops.txt"), new File(directory, "trips.txt"), false);
+        List<Stop> stops = graph.getStops();
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Stop stop : stops) {
+            minX = Math.min(minX, stop.getLocation().x);
+            minY = Math.min(minY, stop.getLocation().y);
+            maxX = Math.max(maxX, stop.getLocation().x);
+            maxY = Math.max(maxY, stop.getLocation().y);
+        }
+
+        // Query points spread over the network's bounds, shared by both trees.
+        Random random = new Random(42);
+        double[] xs = new double[queries];
+        double[] ys = new double[queries];
+        for (int i = 0; i < queries; ++i) {
+            xs[i] = minX + random.nextDouble() * (maxX - minX);
+            ys[i] = minY + random.nextDouble() * (maxY - minY);
+        }
+
+        System.out.printf("%d stops, %d queries, leaf size %d%n", stops.size(), queries, leafSize);
+
+        QuadSearcher searcher = measureBuild("QuadSearcher", () -> new QuadSearcher(graph));
+        FlatQuadTree tree = measureBuild("FlatQuadTree", () -> new FlatQuadTree(graph, leafSize));
+        System.out.printf("FlatQuadTree has %d nodes%n", tree.getNodeCount());
+
+        // Warm up so the timed runs measure compiled code.
+        for (int i = 0; i < queries / 10; ++i) {
+            searcher.searchClosest(xs[i], ys[i]);
+            tree.searchClosest(xs[i], ys[i]);
+        }
+
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < queries; ++i)
+            checksum += searcher.searchClosest(xs[i], ys[i]).hashCode();
+        long time = System.nanoTime() - start;
+        System.out.printf("QuadSearcher: %.0f ns per query%n", (double) time / queries);
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; ++i)
+            checksum -= tree.searchClosest(xs[i], ys[i]).hashCode();
+        time = System.nanoTime() - start;
+        System.out.printf("FlatQuadTree: %.0f ns per query%n", (double) time / queries);
+
+        if (checksum != 0)
+            System.out.println("Trees returned different stops");
+    }
+
+    /**
+     * Builds a tree once to warm up, then times a second build and the heap it takes up.
+     */
+    private static <T> T measureBuild(String name, Supplier<T> build) {
+        build.get();
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        T tree = build.get();
+        long time = System.nanoTime() - start;
+        long memory = usedMemory() - before;
+
+        System.out.printf("%s: built in %.1f ms, about %.1f MB%n", name, time / 1e6, memory / 1e6);
+        return tree;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
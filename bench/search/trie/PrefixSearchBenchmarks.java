@@ -0,0 +1,61 @@
+package search.trie;
+
+import common.Stop;
+import io.FeedState;
+import io.JourneyReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for searching stop names by prefix.
+ *
+ * @author Matthew Corfiatis
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefixSearchBenchmarks {
+    private static final int QUERY_COUNT = 1024; // Power of two so the next query can be masked
+
+    @State(Scope.Benchmark)
+    public static class SearchState {
+        public PrefixSearcher searcher;
+        public String[] queries = new String[QUERY_COUNT];
+        public int next = 0;
+
+        @Setup(Level.Trial)
+        public void build(FeedState feed) throws IOException {
+            List<Stop> stops = new ArrayList<>(JourneyReader.getConnectedStops(feed.stopsFile, feed.tripsFile));
+            searcher = new PrefixSearcher(stops);
+
+            // Prefixes of real stop names, from a single character up to the whole name.
+            Random random = new Random(42);
+            for (int i = 0; i < QUERY_COUNT; ++i) {
+                String name = stops.get(random.nextInt(stops.size())).getName();
+                queries[i] = name.substring(0, 1 + random.nextInt(name.length()));
+            }
+        }
+
+        public String nextQuery() {
+            return queries[next++ & (QUERY_COUNT - 1)];
+        }
+    }
+
+    @Benchmark
+    public Collection<PrefixMatch> searchPrefix(SearchState state) {
+        return state.searcher.searchPrefix(state.nextQuery());
+    }
+
+    @Benchmark
+    public Collection<PrefixMatch> searchPrefixTop10(SearchState state) {
+        return state.searcher.searchPrefix(state.nextQuery(), 10);
+    }
+}
@@ -0,0 +1,371 @@
+package server;
+
+import common.Stop;
+import common.StopGraph;
+import io.SyntheticFeed;
+import search.Network;
+import search.QueryService;
+import search.StopSearcher;
+import search.trie.PrefixMatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace of stop queries against a query path from many threads and reports the
+ * distribution of latencies.
+ * <p>
+ * In closed loop mode each thread sends its next query as soon as the last one is answered, which
+ * finds the most queries per second the path can answer. Open loop mode is paced in the style of
+ * wrk2: each thread has a schedule of intended send times at its share of the rate and waits for
+ * each one, but it still blocks until a query is answered before sending the next. When the target
+ * falls behind, a thread sends its late queries back to back to catch up rather than having more
+ * than one outstanding, so at most one query per thread is in flight and there must be enough
+ * threads for the rate to be reached. Two latencies are reported:
+ * <ul>
+ * <li>Service time, from sending a query to its answer.</li>
+ * <li>Response time, from when the query should have been sent to its answer. A query that waits
+ * behind a slow one is charged for the wait, which corrects for coordinated omission even though
+ * the threads block. In closed loop mode this needs a rate, the queries a slow one held up are
+ * added to the histogram.</li>
+ * </ul>
+ * The in process http target turns on TCP_NODELAY for the server, see {@link QueryServer}.
+ * <p>
+ * Usage: {@code LoadGenerator [--option value]...}
+ * <pre>
+ * --target   network    Network snapshot in this process, searched without locks (default)
+ *            searcher   StopSearcher in this process, which synchronizes every search
+ *            http       QueryServer started in this process, queried over loopback
+ *            http://..  QueryServer already running at the address
+ * --mode     closed | open, where open is paced as above (default closed)
+ * --threads  Threads sending queries (default 4)
+ * --rate     Queries per second over all threads, needed for open loop mode
+ * --duration Seconds to measure for (default 10)
+ * --warmup   Seconds to run before measuring (default 3)
+ * --data     Directory holding stops.txt and trips.txt (default the working directory)
+ * --stops    Generate a synthetic feed of this many stops instead of reading --data
+ * --trace    Replay queries from a trace file instead of generating them
+ * --record   Write the generated trace to a file
+ * --mix      Percentages of prefix, nearest and stop queries (default 60,25,15)
+ * </pre>
+ *
+ * @author Matthew Corfiatis
+ */
+public class LoadGenerator {
+    private static final int TRACE_LENGTH = 100_000; // Queries in a generated trace
+    private static final int RESULT_COUNT = 10; // Stops returned by a name search
+
+    private enum Mode {CLOSED, OPEN}
+
+    /**
+     * A query path that queries are sent down.
+     */
+    private interface Target {
+        /**
+         * Answers a query.
+         *
+         * @return Size of the answer, so the work can not be skipped, or -1 if the query failed.
+         */
+        int execute(QueryTrace.Query query) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Latencies and counts recorded by one thread.
+     */
+    private static class WorkerStats {
+        private final LatencyHistogram service = new LatencyHistogram();
+        private final LatencyHistogram response = new LatencyHistogram();
+        private final LatencyHistogram[] byType = new LatencyHistogram[QueryTrace.Type.values().length];
+        private long errors = 0;
+        private long checksum = 0;
+
+        private WorkerStats() {
+            for (int i = 0; i < byType.length; ++i)
+                byType[i] = new LatencyHistogram();
+        }
+
+        private void add(WorkerStats other) {
+            service.add(other.service);
+            response.add(other.response);
+            for (int i = 0; i < byType.length; ++i)
+                byType[i].add(other.byType[i]);
+            errors += other.errors;
+            checksum += other.checksum;
+        }
+    }
+
+    private final QueryTrace trace;
+    private final Target target;
+    private final Mode mode;
+    private final int threads;
+    private final double rate;
+
+    private LoadGenerator(QueryTrace trace, Target target, Mode mode, int threads, double rate) {
+        if (threads < 1)
+            throw new IllegalArgumentException("There must be at least 1 thread.");
+        if (mode == Mode.OPEN && rate <= 0)
+            throw new IllegalArgumentException("Open loop mode needs a rate.");
+
+        this.trace = trace;
+        this.target = target;
+        this.mode = mode;
+        this.threads = threads;
+        this.rate = rate;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        File directory = new File(options.getOrDefault("data", "."));
+        if (options.containsKey("stops")) {
+            directory = Files.createTempDirectory("journey-feed").toFile();
+            SyntheticFeed.generate(directory, Integer.parseInt(options.get("stops")), 42);
+        }
+
+        Network network = Network.load(new File(directory, "stops.txt"), new File(directory, "trips.txt"), true);
+
+        QueryTrace trace;
+        if (options.containsKey("trace")) {
+            trace = QueryTrace.read(new File(options.get("trace")));
+        } else {
+            double[] mix = Arrays.stream(options.getOrDefault("mix", "60,25,15").split(",")).mapToDouble(Double::parseDouble).toArray();
+            if (mix.length != 3)
+                throw new IllegalArgumentException("Mix must have three percentages.");
+            trace = QueryTrace.generate(network.getStops(), TRACE_LENGTH, mix[0], mix[1], mix[2], 42);
+        }
+        if (options.containsKey("record"))
+            trace.write(new File(options.get("record")));
+
+        String targetName = options.getOrDefault("target", "network");
+        QueryServer server = null;
+        Target target;
+        if (targetName.equals("network")) {
+            target = networkTarget(network);
+        } else if (targetName.equals("searcher")) {
+            target = searcherTarget(network.getGraph());
+        } else if (targetName.equals("http")) {
+            QueryServer.enableNoDelay(); // Before the server is created, it is read once
+            server = new QueryServer(new QueryService(network), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+            target = httpTarget("http://localhost:" + server.getAddress().getPort());
+        } else if (targetName.startsWith("http://")) {
+            target = httpTarget(targetName);
+        } else {
+            throw new IllegalArgumentException("Unknown target: " + targetName);
+        }
+
+        Mode mode = Mode.valueOf(options.getOrDefault("mode", "closed").toUpperCase());
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        LoadGenerator generator = new LoadGenerator(trace, target, mode, threads, rate);
+
+        System.out.printf("%d stops, %d queries in trace, target %s, %s loop, %d threads%s%n",
+                network.getStopCount(), trace.size(), targetName, mode.name().toLowerCase(), threads,
+                rate > 0 ? String.format(", %.0f queries/s", rate) : "");
+
+        // The warm up is not recorded so the measurement is of compiled code.
+        generator.run(Double.parseDouble(options.getOrDefault("warmup", "3")));
+        double duration = Double.parseDouble(options.getOrDefault("duration", "10"));
+        generator.print(generator.run(duration), duration);
+
+        if (server != null)
+            server.stop();
+    }
+
+    /**
+     * Sends queries from every thread for a length of time.
+     *
+     * @param seconds Time to send queries for.
+     * @return Statistics of every thread added together.
+     */
+    private WorkerStats run(double seconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+
+        WorkerStats[] stats = new WorkerStats[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; ++i) {
+            int worker = i;
+            stats[i] = new WorkerStats();
+            workers[i] = new Thread(() -> work(worker, start, end, stats[worker]), "load-" + i);
+            workers[i].start();
+        }
+
+        WorkerStats total = new WorkerStats();
+        for (int i = 0; i < threads; ++i) {
+            workers[i].join();
+            total.add(stats[i]);
+        }
+        return total;
+    }
+
+    /**
+     * Sends queries from one thread, starting at its own place in the trace.
+     */
+    private void work(int worker, long start, long end, WorkerStats stats) {
+        long interval = rate > 0 ? (long) (1e9 * threads / rate) : 0; // Between this thread's queries
+        long intended = start + interval * worker / threads; // Spread the threads over one interval
+        int next = (int) ((long) trace.size() * worker / threads);
+
+        while (true) {
+            if (mode == Mode.OPEN) {
+                if (intended >= end)
+                    break;
+
+                // Wait for the query's turn, a late query is sent straight away.
+                long now;
+                while ((now = System.nanoTime()) < intended)
+                    LockSupport.parkNanos(intended - now);
+            } else if (System.nanoTime() >= end) {
+                break;
+            }
+
+            QueryTrace.Query query = trace.get(next);
+            next = (next + 1) % trace.size();
+
+            long sent = System.nanoTime();
+            int result;
+            try {
+                result = target.execute(query);
+            } catch (IOException ex) {
+                result = -1;
+            } catch (InterruptedException ex) {
+                return;
+            }
+            long answered = System.nanoTime();
+
+            if (result < 0)
+                ++stats.errors;
+            else
+                stats.checksum += result;
+
+            stats.service.record(answered - sent);
+            if (mode == Mode.OPEN) {
+                stats.response.record(answered - intended);
+                stats.byType[query.type.ordinal()].record(answered - intended);
+            } else {
+                stats.response.recordCorrected(answered - sent, interval);
+                stats.byType[query.type.ordinal()].recordCorrected(answered - sent, interval);
+            }
+
+            intended += interval;
+        }
+    }
+
+    private void print(WorkerStats stats, double seconds) {
+        System.out.printf("%-16s %10s %10s %9s %9s %9s %9s %9s %9s %9s%n", "Latency (us)",
+                "count", "queries/s", "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max");
+        printRow("service time", stats.service, seconds);
+        printRow("response time", stats.response, seconds);
+        for (QueryTrace.Type type : QueryTrace.Type.values())
+            printRow("  " + type.name().toLowerCase(), stats.byType[type.ordinal()], seconds);
+
+        // The service time histogram counts every query sent, the others include corrected ones.
+        System.out.printf("%d errors, checksum %d%n", stats.errors, stats.checksum);
+    }
+
+    private static void printRow(String name, LatencyHistogram histogram, double seconds) {
+        System.out.printf("%-16s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name,
+                histogram.getCount(), histogram.getCount() / seconds, histogram.getMean() / 1e3,
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getValueAtPercentile(99.99) / 1e3, histogram.getMax() / 1e3);
+    }
+
+    /**
+     * Answers queries from a network snapshot, as the server does.
+     */
+    private static Target networkTarget(Network network) {
+        return query -> {
+            switch (query.type) {
+                case PREFIX:
+                    List<PrefixMatch> matches = network.searchPrefix(query.text, RESULT_COUNT);
+                    return matches.isEmpty() ? network.searchWords(query.text, RESULT_COUNT).size() : matches.size();
+                case NEAREST:
+                    Stop closest = network.searchClosest(query.location);
+                    return closest == null ? -1 : closest.getIndex();
+                default:
+                    Stop stop = network.getStop(query.text);
+                    return stop == null ? -1 : stop.getTrips().size();
+            }
+        };
+    }
+
+    /**
+     * Answers queries from a StopSearcher, as the window does.
+     */
+    private static Target searcherTarget(StopGraph graph) {
+        StopSearcher searcher = new StopSearcher(graph);
+        Map<String, Stop> stopsById = new HashMap<>();
+        for (Stop stop : graph.getStops())
+            stopsById.put(stop.getId(), stop);
+
+        return query -> {
+            switch (query.type) {
+                case PREFIX:
+                    List<PrefixMatch> matches = searcher.searchPrefix(query.text, RESULT_COUNT);
+                    return matches.isEmpty() ? searcher.searchWords(query.text, RESULT_COUNT).size() : matches.size();
+                case NEAREST:
+                    Stop closest = searcher.searchClosest(query.location);
+                    return closest == null ? -1 : closest.getIndex();
+                default:
+                    Stop stop = stopsById.get(query.text);
+                    return stop == null ? -1 : stop.getTrips().size();
+            }
+        };
+    }
+
+    /**
+     * Sends queries to a QueryServer. Connections are kept open and reused between queries, one
+     * per thread.
+     *
+     * @param address Address of the server, such as http://localhost:8080
+     */
+    private static Target httpTarget(String address) {
+        return query -> {
+            String path;
+            switch (query.type) {
+                case PREFIX:
+                    path = "/stops/search?count=" + RESULT_COUNT + "&q=" + URLEncoder.encode(query.text, StandardCharsets.UTF_8);
+                    break;
+                case NEAREST:
+                    path = "/stops/nearest?x=" + query.location.x + "&y=" + query.location.y;
+                    break;
+                default:
+                    path = "/stops/" + URLEncoder.encode(query.text, StandardCharsets.UTF_8).replace("+", "%20");
+            }
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(address + path).openConnection();
+            int status = connection.getResponseCode();
+
+            // Reading the whole body lets the connection be reused.
+            try (InputStream in = status == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+                int length = in == null ? 0 : in.readAllBytes().length;
+                return status == 200 ? length : -1;
+            }
+        };
+    }
+
+    /**
+     * Reads options given as pairs of --name value.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Options must be given as --name value, got " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,188 @@
+package server;
+
+import common.Location;
+import common.Stop;
+import io.ParseError;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A sequence of queries to replay against a query path.
+ * <p>
+ * A trace is either read from a file or generated from a network. Files have one query per line,
+ * with tab separated fields:
+ * <pre>
+ * prefix  text     Search for stops by name as it is typed
+ * nearest x  y     Closest stop to a location
+ * stop    id       Details of a stop
+ * </pre>
+ *
+ * @author Matthew Corfiatis
+ */
+public class QueryTrace {
+    public enum Type {PREFIX, NEAREST, STOP}
+
+    /**
+     * A single query, only the fields for its type are set.
+     */
+    public static class Query {
+        public final Type type;
+        public final String text; // Prefix, or stop ID
+        public final Location location;
+
+        private Query(Type type, String text, Location location) {
+            this.type = type;
+            this.text = text;
+            this.location = location;
+        }
+    }
+
+    private final List<Query> queries;
+
+    private QueryTrace(List<Query> queries) {
+        if (queries.isEmpty())
+            throw new IllegalArgumentException("A trace must have at least one query.");
+
+        this.queries = queries;
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    public Query get(int index) {
+        return queries.get(index);
+    }
+
+    /**
+     * Generates a trace that looks like people using the planner.
+     * <p>
+     * Stops are picked in proportion to the number of trips through them, as busy stops are asked
+     * about most. Searches are typed a character at a time, so each one adds a query for every
+     * prefix of the name up to where the person stopped typing. Nearest stop queries are scattered
+     * around stops, as people look near where the stops are.
+     *
+     * @param stops   Stops of the network.
+     * @param count   Number of queries to generate.
+     * @param prefix  Share of queries that are name searches.
+     * @param nearest Share of queries that are nearest stop searches.
+     * @param stop    Share of queries that ask for a stop's details.
+     * @param seed    Seed of the random numbers, so a trace can be repeated.
+     */
+    public static QueryTrace generate(List<Stop> stops, int count, double prefix, double nearest, double stop, long seed) {
+        if (stops.isEmpty())
+            throw new IllegalArgumentException("Stops must not be empty.");
+        if (prefix < 0 || nearest < 0 || stop < 0 || prefix + nearest + stop <= 0)
+            throw new IllegalArgumentException("Shares must not be negative and must not all be 0.");
+
+        // Cumulative popularity, every stop has a chance even with no trips.
+        long[] weights = new long[stops.size()];
+        long total = 0;
+        for (int i = 0; i < stops.size(); ++i) {
+            total += 1 + stops.get(i).getTrips().size();
+            weights[i] = total;
+        }
+
+        Random random = new Random(seed);
+        List<Query> queries = new ArrayList<>(count);
+        double shares = prefix + nearest + stop;
+
+        while (queries.size() < count) {
+            Stop picked = pick(stops, weights, random);
+            double kind = random.nextDouble() * shares;
+
+            if (kind < prefix) {
+                String name = picked.getName().toLowerCase();
+                int typed = Math.min(name.length(), 2 + random.nextInt(7));
+                for (int length = 1; length <= typed && queries.size() < count; ++length)
+                    queries.add(new Query(Type.PREFIX, name.substring(0, length), null));
+            } else if (kind < prefix + nearest) {
+                Location location = picked.getLocation();
+                queries.add(new Query(Type.NEAREST, null, new Location(
+                        location.x + random.nextGaussian() * 0.5, location.y + random.nextGaussian() * 0.5)));
+            } else {
+                queries.add(new Query(Type.STOP, picked.getId(), null));
+            }
+        }
+
+        return new QueryTrace(queries);
+    }
+
+    private static Stop pick(List<Stop> stops, long[] weights, Random random) {
+        long target = (long) (random.nextDouble() * weights[weights.length - 1]);
+        int low = 0, high = weights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (weights[middle] > target)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return stops.get(low);
+    }
+
+    /**
+     * Reads a trace from a file.
+     *
+     * @throws IOException When an error occurs reading the file.
+     * @throws ParseError  When a line is not a query.
+     */
+    public static QueryTrace read(File file) throws IOException, ParseError {
+        List<Query> queries = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNum = 0;
+            while ((line = reader.readLine()) != null) {
+                ++lineNum;
+                if (line.isEmpty())
+                    continue;
+
+                String[] fields = line.split("\t");
+                try {
+                    if (fields[0].equals("prefix") && fields.length == 2)
+                        queries.add(new Query(Type.PREFIX, fields[1], null));
+                    else if (fields[0].equals("nearest") && fields.length == 3)
+                        queries.add(new Query(Type.NEAREST, null, new Location(Double.parseDouble(fields[1]), Double.parseDouble(fields[2]))));
+                    else if (fields[0].equals("stop") && fields.length == 2)
+                        queries.add(new Query(Type.STOP, fields[1], null));
+                    else
+                        throw new ParseError(String.format("Invalid query on line %d of trace file.", lineNum));
+                } catch (NumberFormatException ex) {
+                    throw new ParseError(String.format("Invalid co-ordinate on line %d of trace file.", lineNum));
+                }
+            }
+        }
+
+        if (queries.isEmpty())
+            throw new ParseError("Trace file has no queries.");
+        return new QueryTrace(queries);
+    }
+
+    /**
+     * Writes the trace to a file that can be read back.
+     *
+     * @throws IOException When an error occurs writing the file.
+     */
+    public void write(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (Query query : queries) {
+                switch (query.type) {
+                    case PREFIX:
+                        writer.write("prefix\t" + query.text + "\n");
+                        break;
+                    case NEAREST:
+                        writer.write("nearest\t" + query.location.x + "\t" + query.location.y + "\n");
+                        break;
+                    case STOP:
+                        writer.write("stop\t" + query.text + "\n");
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -5,7 +5,7 @@ import java.util.*;
 /**
  * Represents a bus stop.
  * The bus stop can be part of a trip and have connections to other bus stops.
- * Stops are linked together using Connections to form Trips.
+ * Connections are stored in the StopGraph the stop is part of, this object is a view over it.
  *
  * @author Matthew Corfiatis
  */
@@ -13,9 +13,11 @@ public class Stop {
     private final String id;
     private final String name;
     private final Location location;
-    private final List<Connection> outgoingConnections = new ArrayList<>();
-    private final List<Connection> incomingConnections = new ArrayList<>();
-    private boolean lockConnections; // Prevents adding new connections once the object has been created.
+    private StopGraph graph; // Graph this stop is part of, null until the graph is built.
+    private int index = -1;
+    private List<Connection> outgoingConnections = Collections.emptyList();
+    private List<Connection> incomingConnections = Collections.emptyList();
+    private List<Trip> trips = Collections.emptyList();
 
     /**
      * Creates new stop object.
@@ -51,69 +53,49 @@ public class Stop {
         return location;
     }
 
-    public List<Connection> getOutgoingConnections() {
-        return Collections.unmodifiableList(outgoingConnections);
-    }
-
-    public List<Connection> getIncomingConnections() {
-        return Collections.unmodifiableList(incomingConnections);
-    }
-
-    public Set<Trip> getTrips() {
-        Set<Trip> trips = new HashSet<>();
-
-        for(Connection c : outgoingConnections)
-            trips.add(c.getTrip());
-
-        for(Connection c : incomingConnections)
-            trips.add(c.getTrip());
-
-        return trips;
+    /**
+     * Graph that contains the connections of this stop.
+     * @return The graph or null if the stop has not been added to a graph.
+     */
+    public StopGraph getGraph() {
+        return graph;
     }
 
     /**
-     * Creates a connection between this stop and another stop within a trip.
-     * @param stop Stop to connect to.
-     * @param trip The trip that contains the connection.
-     * @throws IllegalAccessError When method is called after the connections have been locked.
-     * @throws IllegalArgumentException When non nullable arguments are null.
+     * Index of this stop in its graph.
+     * @return The index or -1 if the stop has not been added to a graph.
      */
-    public void makeOutgoingConnection(Stop stop, Trip trip) throws IllegalAccessError, IllegalArgumentException {
-        if(stop == null)
-            throw new IllegalArgumentException("Stop must not be null.");
+    public int getIndex() {
+        return index;
+    }
 
-        if(trip == null)
-            throw new IllegalArgumentException("Trip must not be null.");
+    public List<Connection> getOutgoingConnections() {
+        return outgoingConnections;
+    }
 
-        if(lockConnections)
-            throw new IllegalAccessError("Connections cannot be added on a locked object.");
-        outgoingConnections.add(new Connection(stop, trip));
+    public List<Connection> getIncomingConnections() {
+        return incomingConnections;
     }
 
     /**
-     * Creates a connection between another stop and this stop within a trip.
-     * @param stop Stop to connect from.
-     * @param trip The trip that contains the connection.
-     * @throws IllegalAccessError When method is called after the connections have been locked.
-     * @throws IllegalArgumentException When non nullable arguments are null.
+     * Distinct trips with a connection to or from this stop, read from the graph's index without allocating.
+     * @return Read-only list of trips, in the order they were added to the graph.
      */
-    public void makeIncomingConnection(Stop stop, Trip trip) throws IllegalAccessError, IllegalArgumentException {
-        if(stop == null)
-            throw new IllegalArgumentException("Stop must not be null.");
-
-        if(trip == null)
-            throw new IllegalArgumentException("Trip must not be null.");
-
-        if(lockConnections)
-            throw new IllegalAccessError("Connections cannot be added on a locked object.");
-        incomingConnections.add(new Connection(stop, trip));
+    public List<Trip> getTrips() {
+        return trips;
     }
 
     /**
-     * Prevents connections from being modified inside this stop.
+     * Makes this stop a view over a position in a graph.
+     * @param graph Graph containing the stop.
+     * @param index Index of the stop in the graph.
      */
-    public void lockConnections() {
-        lockConnections = true;
+    void attach(StopGraph graph, int index) {
+        this.graph = graph;
+        this.index = index;
+        this.outgoingConnections = graph.outgoingConnections(index);
+        this.incomingConnections = graph.incomingConnections(index);
+        this.trips = graph.stopTrips(index);
     }
 
     @Override
@@ -126,7 +108,7 @@ public class Stop {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId());
+        return Objects.hashCode(getId()); // Objects.hash allocates an array on every call
     }
 
     @Override
@@ -0,0 +1,499 @@
+package common;
+
+import java.util.*;
+
+/**
+ * Read-only graph of stops connected by trips, stored as compressed sparse rows.
+ * <p>
+ * Stops and trips are given dense indices. The outgoing connections of stop i are the edges
+ * outStart(i) (inclusive) to outEnd(i) (exclusive), each edge storing the index of the stop it
+ * leads to and the trip it is part of. Incoming connections and the stops of each trip are stored
+ * the same way, as are the distinct trips through each stop. Stop and Trip objects are views over
+ * the graph once it has been built.
+ * <p>
+ * Each graph has its own views. Stops and trips that are already part of a graph are copied when
+ * another graph is built from them, so a graph never changes once it is built and the same object
+ * is never a view over two graphs. Look stops and trips up in the new graph to get its views.
+ * <p>
+ * Stop co-ordinates are also copied into one array per axis, so loops over many stops read
+ * contiguous memory instead of following a reference to each stop's Location. The spatial
+ * indexes and the map renderer read these arrays rather than keeping copies of their own.
+ * <p>
+ * Traversals that need to be fast should use the index methods directly instead of the
+ * Connection objects returned through the Stop API.
+ *
+ * @author Matthew Corfiatis
+ */
+public final class StopGraph {
+    private final Stop[] stops;
+    private final Trip[] trips;
+
+    private final double[] stopXs;
+    private final double[] stopYs;
+
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] outTrips;
+
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] inTrips;
+
+    private final int[] tripOffsets;
+    private final int[] tripStops;
+
+    private final int[] stopTripOffsets;
+    private final int[] stopTrips;
+
+    private StopGraph(Stop[] stops, Trip[] trips, int[] tripOffsets, int[] tripStops) {
+        this.stops = stops;
+        this.trips = trips;
+        this.tripOffsets = tripOffsets;
+        this.tripStops = tripStops;
+
+        stopXs = new double[stops.length];
+        stopYs = new double[stops.length];
+        for (int s = 0; s < stops.length; ++s) {
+            stopXs[s] = stops[s].getLocation().x;
+            stopYs[s] = stops[s].getLocation().y;
+        }
+
+        // Count the connections leaving and arriving at each stop.
+        int connectionCount = tripStops.length - trips.length;
+        outOffsets = new int[stops.length + 1];
+        inOffsets = new int[stops.length + 1];
+
+        for (int t = 0; t < trips.length; ++t) {
+            for (int i = tripOffsets[t] + 1; i < tripOffsets[t + 1]; ++i) {
+                ++outOffsets[tripStops[i - 1] + 1];
+                ++inOffsets[tripStops[i] + 1];
+            }
+        }
+
+        for (int s = 0; s < stops.length; ++s) {
+            outOffsets[s + 1] += outOffsets[s];
+            inOffsets[s + 1] += inOffsets[s];
+        }
+
+        // Fill the edges, keeping them in trip order for each stop.
+        outTargets = new int[connectionCount];
+        outTrips = new int[connectionCount];
+        inSources = new int[connectionCount];
+        inTrips = new int[connectionCount];
+        int[] outFill = Arrays.copyOf(outOffsets, stops.length);
+        int[] inFill = Arrays.copyOf(inOffsets, stops.length);
+
+        for (int t = 0; t < trips.length; ++t) {
+            for (int i = tripOffsets[t] + 1; i < tripOffsets[t + 1]; ++i) {
+                int from = tripStops[i - 1];
+                int to = tripStops[i];
+
+                int out = outFill[from]++;
+                outTargets[out] = to;
+                outTrips[out] = t;
+
+                int in = inFill[to]++;
+                inSources[in] = from;
+                inTrips[in] = t;
+            }
+        }
+
+        // List the distinct trips with a connection at each stop, in trip order. A trip that
+        // visits a stop more than once was the last trip listed for it, so it is only added once.
+        stopTripOffsets = new int[stops.length + 1];
+        int[] lastTrip = new int[stops.length];
+        Arrays.fill(lastTrip, -1);
+
+        for (int t = 0; t < trips.length; ++t) {
+            if (tripOffsets[t + 1] - tripOffsets[t] < 2)
+                continue; // No connections
+
+            for (int i = tripOffsets[t]; i < tripOffsets[t + 1]; ++i) {
+                int stop = tripStops[i];
+                if (lastTrip[stop] != t) {
+                    lastTrip[stop] = t;
+                    ++stopTripOffsets[stop + 1];
+                }
+            }
+        }
+
+        for (int s = 0; s < stops.length; ++s)
+            stopTripOffsets[s + 1] += stopTripOffsets[s];
+
+        stopTrips = new int[stopTripOffsets[stops.length]];
+        int[] stopTripFill = Arrays.copyOf(stopTripOffsets, stops.length);
+        Arrays.fill(lastTrip, -1);
+
+        for (int t = 0; t < trips.length; ++t) {
+            if (tripOffsets[t + 1] - tripOffsets[t] < 2)
+                continue;
+
+            for (int i = tripOffsets[t]; i < tripOffsets[t + 1]; ++i) {
+                int stop = tripStops[i];
+                if (lastTrip[stop] != t) {
+                    lastTrip[stop] = t;
+                    stopTrips[stopTripFill[stop]++] = t;
+                }
+            }
+        }
+
+        for (int s = 0; s < stops.length; ++s)
+            stops[s].attach(this, s);
+
+        for (int t = 0; t < trips.length; ++t)
+            trips[t].attach(this, t);
+    }
+
+    public int getStopCount() {
+        return stops.length;
+    }
+
+    public int getTripCount() {
+        return trips.length;
+    }
+
+    public int getConnectionCount() {
+        return outTargets.length;
+    }
+
+    public Stop getStop(int index) {
+        return stops[index];
+    }
+
+    public Trip getTrip(int index) {
+        return trips[index];
+    }
+
+    /**
+     * All stops in index order.
+     */
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(Arrays.asList(stops));
+    }
+
+    /**
+     * All trips in index order.
+     */
+    public List<Trip> getTrips() {
+        return Collections.unmodifiableList(Arrays.asList(trips));
+    }
+
+    /**
+     * X co-ordinate of a stop's location.
+     */
+    public double stopX(int stop) {
+        return stopXs[stop];
+    }
+
+    /**
+     * Y co-ordinate of a stop's location.
+     */
+    public double stopY(int stop) {
+        return stopYs[stop];
+    }
+
+    /**
+     * Straight line distance between two stops, in the same units as a Location.
+     */
+    public double distance(int from, int to) {
+        double dx = stopXs[to] - stopXs[from];
+        double dy = stopYs[to] - stopYs[from];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Index of the first outgoing edge of a stop.
+     */
+    public int outStart(int stop) {
+        return outOffsets[stop];
+    }
+
+    /**
+     * Index after the last outgoing edge of a stop.
+     */
+    public int outEnd(int stop) {
+        return outOffsets[stop + 1];
+    }
+
+    /**
+     * Index of the stop an outgoing edge leads to.
+     */
+    public int outTarget(int edge) {
+        return outTargets[edge];
+    }
+
+    /**
+     * Index of the trip an outgoing edge is part of.
+     */
+    public int outTrip(int edge) {
+        return outTrips[edge];
+    }
+
+    /**
+     * Index of the first incoming edge of a stop.
+     */
+    public int inStart(int stop) {
+        return inOffsets[stop];
+    }
+
+    /**
+     * Index after the last incoming edge of a stop.
+     */
+    public int inEnd(int stop) {
+        return inOffsets[stop + 1];
+    }
+
+    /**
+     * Index of the stop an incoming edge comes from.
+     */
+    public int inSource(int edge) {
+        return inSources[edge];
+    }
+
+    /**
+     * Index of the trip an incoming edge is part of.
+     */
+    public int inTrip(int edge) {
+        return inTrips[edge];
+    }
+
+    /**
+     * Position of the first stop of a trip, for use with tripStop.
+     */
+    public int tripStart(int trip) {
+        return tripOffsets[trip];
+    }
+
+    /**
+     * Position after the last stop of a trip.
+     */
+    public int tripEnd(int trip) {
+        return tripOffsets[trip + 1];
+    }
+
+    /**
+     * Index of the stop at a position in a trip.
+     */
+    public int tripStop(int position) {
+        return tripStops[position];
+    }
+
+    /**
+     * Position of the first trip through a stop, for use with stopTrip.
+     */
+    public int stopTripStart(int stop) {
+        return stopTripOffsets[stop];
+    }
+
+    /**
+     * Position after the last trip through a stop.
+     */
+    public int stopTripEnd(int stop) {
+        return stopTripOffsets[stop + 1];
+    }
+
+    /**
+     * Index of the trip at a position in the trips through a stop.
+     */
+    public int stopTrip(int position) {
+        return stopTrips[position];
+    }
+
+    List<Connection> outgoingConnections(int stop) {
+        return new ConnectionList(outOffsets, outTargets, outTrips, stop);
+    }
+
+    List<Connection> incomingConnections(int stop) {
+        return new ConnectionList(inOffsets, inSources, inTrips, stop);
+    }
+
+    List<Stop> tripStops(int trip) {
+        int start = tripOffsets[trip];
+        int end = tripOffsets[trip + 1];
+
+        return new AbstractList<Stop>() {
+            @Override
+            public Stop get(int index) {
+                Objects.checkIndex(index, end - start);
+                return stops[tripStops[start + index]];
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+
+    List<Trip> stopTrips(int stop) {
+        int start = stopTripOffsets[stop];
+        int end = stopTripOffsets[stop + 1];
+
+        return new TripList(start, end);
+    }
+
+    /**
+     * Read-only list of the trips through a stop, backed by the graph's arrays.
+     */
+    private class TripList extends AbstractList<Trip> implements RandomAccess {
+        private final int start;
+        private final int end;
+
+        TripList(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Trip get(int index) {
+            Objects.checkIndex(index, end - start);
+            return trips[stopTrips[start + index]];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Read-only list of the connections of a stop, connections are created as they are accessed.
+     */
+    private class ConnectionList extends AbstractList<Connection> implements RandomAccess {
+        private final int[] stopIndices;
+        private final int[] tripIndices;
+        private final int start;
+        private final int end;
+
+        ConnectionList(int[] offsets, int[] stopIndices, int[] tripIndices, int stop) {
+            this.stopIndices = stopIndices;
+            this.tripIndices = tripIndices;
+            this.start = offsets[stop];
+            this.end = offsets[stop + 1];
+        }
+
+        @Override
+        public Connection get(int index) {
+            Objects.checkIndex(index, end - start);
+            return new Connection(stops[stopIndices[start + index]], trips[tripIndices[start + index]]);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Collects stops and trips and builds them into a graph.
+     * <p>
+     * Building the graph attaches every new stop and trip to it. Stops and trips that are already
+     * part of a graph are left as they are and copies are attached instead.
+     */
+    public static class Builder {
+        private final Stop[] stops;
+        private final List<Trip> trips = new ArrayList<>();
+        private int[] tripOffsets = new int[16];
+        private int[] tripStops = new int[64];
+        private int tripStopCount = 0;
+        private Map<Stop, Integer> stopIndices; // Only created if trips are added by Stop object
+
+        /**
+         * @param stops Every stop in the graph, stops are given indices in iteration order.
+         */
+        public Builder(Collection<Stop> stops) {
+            if (stops == null)
+                throw new IllegalArgumentException("Stops must not be null.");
+
+            this.stops = stops.toArray(new Stop[0]);
+        }
+
+        /**
+         * Stop that will be given an index.
+         */
+        public Stop getStop(int index) {
+            return stops[index];
+        }
+
+        public int getStopCount() {
+            return stops.length;
+        }
+
+        /**
+         * Adds a trip that visits stops in order.
+         *
+         * @param trip        Trip to add.
+         * @param stopIndices Indices of the stops, in the order the stops were given to the builder.
+         * @throws IllegalArgumentException When non nullable arguments are null or an index is out of range.
+         */
+        public Builder addTrip(Trip trip, int[] stopIndices) throws IllegalArgumentException {
+            if (trip == null)
+                throw new IllegalArgumentException("Trip must not be null.");
+
+            if (stopIndices == null)
+                throw new IllegalArgumentException("Stops must not be null.");
+
+            if (trips.size() + 2 > tripOffsets.length)
+                tripOffsets = Arrays.copyOf(tripOffsets, tripOffsets.length * 2);
+
+            if (tripStopCount + stopIndices.length > tripStops.length)
+                tripStops = Arrays.copyOf(tripStops, Math.max(tripStops.length * 2, tripStopCount + stopIndices.length));
+
+            for (int index : stopIndices) {
+                if (index < 0 || index >= stops.length)
+                    throw new IllegalArgumentException("Stop index out of range: " + index);
+                tripStops[tripStopCount++] = index;
+            }
+
+            trips.add(trip);
+            tripOffsets[trips.size()] = tripStopCount;
+            return this;
+        }
+
+        /**
+         * Adds a trip that visits stops in order.
+         *
+         * @param trip  Trip to add.
+         * @param stops Stops of the trip, each must have been given to the builder.
+         * @throws IllegalArgumentException When non nullable arguments are null or a stop was not given to the builder.
+         */
+        public Builder addTrip(Trip trip, Stop... stops) throws IllegalArgumentException {
+            if (stopIndices == null) {
+                stopIndices = new HashMap<>();
+                for (int i = 0; i < this.stops.length; ++i)
+                    stopIndices.put(this.stops[i], i);
+            }
+
+            int[] indices = new int[stops.length];
+            for (int i = 0; i < stops.length; ++i) {
+                Integer index = stopIndices.get(stops[i]);
+                if (index == null)
+                    throw new IllegalArgumentException("Trip contains stop that was not given to the builder: " + stops[i].getId());
+                indices[i] = index;
+            }
+
+            return addTrip(trip, indices);
+        }
+
+        /**
+         * Builds the graph and attaches the stops and trips to it, or copies of them if they are
+         * already part of a graph.
+         */
+        public StopGraph build() {
+            Stop[] graphStops = new Stop[stops.length];
+            for (int s = 0; s < stops.length; ++s) {
+                Stop stop = stops[s];
+                graphStops[s] = stop.getGraph() == null ? stop : new Stop(stop.getId(), stop.getName(), stop.getLocation());
+            }
+
+            Trip[] graphTrips = new Trip[trips.size()];
+            for (int t = 0; t < graphTrips.length; ++t) {
+                Trip trip = trips.get(t);
+                graphTrips[t] = trip.getGraph() == null ? trip : new Trip(trip.getId());
+            }
+
+            return new StopGraph(graphStops, graphTrips,
+                    Arrays.copyOf(tripOffsets, trips.size() + 1), Arrays.copyOf(tripStops, tripStopCount));
+        }
+    }
+}
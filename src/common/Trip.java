@@ -1,18 +1,18 @@
 package common;
 
-import java.lang.reflect.Array;
 import java.util.*;
 
 /**
  * Represents a bus trip consisting of multiple stops.
- * Trips are formed using Connections inside a Stop object.
+ * The stops of the trip are stored in the StopGraph the trip is part of, this object is a view over it.
  *
  * @author Matthew Corfiatis
  */
 public class Trip {
     private final String id;
-    private final List<Stop> stops = new ArrayList<>();
-    private boolean lockStops;
+    private StopGraph graph; // Graph this trip is part of, null until the graph is built.
+    private int index = -1;
+    private List<Stop> stops = Collections.emptyList();
 
     public Trip(String id) {
         this.id = id;
@@ -22,26 +22,35 @@ public class Trip {
         return id;
     }
 
-    public List<Stop> getStops() {
-        return Collections.unmodifiableList(stops);
+    /**
+     * Graph that contains the stops of this trip.
+     * @return The graph or null if the trip has not been added to a graph.
+     */
+    public StopGraph getGraph() {
+        return graph;
     }
 
     /**
-     * Adds a stop to the trip.
-     * @param stop Stop to add.
-     * @throws IllegalAccessError When method is called but the stops have been locked.
+     * Index of this trip in its graph.
+     * @return The index or -1 if the trip has not been added to a graph.
      */
-    public void addStop(Stop stop) throws IllegalAccessError {
-        if(lockStops)
-            throw new IllegalAccessError();
-        stops.add(stop);
+    public int getIndex() {
+        return index;
+    }
+
+    public List<Stop> getStops() {
+        return stops;
     }
 
     /**
-     * Prevents stops from being added after this method is called.
+     * Makes this trip a view over a position in a graph.
+     * @param graph Graph containing the trip.
+     * @param index Index of the trip in the graph.
      */
-    public void lockStops() {
-        lockStops = true;
+    void attach(StopGraph graph, int index) {
+        this.graph = graph;
+        this.index = index;
+        this.stops = graph.tripStops(index);
     }
 
     @Override
@@ -54,6 +63,6 @@ public class Trip {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId());
+        return Objects.hashCode(getId()); // Objects.hash allocates an array on every call
     }
 }
@@ -0,0 +1,88 @@
+package gui;
+
+import javax.swing.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs searches on a background thread while the user types.
+ * <p>
+ * A search only starts once no newer search has been submitted for a short delay, so a burst of
+ * keystrokes runs one search. Every submission makes the earlier ones stale: a stale search that
+ * has not started is cancelled, a running one can check whether it is stale to give up early, and
+ * a stale result is never applied. Results are applied on the Swing event thread.
+ *
+ * @param <T> Type of the search results.
+ * @author Matthew Corfiatis
+ */
+public class AsyncSearch<T> {
+    private final long delayMillis;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stop-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong latest = new AtomicLong(); // Number of the newest submission
+    private ScheduledFuture<?> pending; // Only used on the event thread
+
+    /**
+     * @param delayMillis Time to wait for more keystrokes before searching, in milliseconds.
+     */
+    public AsyncSearch(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Schedules a search, making every earlier search stale. Must be called on the event thread.
+     *
+     * @param search Runs the search on the background thread. It is given a check for whether it
+     *               has become stale, and can return null to give up.
+     * @param apply  Applies the result on the event thread, only called if no newer search was submitted.
+     */
+    public void submit(Function<BooleanSupplier, T> search, Consumer<T> apply) {
+        long submission = invalidate();
+        BooleanSupplier stale = () -> latest.get() != submission;
+
+        pending = executor.schedule(() -> {
+            if (stale.getAsBoolean())
+                return;
+
+            T result = search.apply(stale);
+            if (result == null || stale.getAsBoolean())
+                return;
+
+            SwingUtilities.invokeLater(() -> {
+                if (!stale.getAsBoolean())
+                    apply.accept(result);
+            });
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes every submitted search stale. Must be called on the event thread.
+     */
+    public void cancel() {
+        invalidate();
+    }
+
+    /**
+     * Makes every submitted search stale and cancels the one waiting to start.
+     *
+     * @return Number of the newest submission, which is not stale.
+     */
+    private long invalidate() {
+        long submission = latest.incrementAndGet();
+
+        if (pending != null)
+            pending.cancel(false);
+        pending = null;
+
+        return submission;
+    }
+}
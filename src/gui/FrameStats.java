@@ -0,0 +1,170 @@
+package gui;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Records how long frames take to draw, how much they allocate and how many stops they draw.
+ * <p>
+ * The most recent frames are kept in a ring buffer, so the statistics describe recent drawing
+ * and recording a frame never allocates. Allocations are measured per thread, which needs a
+ * HotSpot based JVM; elsewhere they are reported as -1.
+ *
+ * @author Matthew Corfiatis
+ */
+public class FrameStats {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final long[] times; // Nanoseconds
+    private final long[] allocations; // Bytes
+    private final int[] stopsDrawn;
+    private int count = 0; // Frames recorded, including any that have been overwritten
+    private long frameStart;
+    private long frameAllocationStart;
+
+    /**
+     * @param capacity Number of recent frames to keep.
+     */
+    public FrameStats(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+
+        times = new long[capacity];
+        allocations = new long[capacity];
+        stopsDrawn = new int[capacity];
+    }
+
+    /**
+     * Starts timing a frame on the current thread.
+     */
+    public void start() {
+        frameAllocationStart = allocatedBytes();
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes timing the frame started on the current thread.
+     *
+     * @param stops Number of stops the frame drew.
+     */
+    public void end(int stops) {
+        long time = System.nanoTime() - frameStart;
+        long allocated = allocatedBytes();
+
+        int slot = count++ % times.length;
+        times[slot] = time;
+        allocations[slot] = allocated < 0 ? -1 : allocated - frameAllocationStart;
+        stopsDrawn[slot] = stops;
+    }
+
+    /**
+     * Forgets every recorded frame.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Number of frames the statistics are calculated from.
+     */
+    public int getFrameCount() {
+        return Math.min(count, times.length);
+    }
+
+    /**
+     * Finds a percentile of the frame times.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Frame time in milliseconds, or 0 if no frames were recorded.
+     */
+    public double getFrameTime(double percentile) {
+        int frames = getFrameCount();
+        if (frames == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(times, frames);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * frames) - 1;
+        return sorted[Math.max(0, Math.min(frames - 1, index))] / 1e6;
+    }
+
+    /**
+     * Mean bytes allocated per frame, or -1 if allocations can not be measured.
+     */
+    public double getMeanAllocation() {
+        return mean(allocations);
+    }
+
+    /**
+     * Mean number of stops drawn per frame.
+     */
+    public double getMeanStopsDrawn() {
+        int frames = getFrameCount();
+        long total = 0;
+        for (int i = 0; i < frames; ++i)
+            total += stopsDrawn[i];
+        return frames == 0 ? 0 : (double) total / frames;
+    }
+
+    /**
+     * Number of stops drawn by the last frame.
+     */
+    public int getLastStopsDrawn() {
+        return count == 0 ? 0 : stopsDrawn[(count - 1) % times.length];
+    }
+
+    /**
+     * Draws the statistics in the top left corner of the drawing area.
+     */
+    public void drawOverlay(Graphics2D g2d) {
+        String[] lines = {
+                String.format("Frames: %d", getFrameCount()),
+                String.format("Frame p50: %.2f ms  p99: %.2f ms", getFrameTime(50), getFrameTime(99)),
+                String.format("Allocated: %.1f KB/frame", getMeanAllocation() / 1024),
+                String.format("Stops drawn: %d", getLastStopsDrawn())
+        };
+
+        FontMetrics metrics = g2d.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int width = 0;
+        for (String line : lines)
+            width = Math.max(width, metrics.stringWidth(line));
+
+        g2d.setColor(new Color(0, 0, 0, 180));
+        g2d.fillRect(5, 5, width + 10, lineHeight * lines.length + 10);
+        g2d.setColor(Color.white);
+        for (int i = 0; i < lines.length; ++i)
+            g2d.drawString(lines[i], 10, 10 + metrics.getAscent() + i * lineHeight);
+    }
+
+    private double mean(long[] values) {
+        int frames = getFrameCount();
+        if (frames == 0)
+            return 0;
+
+        long total = 0;
+        for (int i = 0; i < frames; ++i) {
+            if (values[i] < 0)
+                return -1;
+            total += values[i];
+        }
+        return (double) total / frames;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+            return null;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            return null;
+
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -71,7 +71,8 @@ public abstract class GUI {
 	protected abstract void onMouseDragged(double draggedX, double draggedY);
 
 	/**
-	 * Is called whenever the mouse is moved on the drawing area.
+	 * Is called whenever the mouse is moved on the drawing area. The
+	 * drawing area is not redrawn, call redraw() if anything changed.
 	 * @param x Cursor X
 	 * @param y Cursor Y
 	 */
@@ -83,10 +84,17 @@ public abstract class GUI {
 	protected abstract void onMouseDragStart();
 
 	/**
-	 * Is called whenever the mouse stops dragging.
+	 * Is called whenever the mouse stops dragging. The drawing area is not
+	 * redrawn, call redraw() if anything changed.
 	 */
 	protected abstract void onMouseDragStop();
 
+	/**
+	 * Is called when the frame statistics button is toggled.
+	 * @param show Whether the statistics should be shown.
+	 */
+	protected abstract void onShowStats(boolean show);
+
 
 	/**
 	 * Is called when the user has successfully selected a directory to load the
@@ -99,6 +107,15 @@ public abstract class GUI {
 	 */
 	protected abstract void onLoad(File stopFile, File tripFile);
 
+	/**
+	 * Is called when the user has selected a delta file to apply to the
+	 * loaded data.
+	 * 
+	 * @param deltaFile
+	 *            the delta file listing changed stops and trips
+	 */
+	protected abstract void onUpdate(File deltaFile);
+
 	// here are some useful methods you'll need.
 
 	/**
@@ -124,12 +141,13 @@ public abstract class GUI {
 	}
 
 	/**
-	 * Redraws the window (including drawing pane). This is already done
-	 * whenever a button is pressed or the search box is updated, so you
-	 * probably won't need to call this.
+	 * Redraws the drawing pane. This is already done whenever a button is
+	 * pressed or the map is clicked, dragged or scrolled, so you probably
+	 * won't need to call this. The rest of the window repaints itself when
+	 * its contents change.
 	 */
 	public void redraw() {
-		frame.repaint();
+		drawing.repaint();
 	}
 
 	public void clearSuggestions() {
@@ -249,6 +267,20 @@ public abstract class GUI {
 			}
 		});
 
+		JButton update = new JButton("Update");
+		update.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ev) {
+				fileChooser.setCurrentDirectory(new File("."));
+				fileChooser.setDialogTitle("Select delta file");
+				fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+				if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+					onUpdate(fileChooser.getSelectedFile());
+					redraw();
+				}
+			}
+		});
+
 		JButton west = new JButton("\u2190");
 		west.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
@@ -281,6 +313,14 @@ public abstract class GUI {
 			}
 		});
 
+		final JToggleButton stats = new JToggleButton("Stats");
+		stats.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ev) {
+				onShowStats(stats.isSelected());
+				redraw();
+			}
+		});
+
 		JButton in = new JButton("+");
 		in.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
@@ -306,19 +346,16 @@ public abstract class GUI {
 			@Override
 			public void insertUpdate(DocumentEvent documentEvent) {
 				onSearch();
-				redraw();
 			}
 
 			@Override
 			public void removeUpdate(DocumentEvent documentEvent) {
 				onSearch();
-				redraw();
 			}
 
 			@Override
 			public void changedUpdate(DocumentEvent documentEvent) {
 				onSearch();
-				redraw();
 			}
 		});
 		search.addFocusListener(new FocusListener() {
@@ -356,11 +393,12 @@ public abstract class GUI {
 		controls.setBorder(edge);
 
 		JPanel loadquit = new JPanel();
-		loadquit.setLayout(new GridLayout(2, 1));
+		loadquit.setLayout(new GridLayout(3, 1));
 		// manually set a fixed size for the panel containing the load and quit
 		// buttons (doesn't change with window resize).
 		loadquit.setMaximumSize(new Dimension(50, 100));
 		loadquit.add(load);
+		loadquit.add(update);
 		loadquit.add(quit);
 		controls.add(loadquit);
 		// rigid areas are invisible components that can be used to space
@@ -378,6 +416,8 @@ public abstract class GUI {
 		navigation.add(east);
 		controls.add(navigation);
 		controls.add(Box.createRigidArea(new Dimension(15, 0)));
+		controls.add(stats);
+		controls.add(Box.createRigidArea(new Dimension(15, 0)));
 		// glue is another invisible component that grows to take up all the
 		// space it can on resize.
 		controls.add(Box.createHorizontalGlue());
@@ -406,7 +446,6 @@ public abstract class GUI {
 		drawing.addMouseListener(new MouseAdapter() {
 			public void mouseReleased(MouseEvent e) {
 				onMouseDragStop();
-				redraw();
 			}
 
 			@Override
@@ -437,7 +476,6 @@ public abstract class GUI {
 
 			public void mouseMoved(MouseEvent e) {
 				onMouseMoved(e.getX(), e.getY());
-				redraw();
 			}
 		});
 
@@ -3,21 +3,23 @@ package gui;
 import common.Location;
 import common.Stop;
 import common.Trip;
-import io.JourneyReader;
+import io.FeedDelta;
+import io.FeedUpdater;
 import io.ParseError;
+import search.Network;
 import search.StopSearcher;
-import search.quad.Quad;
 import search.trie.PrefixMatch;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
-import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -26,8 +28,8 @@ import java.util.stream.Collectors;
  * @author Matthew Corfiatis
  */
 public class JourneyPlanner extends GUI {
-    private StopSearcher stopSearcher;
-    private Collection<Stop> stops;
+    private volatile Network network; // Swapped whole on the event thread, never changed in place
+    private FeedUpdater feedUpdater; // Only used on the update thread
     private Set<Stop> selectedStops = new HashSet<>();
     private Set<Trip> selectedTrips = new HashSet<>();
 
@@ -36,10 +38,8 @@ public class JourneyPlanner extends GUI {
     private static final double MIN_SCALE = 0.1;
     private static final double MAX_SCALE = 10000;
     private static final double MOVE_CHANGE = 30;
-    private static final float STOP_SIZE = 0.10f;
-    private static final float OUTLINE_SIZE = 0.004f;
-    private static final int MIN_STOP_SIZE = 3;
-    private static final boolean DISPLAY_QUADS = false;
+    private static final int MAX_SUGGESTIONS = 10; // Ranked matches shown in the search box and text output
+    private static final long SEARCH_DELAY = 100; // Milliseconds to wait for the next keystroke before searching
     private double scale = 10;
     private double originX = 0, originY = 0;
     private double cursorX = 0, cursorY = 0;
@@ -47,97 +47,22 @@ public class JourneyPlanner extends GUI {
     private double dragStartOriginX = 0;
     private double dragStartOriginY = 0;
     private String previousSearchString = null;
+    private final ExecutorService updateExecutor = Executors.newSingleThreadExecutor(); // Reads the network and delta files in order
+    private final AsyncSearch<SearchResult> search = new AsyncSearch<>(SEARCH_DELAY);
+    private final MapRenderer renderer = new MapRenderer();
 
     @Override
     protected void redraw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-
-        Dimension drawingAreaSize = getDrawingAreaDimension();
-        g2d.setColor(Color.decode("#212121"));
-        g2d.fillRect(0, 0, drawingAreaSize.width, drawingAreaSize.height);
-
-        if (stops == null)
-            return;
-
-        if (stopSearcher != null && DISPLAY_QUADS) {
-            for (Quad q : stopSearcher.getQuads()) {
-                Rectangle2D rect = q.getScreenBounds(new Point2D.Double(originX, originY), scale,
-                        new Point2D.Double(getDrawingAreaDimension().getWidth() / 2, getDrawingAreaDimension().getHeight() / 2));
-
-                g2d.setColor(Color.white);
-                g2d.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
-            }
-        }
-        // TODO: Use assertions.
-
         origin = new Location(originX, originY);
-
-        int size = (int) (scale * STOP_SIZE);
-        if (size < MIN_STOP_SIZE)
-            size = MIN_STOP_SIZE;
-
-        Map<Stop, Point> generatedStopPoints = new HashMap<>(); // Map of stop locations converted to points
-        for (Stop stop : stops) {
-            Point point = stop.getLocation().asPoint(origin, scale);
-            point.translate(drawingAreaSize.width / 2, drawingAreaSize.height / 2);
-
-            generatedStopPoints.put(stop, point);
-        }
-
-        Set<Stop> selectedTripStops = new HashSet<>();
-
-        float tripWidth = 2;
-        float tripHue = 0;
-        float hueStep = 1.0f / selectedTrips.size();
-
-        for (Trip trip : selectedTrips) {
-            Stop previousTripStop = null;
-
-            g2d.setColor(Color.getHSBColor(tripHue, 1, 1));
-            tripHue += hueStep;
-            for (Stop stop : trip.getStops()) {
-                if (previousTripStop == null) {
-                    previousTripStop = stop;
-                    continue;
-                }
-
-                Point point = generatedStopPoints.get(stop);
-                Point previousPoint = generatedStopPoints.get(previousTripStop);
-
-                // Make dashed stroke
-                Stroke dashed = new BasicStroke(tripWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{0.1f * (float) scale, 0.1f * (float) scale * tripHue}, 0);
-                g2d.setStroke(dashed);
-                g2d.drawLine(point.x, point.y, previousPoint.x, previousPoint.y);
-
-                previousTripStop = stop;
-            }
-
-            selectedTripStops.addAll(trip.getStops());
-        }
-
-        // TODO: make draw method inside stop and trip?
-        for (Stop stop : stops) {
-            if (selectedStops.contains(stop))
-                g2d.setColor(Color.RED);
-            else if (selectedTripStops.contains(stop))
-                g2d.setColor(Color.GREEN);
-            else
-                g2d.setColor(Color.white);
-
-            Point point = generatedStopPoints.get(stop);
-
-            g2d.fillOval(point.x - (size / 2), point.y - (size / 2), size, size);
-
-            float penSize = (float) scale * OUTLINE_SIZE;
-            g2d.setStroke(new BasicStroke(penSize));
-            g2d.setColor(Color.black);
-            g2d.drawOval(point.x - (size / 2), point.y - (size / 2), size, size);
-        }
+        Network current = network;
+        renderer.render((Graphics2D) g, getDrawingAreaDimension(), current == null ? null : current.getSearcher(),
+                origin, scale, selectedStops, selectedTrips);
     }
 
     @Override
     protected void onClick(MouseEvent e) {
-        if (stopSearcher == null) // Don't try to search if no stops exist yet.
+        Network current = network;
+        if (current == null) // Don't try to search if no stops exist yet.
             return;
 
         // Find stop closest to pointer
@@ -148,7 +73,7 @@ public class JourneyPlanner extends GUI {
 
         Location cursorLocation = Location.newFromPoint(cursorPoint, origin, scale);
 
-        Stop closest = stopSearcher.searchClosest(cursorLocation);
+        Stop closest = current.searchClosest(cursorLocation);
         if (closest == null)
             return;
 
@@ -186,51 +111,82 @@ public class JourneyPlanner extends GUI {
 
     }
 
+    @Override
+    protected void onShowStats(boolean show) {
+        renderer.setShowStats(show);
+    }
+
     @Override
     protected void onSearch() {
-        if (stopSearcher == null)
+        Network current = network;
+        if (current == null)
             return;
 
         String query = (String) getSearchBox().getEditor().getItem();
         if(query.length() == 0) {
+            search.cancel();
             return;
         }
 
-        Collection<PrefixMatch> stops = stopSearcher.searchPrefix(query);
-
-        if (stops.size() == 0) { // If no results
-            getTextOutputArea().setText("No results found.");
-            selectedStops = new HashSet<>();
-            selectedTrips = new HashSet<>();
+        // The search keeps using this network's searcher even if an update is swapped in meanwhile,
+        // the update cancels the search so its result is never shown.
+        StopSearcher searcher = current.getSearcher();
+        search.submit(stale -> findStops(searcher, query, stale), this::showSearchResult);
+    }
 
-            SwingUtilities.invokeLater(() -> {
-                String text = (String) getSearchBox().getEditor().getItem();
-                if(text.equals(previousSearchString))
-                    return;
+    /**
+     * Searches for stops matching a query, runs on the search thread.
+     *
+     * @param searcher Searcher to use.
+     * @param query    Text typed into the search box.
+     * @param stale    Whether a newer query has been typed.
+     * @return The stops found, or null if the query became stale.
+     */
+    private static SearchResult findStops(StopSearcher searcher, String query, BooleanSupplier stale) {
+        Collection<PrefixMatch> stops = searcher.searchPrefix(query);
+
+        // Fall back to matching the words anywhere in the names.
+        boolean byWords = stops.isEmpty();
+        if (byWords) {
+            if (stale.getAsBoolean())
+                return null;
+            stops = searcher.searchWords(query);
+        }
 
-                previousSearchString = text;
+        if (stale.getAsBoolean())
+            return null;
 
-                clearSuggestions();
-                getSearchBox().getEditor().setItem(text);
-            });
-        } else if (stops.size() == 1) { // If single result, display info
-            SwingUtilities.invokeLater(() -> {
-                String text = (String) getSearchBox().getEditor().getItem();
-                if(text.equals(previousSearchString))
-                    return;
+        // If no results, suggest names that are close to the query.
+        if (stops.isEmpty())
+            return new SearchResult(query, stops, searcher.searchFuzzy(query, MAX_SUGGESTIONS));
 
-                getSearchBox().setEditable(false);
-                clearSuggestions();
-                addAllSuggestions(stops.stream().map(Objects::toString).collect(Collectors.toList()));
+        Collection<PrefixMatch> bestMatches = stops.size() == 1 ? stops : byWords ?
+                searcher.searchWords(query, MAX_SUGGESTIONS) : searcher.searchPrefix(query, MAX_SUGGESTIONS);
+        return new SearchResult(query, stops, bestMatches);
+    }
 
-                getSearchBox().setEditable(true);
-                getSearchBox().getEditor().setItem(text);
+    /**
+     * Shows the stops found by a search, runs on the event thread.
+     *
+     * @param result Stops found for the query.
+     */
+    private void showSearchResult(SearchResult result) {
+        String text = (String) getSearchBox().getEditor().getItem();
+        if (!text.equals(result.query))
+            return; // Search box has changed since the search was submitted.
 
-                getSearchBox().requestFocus();
+        Collection<PrefixMatch> stops = result.stops;
 
-                previousSearchString = text;
-            });
+        if (stops.size() == 0) { // If no results
+            if (result.bestMatches.isEmpty())
+                getTextOutputArea().setText("No results found.");
+            else
+                getTextOutputArea().setText("No results found. Did you mean:\n" +
+                        result.bestMatches.stream().map(Objects::toString).collect(Collectors.joining("\n")));
 
+            selectedStops = new HashSet<>();
+            selectedTrips = new HashSet<>();
+        } else if (stops.size() == 1) { // If single result, display info
             Stop stop = stops.iterator().next().getStop();
 
             // Select stop.
@@ -241,24 +197,11 @@ public class JourneyPlanner extends GUI {
             selectedTrips = new HashSet<>();
             selectedTrips.addAll(stop.getTrips());
 
-            printStopInfo(stops.iterator().next().getStop());
-        } else { // If multiple stops highlight all
-            SwingUtilities.invokeLater(() -> {
-                String text = (String) getSearchBox().getEditor().getItem();
-                if(text.equals(previousSearchString))
-                    return;
-
-                previousSearchString = text;
-
-                getSearchBox().setEditable(false);
-                clearSuggestions();
-                addSuggestion(text);
-                addAllSuggestions(stops.stream().map(Objects::toString).collect(Collectors.toList()));
-                getSearchBox().setEditable(true);
-                getSearchBox().getEditor().setItem(text);
-                getSearchBox().requestFocus();
-            });
-            String result = stops.stream().map(Objects::toString).collect(Collectors.joining("\n"));
+            printStopInfo(stop);
+        } else { // If multiple stops highlight all, but only list the most popular
+            String output = result.bestMatches.stream().map(Objects::toString).collect(Collectors.joining("\n"));
+            if (stops.size() > result.bestMatches.size())
+                output += String.format("\n... and %d more", stops.size() - result.bestMatches.size());
 
             // Select stops.
             selectedStops = stops.stream().map(x -> x.getStop()).collect(Collectors.toSet());
@@ -266,7 +209,37 @@ public class JourneyPlanner extends GUI {
             // Select trips.
             selectedTrips = selectedStops.stream().flatMap(x -> x.getTrips().stream()).collect(Collectors.toSet());
 
-            getTextOutputArea().setText(result);
+            getTextOutputArea().setText(output);
+        }
+
+        if (!text.equals(previousSearchString)) {
+            previousSearchString = text;
+
+            getSearchBox().setEditable(false);
+            clearSuggestions();
+            if (stops.size() > 1)
+                addSuggestion(text);
+            addAllSuggestions(result.bestMatches.stream().map(Objects::toString).collect(Collectors.toList()));
+            getSearchBox().setEditable(true);
+            getSearchBox().getEditor().setItem(text);
+            getSearchBox().requestFocus();
+        }
+
+        redraw();
+    }
+
+    /**
+     * Stops found by a search.
+     */
+    private static class SearchResult {
+        private final String query;
+        private final Collection<PrefixMatch> stops; // Every match, or empty if nothing matched
+        private final Collection<PrefixMatch> bestMatches; // Matches to list, or close matches if nothing matched
+
+        private SearchResult(String query, Collection<PrefixMatch> stops, Collection<PrefixMatch> bestMatches) {
+            this.query = query;
+            this.stops = stops;
+            this.bestMatches = bestMatches;
         }
     }
 
@@ -311,27 +284,118 @@ public class JourneyPlanner extends GUI {
 
     @Override
     protected void onLoad(File stopFile, File tripFile) {
-        try {
-            selectedStops = new HashSet<>();
-            selectedTrips = new HashSet<>();
+        // Read and index on the update thread so the window stays responsive, and any update
+        // chosen after the load is applied to the new network.
+        updateExecutor.execute(() -> {
+            Network loaded;
+            try {
+                loaded = Network.load(stopFile, tripFile, false);
+                feedUpdater = new FeedUpdater(loaded);
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "There was an error reading one of the files: " + ex.getMessage(), "Error Reading File", JOptionPane.ERROR_MESSAGE));
+                return;
+            } catch (ParseError ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Invalid data encountered while reading one of the files: " + ex.getMessage(), "Error Parsing File", JOptionPane.ERROR_MESSAGE));
+                return;
+            }
 
-            stops = JourneyReader.getConnectedStops(stopFile, tripFile);
-            stopSearcher = new StopSearcher(stops);
-
-            getTextOutputArea().setText(String.format(
-                    "Loaded:%n" +
-                            "Stops: %d%n" +
-                            "Trips: %d%n" +
-                            "Connections: %d",
-                    JourneyReader.getStopCount(),
-                    JourneyReader.getTripCount(),
-                    JourneyReader.getConnectionCount()
-            ));
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null, "There was an error reading one of the files: " + ex.getMessage(), "Error Reading File", JOptionPane.ERROR_MESSAGE);
-        } catch (ParseError ex) {
-            JOptionPane.showMessageDialog(null, "Invalid data encountered while reading one of the files: " + ex.getMessage(), "Error Parsing File", JOptionPane.ERROR_MESSAGE);
-        }
+            SwingUtilities.invokeLater(() -> {
+                search.cancel();
+                selectedStops = new HashSet<>();
+                selectedTrips = new HashSet<>();
+
+                network = loaded;
+                renderer.getStopLayer().invalidateAll();
+
+                getTextOutputArea().setText(String.format(
+                        "Loaded:%n" +
+                                "Stops: %d%n" +
+                                "Trips: %d%n" +
+                                "Connections: %d",
+                        loaded.getStopCount(),
+                        loaded.getTripCount(),
+                        loaded.getConnectionCount()
+                ));
+                redraw();
+            });
+        });
+    }
+
+    @Override
+    protected void onUpdate(File deltaFile) {
+        applyUpdate(deltaFile);
+    }
+
+    /**
+     * Applies a delta file to the loaded stops and trips.
+     * The file is read and the new version of the network is built on a background thread, then
+     * it is swapped in on the Swing event thread in a single step so drawing and searching never
+     * see a partially applied update.
+     *
+     * @param deltaFile Delta file to apply.
+     */
+    public void applyUpdate(File deltaFile) {
+        updateExecutor.execute(() -> {
+            FeedUpdater updater = feedUpdater;
+            if (updater == null)
+                return; // Nothing loaded to update.
+
+            FeedDelta delta;
+            try {
+                delta = FeedDelta.read(deltaFile);
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "There was an error reading the update file: " + ex.getMessage(), "Error Reading File", JOptionPane.ERROR_MESSAGE));
+                return;
+            } catch (ParseError ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Invalid data encountered while reading the update file: " + ex.getMessage(), "Error Parsing File", JOptionPane.ERROR_MESSAGE));
+                return;
+            }
+
+            Network previous = updater.getCurrent();
+            Network updated;
+            try {
+                updated = updater.apply(delta);
+            } catch (ParseError ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Update could not be applied: " + ex.getMessage(), "Error Applying Update", JOptionPane.ERROR_MESSAGE));
+                return;
+            }
+
+            // Redraw where stops were before and after the update.
+            Collection<Location> changed = new ArrayList<>();
+            for (String stopId : delta.getRemovedStops())
+                changed.add(previous.getStop(stopId).getLocation());
+            for (Stop stop : delta.getPutStops().values()) {
+                Stop oldStop = previous.getStop(stop.getId());
+                if (oldStop != null)
+                    changed.add(oldStop.getLocation());
+                changed.add(stop.getLocation());
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                search.cancel(); // Results may include stops that the update removes
+                network = updated;
+
+                for (Location location : changed)
+                    renderer.getStopLayer().invalidate(location);
+
+                // Selections may refer to replaced or removed stops and trips.
+                selectedStops = new HashSet<>();
+                selectedTrips = new HashSet<>();
+
+                getTextOutputArea().setText(String.format(
+                        "Updated:%n" +
+                                "Stops changed: %d%n" +
+                                "Stops removed: %d%n" +
+                                "Trips changed: %d%n" +
+                                "Trips removed: %d",
+                        delta.getPutStops().size(),
+                        delta.getRemovedStops().size(),
+                        delta.getPutTrips().size(),
+                        delta.getRemovedTrips().size()
+                ));
+                redraw();
+            });
+        });
     }
 
     /**
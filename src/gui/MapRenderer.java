@@ -0,0 +1,182 @@
+package gui;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import search.StopSearcher;
+import search.quad.FlatQuadTree;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Draws the map of stops and the selected stops and trips.
+ * <p>
+ * Drawing does not depend on the window, so the same frames can be drawn into an image to
+ * measure them. Every frame is recorded in the frame statistics, which can be drawn over the map.
+ *
+ * @author Matthew Corfiatis
+ */
+public class MapRenderer {
+    private static final boolean DISPLAY_QUADS = false;
+    private static final int STATS_FRAMES = 240; // Recent frames the statistics are calculated from
+
+    private final StopLayer stopLayer = new StopLayer();
+    private final FrameStats stats;
+    private boolean showStats = false;
+
+    public MapRenderer() {
+        this(new FrameStats(STATS_FRAMES));
+    }
+
+    /**
+     * @param stats Records every frame that is drawn.
+     */
+    public MapRenderer(FrameStats stats) {
+        if (stats == null)
+            throw new IllegalArgumentException("Stats cannot be null.");
+
+        this.stats = stats;
+    }
+
+    public StopLayer getStopLayer() {
+        return stopLayer;
+    }
+
+    public FrameStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Sets whether the frame statistics are drawn over the map.
+     */
+    public void setShowStats(boolean showStats) {
+        this.showStats = showStats;
+    }
+
+    /**
+     * Draws a frame.
+     *
+     * @param g2d           Graphics to draw on.
+     * @param size          Size of the drawing area.
+     * @param searcher      Searcher holding the stops to draw, or null if nothing is loaded.
+     * @param origin        Location at the centre of the drawing area.
+     * @param scale         Pixels per unit of distance.
+     * @param selectedStops Stops to highlight.
+     * @param selectedTrips Trips to draw.
+     */
+    public void render(Graphics2D g2d, Dimension size, StopSearcher searcher, Location origin, double scale,
+                       Collection<Stop> selectedStops, Collection<Trip> selectedTrips) {
+        stats.start();
+
+        if (searcher == null) {
+            g2d.setColor(StopLayer.BACKGROUND);
+            g2d.fillRect(0, 0, size.width, size.height);
+            stats.end(0);
+            drawStats(g2d);
+            return;
+        }
+
+        // Every stop comes from the cached layer, only the selection is drawn each frame.
+        int drawn = stopLayer.paint(g2d, searcher, origin, scale, size);
+
+        if (DISPLAY_QUADS) {
+            FlatQuadTree tree = searcher.getTree();
+            g2d.setColor(Color.white);
+            for (int node = 0; node < tree.getNodeCount(); ++node) {
+                Rectangle2D bounds = tree.getNodeBounds(node);
+                double x = (bounds.getX() - origin.x) * scale + size.getWidth() / 2;
+                double y = (origin.y - bounds.getMaxY()) * scale + size.getHeight() / 2;
+                g2d.drawRect((int) x, (int) y, (int) (bounds.getWidth() * scale), (int) (bounds.getHeight() * scale));
+            }
+        }
+        // TODO: Use assertions.
+
+        int stopSize = StopLayer.stopSize(scale);
+
+        // Corners of the drawing area, grown by a stop so stops on the edges are still drawn.
+        int halfWidth = size.width / 2;
+        int halfHeight = size.height / 2;
+        Location min = Location.newFromPoint(new Point(-halfWidth - stopSize, halfHeight + stopSize), origin, scale);
+        Location max = Location.newFromPoint(new Point(halfWidth + stopSize, -halfHeight - stopSize), origin, scale);
+
+        Set<Stop> selectedTripStops = new HashSet<>();
+
+        float tripWidth = 2;
+        float tripHue = 0;
+        float hueStep = 1.0f / selectedTrips.size();
+
+        Point point = new Point();
+        Point previousPoint = new Point();
+
+        for (Trip trip : selectedTrips) {
+            StopGraph graph = trip.getGraph();
+
+            g2d.setColor(Color.getHSBColor(tripHue, 1, 1));
+            tripHue += hueStep;
+
+            // Make dashed stroke
+            Stroke dashed = new BasicStroke(tripWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{0.1f * (float) scale, 0.1f * (float) scale * tripHue}, 0);
+            g2d.setStroke(dashed);
+
+            // Read the co-ordinates from the graph's arrays instead of each stop's Location.
+            for (int position = graph.tripStart(trip.getIndex()); position < graph.tripEnd(trip.getIndex()); ++position) {
+                int stop = graph.tripStop(position);
+                stopLayer.toScreen(graph.stopX(stop), graph.stopY(stop), point);
+                if (position > graph.tripStart(trip.getIndex()))
+                    g2d.drawLine(point.x, point.y, previousPoint.x, previousPoint.y);
+
+                Point swap = previousPoint;
+                previousPoint = point;
+                point = swap;
+            }
+
+            selectedTripStops.addAll(trip.getStops());
+        }
+
+        // TODO: make draw method inside stop and trip?
+        g2d.setStroke(StopLayer.outline(scale));
+
+        // Highlighted stops are drawn on top of the layer, even where it clustered them.
+        for (Stop stop : selectedTripStops) {
+            if (!selectedStops.contains(stop) && isInside(stop, min, max)) {
+                StopLayer.drawStop(g2d, toScreen(stop, point), Color.GREEN, stopSize);
+                ++drawn;
+            }
+        }
+
+        for (Stop stop : selectedStops) {
+            if (isInside(stop, min, max)) {
+                StopLayer.drawStop(g2d, toScreen(stop, point), Color.RED, stopSize);
+                ++drawn;
+            }
+        }
+
+        stats.end(drawn);
+        drawStats(g2d);
+    }
+
+    /**
+     * Draws the statistics over the map if they are shown. Not included in the frame time.
+     */
+    private void drawStats(Graphics2D g2d) {
+        if (showStats)
+            stats.drawOverlay(g2d);
+    }
+
+    private Point toScreen(Stop stop, Point point) {
+        StopGraph graph = stop.getGraph();
+        return stopLayer.toScreen(graph.stopX(stop.getIndex()), graph.stopY(stop.getIndex()), point);
+    }
+
+    private static boolean isInside(Stop stop, Location min, Location max) {
+        StopGraph graph = stop.getGraph();
+        double x = graph.stopX(stop.getIndex());
+        double y = graph.stopY(stop.getIndex());
+        return x >= min.x && x <= max.x && y >= min.y && y <= max.y;
+    }
+}
@@ -0,0 +1,204 @@
+package gui;
+
+import common.Location;
+import common.StopGraph;
+import search.StopSearcher;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws every stop onto a cached image that is reused until the zoom level changes.
+ * <p>
+ * The image covers the drawing area plus half of it again on every side, so panning only moves
+ * the image until the view reaches its edge. Changed stops only redraw the area around them:
+ * a changed stop marks its location dirty, and before the image is next drawn each dirty area is
+ * cleared and the stops inside it are drawn again.
+ *
+ * @author Matthew Corfiatis
+ */
+public class StopLayer {
+    static final Color BACKGROUND = Color.decode("#212121");
+    static final Color CLUSTER_COLOR = Color.lightGray; // Stops standing in for a quad too small to draw in detail
+    private static final float STOP_SIZE = 0.10f;
+    private static final float OUTLINE_SIZE = 0.004f;
+    private static final int MIN_STOP_SIZE = 3;
+
+    private BufferedImage image;
+    private double imageScale;
+    private double imageLeft, imageTop; // Location of the top left corner of the image
+    private int left, top; // Where the image was last drawn on the drawing area
+    private final List<Location> dirty = new ArrayList<>();
+    private int drawn; // Stops drawn onto the image by the current paint
+
+    /**
+     * Gets the size in pixels that stops are drawn at.
+     *
+     * @param scale Pixels per unit of distance.
+     */
+    static int stopSize(double scale) {
+        return Math.max((int) (scale * STOP_SIZE), MIN_STOP_SIZE);
+    }
+
+    /**
+     * Gets the stroke that stops are outlined with.
+     *
+     * @param scale Pixels per unit of distance.
+     */
+    static Stroke outline(double scale) {
+        return new BasicStroke((float) scale * OUTLINE_SIZE);
+    }
+
+    /**
+     * Draws a stop as a filled circle with an outline in the current stroke.
+     *
+     * @param point Centre of the stop.
+     */
+    static void drawStop(Graphics2D g2d, Point point, Color color, int size) {
+        g2d.setColor(color);
+        g2d.fillOval(point.x - (size / 2), point.y - (size / 2), size, size);
+        g2d.setColor(Color.black);
+        g2d.drawOval(point.x - (size / 2), point.y - (size / 2), size, size);
+    }
+
+    /**
+     * Marks the area around a stop's location to be drawn again, after the stop was added,
+     * moved or removed.
+     */
+    public void invalidate(Location location) {
+        if (image != null)
+            dirty.add(location);
+    }
+
+    /**
+     * Discards the cached image, so every stop is drawn again.
+     */
+    public void invalidateAll() {
+        image = null;
+        dirty.clear();
+    }
+
+    /**
+     * Draws the stops onto the drawing area, redrawing the cached image first if it is out of date.
+     *
+     * @param g2d      Graphics of the drawing area.
+     * @param searcher Searcher holding the stops to draw.
+     * @param origin   Location at the centre of the drawing area.
+     * @param scale    Pixels per unit of distance.
+     * @param size     Size of the drawing area.
+     * @return Number of stops drawn onto the cached image, 0 if it was already up to date.
+     */
+    public int paint(Graphics2D g2d, StopSearcher searcher, Location origin, double scale, Dimension size) {
+        left = imageX(origin, scale, size);
+        top = imageY(origin, scale, size);
+        drawn = 0;
+
+        boolean coversView = image != null && left <= 0 && top <= 0
+                && left + image.getWidth() >= size.width && top + image.getHeight() >= size.height;
+
+        if (!coversView || scale != imageScale) {
+            render(searcher, origin, scale, size);
+            left = imageX(origin, scale, size);
+            top = imageY(origin, scale, size);
+        } else if (!dirty.isEmpty()) {
+            repair(searcher);
+        }
+
+        g2d.drawImage(image, left, top, null);
+        return drawn;
+    }
+
+    /**
+     * Converts a co-ordinate to a point on the drawing area, matching where the last drawn image
+     * placed the stops so anything drawn over them lines up exactly.
+     *
+     * @param point Receives the point on the drawing area.
+     * @return The point passed in.
+     */
+    public Point toScreen(double x, double y, Point point) {
+        point.x = left + (int) Math.floor((x - imageLeft) * imageScale);
+        point.y = top + (int) Math.floor((imageTop - y) * imageScale);
+        return point;
+    }
+
+    /**
+     * Draws every stop onto a new image centred on the origin.
+     */
+    private void render(StopSearcher searcher, Location origin, double scale, Dimension size) {
+        int width = Math.max(size.width, 1) * 2;
+        int height = Math.max(size.height, 1) * 2;
+        if (image == null || image.getWidth() != width || image.getHeight() != height)
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        imageScale = scale;
+        imageLeft = origin.x - width / 2.0 / scale;
+        imageTop = origin.y + height / 2.0 / scale;
+        dirty.clear();
+
+        Graphics2D g2d = image.createGraphics();
+        drawArea(g2d, searcher, 0, 0, width, height);
+        g2d.dispose();
+    }
+
+    /**
+     * Draws the dirty areas of the image again.
+     */
+    private void repair(StopSearcher searcher) {
+        // Covers the changed stop and any cluster that it stood in for or that now stands in for it.
+        int reach = 2 * stopSize(imageScale);
+
+        Graphics2D g2d = image.createGraphics();
+        for (Location location : dirty) {
+            int x = (int) ((location.x - imageLeft) * imageScale);
+            int y = (int) ((imageTop - location.y) * imageScale);
+            drawArea(g2d, searcher, x - reach, y - reach, 2 * reach, 2 * reach);
+        }
+        g2d.dispose();
+        dirty.clear();
+    }
+
+    /**
+     * Clears an area of the image and draws the stops that overlap it.
+     */
+    private void drawArea(Graphics2D g2d, StopSearcher searcher, int x, int y, int width, int height) {
+        int stopSize = stopSize(imageScale);
+
+        g2d.setClip(x, y, width, height);
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(x, y, width, height);
+        g2d.setStroke(outline(imageScale));
+
+        // Stops just outside the area can still overlap it.
+        Location min = imageLocation(x - stopSize, y + height + stopSize);
+        Location max = imageLocation(x + width + stopSize, y - stopSize);
+        Point point = new Point();
+        StopGraph graph = searcher.getGraph();
+
+        searcher.searchWithinRectangle(min, max, stopSize / imageScale, (stop, cluster) -> {
+            point.x = (int) ((graph.stopX(stop) - imageLeft) * imageScale);
+            point.y = (int) ((imageTop - graph.stopY(stop)) * imageScale);
+            drawStop(g2d, point, cluster ? CLUSTER_COLOR : Color.white, stopSize);
+            ++drawn;
+        });
+    }
+
+    private Location imageLocation(int x, int y) {
+        return new Location(imageLeft + x / imageScale, imageTop - y / imageScale);
+    }
+
+    /**
+     * Gets the position on the drawing area of the left edge of the image.
+     */
+    private int imageX(Location origin, double scale, Dimension size) {
+        return (int) Math.round((imageLeft - origin.x) * scale + size.width / 2.0);
+    }
+
+    /**
+     * Gets the position on the drawing area of the top edge of the image.
+     */
+    private int imageY(Location origin, double scale, Dimension size) {
+        return (int) Math.round((origin.y - imageTop) * scale + size.height / 2.0);
+    }
+}
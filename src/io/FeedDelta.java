@@ -0,0 +1,165 @@
+package io;
+
+import common.Location;
+import common.Stop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A set of changes to the stops and trips of a loaded network, read from a delta file.
+ * <p>
+ * Delta files are tab separated with a header line, each following line is one change:
+ * <pre>
+ * PUT     STOP  stop_id  stop_name  stop_lat  stop_lon
+ * REMOVE  STOP  stop_id
+ * PUT     TRIP  trip_id  stop_id...
+ * REMOVE  TRIP  trip_id
+ * </pre>
+ * PUT adds the stop or trip, or replaces it if one with the same ID already exists.
+ * Each stop and trip ID can only appear once in a delta.
+ *
+ * @author Matthew Corfiatis
+ */
+public class FeedDelta {
+    private final Map<String, Stop> putStops = new LinkedHashMap<>();
+    private final Set<String> removedStops = new LinkedHashSet<>();
+    private final Map<String, String[]> putTrips = new LinkedHashMap<>();
+    private final Set<String> removedTrips = new LinkedHashSet<>();
+
+    private FeedDelta() {
+    }
+
+    /**
+     * Reads a delta from a file.
+     *
+     * @param file File to read.
+     * @return The changes listed in the file.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     * @throws ParseError  When the data does not meet the expected format.
+     */
+    public static FeedDelta read(File file) throws IOException, ParseError {
+        FeedDelta delta = new FeedDelta();
+        LineReader.forEachLine(file, false, delta::parseLine);
+        return delta;
+    }
+
+    /**
+     * Stops that are added or replaced, keyed by ID.
+     * The stops are not connected to any trips.
+     */
+    public Map<String, Stop> getPutStops() {
+        return Collections.unmodifiableMap(putStops);
+    }
+
+    /**
+     * IDs of stops that are removed.
+     */
+    public Set<String> getRemovedStops() {
+        return Collections.unmodifiableSet(removedStops);
+    }
+
+    /**
+     * Trips that are added or replaced, keyed by ID with the IDs of their stops as the value.
+     */
+    public Map<String, String[]> getPutTrips() {
+        return Collections.unmodifiableMap(putTrips);
+    }
+
+    /**
+     * IDs of trips that are removed.
+     */
+    public Set<String> getRemovedTrips() {
+        return Collections.unmodifiableSet(removedTrips);
+    }
+
+    /**
+     * Parses a single line of the delta file.
+     *
+     * @param fields  Tokenizer positioned at the start of the line.
+     * @param lineNum Line number used in error messages.
+     * @throws ParseError When the line does not meet the expected format.
+     */
+    private void parseLine(TabTokenizer fields, int lineNum) throws ParseError {
+        int fieldCount = fields.countFields();
+
+        if (fieldCount < 3)
+            throw new ParseError(String.format("Invalid data on line %d of delta file. Invalid number of tokens found.", lineNum));
+
+        fields.next();
+        String action = fields.string();
+        fields.next();
+        String type = fields.string();
+        fields.next();
+        String id = fields.string();
+
+        boolean put;
+        if (action.equals("PUT"))
+            put = true;
+        else if (action.equals("REMOVE"))
+            put = false;
+        else
+            throw new ParseError(String.format("Invalid action on line %d of delta file. Expected PUT or REMOVE, got %s", lineNum, action));
+
+        if (type.equals("STOP")) {
+            if (putStops.containsKey(id) || removedStops.contains(id))
+                throw new ParseError(String.format("Stop on line %d of delta file was already changed: %s", lineNum, id));
+
+            if (put)
+                putStops.put(id, parseStop(fields, fieldCount, id, lineNum));
+            else if (fieldCount == 3)
+                removedStops.add(id);
+            else
+                throw new ParseError(String.format("Invalid data on line %d of delta file. Invalid number of tokens found.", lineNum));
+        } else if (type.equals("TRIP")) {
+            if (putTrips.containsKey(id) || removedTrips.contains(id))
+                throw new ParseError(String.format("Trip on line %d of delta file was already changed: %s", lineNum, id));
+
+            if (put) {
+                String[] stopIDs = new String[fieldCount - 3];
+                for (int i = 0; i < stopIDs.length; ++i) {
+                    fields.next();
+                    stopIDs[i] = fields.string();
+                }
+
+                if (stopIDs.length == 0)
+                    throw new ParseError(String.format("Invalid data on line %d of delta file. No stops found.", lineNum));
+
+                putTrips.put(id, stopIDs);
+            } else if (fieldCount == 3) {
+                removedTrips.add(id);
+            } else {
+                throw new ParseError(String.format("Invalid data on line %d of delta file. Invalid number of tokens found.", lineNum));
+            }
+        } else {
+            throw new ParseError(String.format("Invalid type on line %d of delta file. Expected STOP or TRIP, got %s", lineNum, type));
+        }
+    }
+
+    private static Stop parseStop(TabTokenizer fields, int fieldCount, String id, int lineNum) throws ParseError {
+        if (fieldCount != 6)
+            throw new ParseError(String.format("Invalid data on line %d of delta file. Invalid number of tokens found.", lineNum));
+
+        fields.next();
+        String name = fields.string();
+        double latitude;
+        double longitude;
+
+        fields.next();
+        try {
+            latitude = fields.parseDouble();
+        } catch (NumberFormatException ex) {
+            throw new ParseError(String.format("Invalid latitude on line %d of delta file. Expected double, got %s", lineNum, fields.string()));
+        }
+
+        fields.next();
+        try {
+            longitude = fields.parseDouble();
+        } catch (NumberFormatException ex) {
+            throw new ParseError(String.format("Invalid longitude on line %d of delta file. Expected double, got %s", lineNum, fields.string()));
+        }
+
+        return new Stop(id, name, Location.newFromLatLon(latitude, longitude));
+    }
+}
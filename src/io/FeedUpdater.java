@@ -0,0 +1,160 @@
+package io;
+
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import search.Network;
+
+import java.util.*;
+
+/**
+ * Applies feed deltas to a loaded network without reloading it.
+ * <p>
+ * Each update builds a new {@link Network} snapshot off to the side: the graph is rebuilt
+ * from the existing stops and trips with the changes applied, which needs no parsing, and every
+ * search index is built again over the new graph once its stops are attached to it. Nothing is
+ * patched in place, every stop of the new graph is a new view and its popularity can change with
+ * any trip, so the indexes would have to be visited in full either way. The new version
+ * is then published with a single volatile write, so readers that hold a version keep a
+ * consistent network while an update is applied and pick up the new one the next time they read
+ * {@link #getCurrent()}. Nothing in a published version is changed by later updates.
+ * <p>
+ * A delta is checked completely before anything is built, so an invalid delta leaves the current
+ * version in place. Updates are applied one at a time, readers never lock.
+ *
+ * @author Matthew Corfiatis
+ */
+public class FeedUpdater {
+    private volatile Network current;
+
+    /**
+     * Creates an updater for a loaded network.
+     *
+     * @param network Network to apply the updates to.
+     */
+    public FeedUpdater(Network network) {
+        if (network == null)
+            throw new IllegalArgumentException("Network must not be null.");
+
+        current = network;
+    }
+
+    /**
+     * Latest version of the network, with all applied updates.
+     */
+    public Network getCurrent() {
+        return current;
+    }
+
+    /**
+     * Applies a delta to the current version of the network and publishes the result.
+     *
+     * @param delta Changes to apply.
+     * @return The new current version.
+     * @throws ParseError When the delta refers to stops or trips that do not exist, or removes a stop that is still used.
+     */
+    public synchronized Network apply(FeedDelta delta) throws ParseError {
+        if (delta == null)
+            throw new IllegalArgumentException("Delta must not be null.");
+
+        Network base = current;
+        validate(delta, base);
+
+        Network next = new Network(buildGraph(delta, base.getGraph()));
+        current = next;
+        return next;
+    }
+
+    /**
+     * Builds the graph of a version with a delta applied.
+     *
+     * @param delta Changes to apply, already validated.
+     * @param graph Graph of the version the changes are applied to.
+     * @return The new graph.
+     */
+    private static StopGraph buildGraph(FeedDelta delta, StopGraph graph) {
+        // Keep existing stops in their current order so unchanged stops keep nearby indices.
+        List<Stop> newStops = new ArrayList<>(graph.getStopCount() + delta.getPutStops().size());
+        Map<String, Integer> stopIndices = new HashMap<>();
+        int[] newIndices = new int[graph.getStopCount()]; // Index of each existing stop in the new graph, or -1
+        for (int s = 0; s < graph.getStopCount(); ++s) {
+            Stop stop = graph.getStop(s);
+            newIndices[s] = -1;
+            if (delta.getRemovedStops().contains(stop.getId()))
+                continue;
+
+            newIndices[s] = newStops.size();
+            stopIndices.put(stop.getId(), newStops.size());
+            newStops.add(delta.getPutStops().getOrDefault(stop.getId(), stop));
+        }
+        for (Stop stop : delta.getPutStops().values()) {
+            if (!stopIndices.containsKey(stop.getId())) {
+                stopIndices.put(stop.getId(), newStops.size());
+                newStops.add(stop);
+            }
+        }
+
+        // Carry over unchanged trips, they are relinked to any replaced stops by index.
+        StopGraph.Builder builder = new StopGraph.Builder(newStops);
+        for (int t = 0; t < graph.getTripCount(); ++t) {
+            Trip trip = graph.getTrip(t);
+            if (delta.getRemovedTrips().contains(trip.getId()) || delta.getPutTrips().containsKey(trip.getId()))
+                continue;
+
+            int[] tripStops = new int[graph.tripEnd(t) - graph.tripStart(t)];
+            for (int i = 0; i < tripStops.length; ++i)
+                tripStops[i] = newIndices[graph.tripStop(graph.tripStart(t) + i)];
+
+            builder.addTrip(trip, tripStops);
+        }
+
+        for (Map.Entry<String, String[]> tripEntry : delta.getPutTrips().entrySet()) {
+            int[] tripStops = Arrays.stream(tripEntry.getValue()).mapToInt(stopIndices::get).toArray();
+            builder.addTrip(new Trip(tripEntry.getKey()), tripStops);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Checks that a delta can be applied to a version of the network.
+     *
+     * @param delta Changes to check.
+     * @param base  Version the changes would be applied to.
+     * @throws ParseError When the delta refers to stops or trips that do not exist, or removes a stop that is still used.
+     */
+    private static void validate(FeedDelta delta, Network base) throws ParseError {
+        for (String stopId : delta.getRemovedStops()) {
+            if (base.getStop(stopId) == null)
+                throw new ParseError(String.format("Cannot remove stop that was not found: %s", stopId));
+        }
+
+        // Any trip still using a removed stop after the update must be removed or replaced by this delta.
+        if (!delta.getRemovedStops().isEmpty()) {
+            for (Trip trip : base.getTrips()) {
+                if (delta.getRemovedTrips().contains(trip.getId()) || delta.getPutTrips().containsKey(trip.getId()))
+                    continue;
+
+                for (Stop stop : trip.getStops()) {
+                    if (delta.getRemovedStops().contains(stop.getId()))
+                        throw new ParseError(String.format("Cannot remove stop %s, it is used by trip %s", stop.getId(), trip.getId()));
+                }
+            }
+        }
+
+        for (String tripId : delta.getRemovedTrips()) {
+            if (base.getTrip(tripId) == null)
+                throw new ParseError(String.format("Cannot remove trip that was not found: %s", tripId));
+        }
+
+        for (Map.Entry<String, String[]> tripEntry : delta.getPutTrips().entrySet()) {
+            for (String stopId : tripEntry.getValue()) {
+                boolean exists = delta.getPutStops().containsKey(stopId) ||
+                        (base.getStop(stopId) != null && !delta.getRemovedStops().contains(stopId));
+
+                if (!exists)
+                    throw new ParseError(String.format("Trip %s contains stop that was not found: %s", tripEntry.getKey(), stopId));
+            }
+        }
+    }
+}
@@ -2,14 +2,13 @@ package io;
 
 import common.Location;
 import common.Stop;
+import common.StopGraph;
 import common.Trip;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.text.ParseException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reads files containing stops and trips from files on a disk.
@@ -18,11 +17,6 @@ import java.util.stream.Collectors;
  * @author Matthew Corfiatis
  */
 public class JourneyReader {
-    // Statistics, not critical so can be static
-    private static int stopCount = 0;
-    private static int tripCount = 0;
-    private static int connectionCount = 0;
-
     /**
      * Reads stops and trips from file, then connects stops using the
      * information from the set of trips.
@@ -34,132 +28,176 @@ public class JourneyReader {
      * @throws ParseException When the data does not meet the expected format.
      */
     public static Collection<Stop> getConnectedStops(File stopsFile, File tripsFile) throws IOException, ParseError {
-        Map<String, Stop> stops = readStops(stopsFile);
-        Map<Trip, String[]> trips = readTrips(tripsFile);
-
-        stopCount = stops.size();
-        tripCount = trips.size();
-
-        for (Map.Entry<Trip, String[]> tripEntry : trips.entrySet()) {
-            Stop previousStop = null;
-
-            for (String stopId : tripEntry.getValue()) {
-                Stop stop = stops.get(stopId);
-
-                // Ensure the stop listed in the trip exists.
-                if (stop == null)
-                    throw new ParseError("Trip contains stop that was not found.");
-
-                // Add the stop to the trip.
-                tripEntry.getKey().addStop(stop);
-
-                // Connects the current stop with the previous stop, skips the first stop.
-                if (previousStop != null) {
-                    // Trips are directional/directed, so we only add connection one way.
-                    // stop.makeConnection(previousStop, tripEntry.getKey());
+        return getConnectedStops(stopsFile, tripsFile, false);
+    }
 
-                    // Add incoming and outgoing connections
-                    stop.makeIncomingConnection(previousStop, tripEntry.getKey());
-                    previousStop.makeOutgoingConnection(stop, tripEntry.getKey());
-                    ++connectionCount;
-                }
+    /**
+     * Reads stops and trips from file, then connects stops using the
+     * information from the set of trips.
+     * <p>
+     * In parallel mode the files are split into chunks on line boundaries and the chunks
+     * are parsed on the fork-join pool. Errors still report the exact line they occurred on,
+     * but when several lines are invalid it is not defined which one is reported.
+     *
+     * @param stopsFile Stops file to load.
+     * @param tripsFile Trips file to load.
+     * @param parallel  Whether to parse the files in parallel.
+     * @return A collection containing all of the stops linked together with trip information.
+     * @throws IOException    When an error occurs finding or reading the specified file.
+     * @throws ParseException When the data does not meet the expected format.
+     */
+    public static Collection<Stop> getConnectedStops(File stopsFile, File tripsFile, boolean parallel) throws IOException, ParseError {
+        return readGraph(stopsFile, tripsFile, parallel).getStops();
+    }
 
-                previousStop = stop;
-            }
+    /**
+     * Reads stops and trips from file and builds them into a graph.
+     *
+     * @param stopsFile Stops file to load.
+     * @param tripsFile Trips file to load.
+     * @param parallel  Whether to parse the files in parallel.
+     * @return A graph containing all of the stops linked together with trip information.
+     * @throws IOException    When an error occurs finding or reading the specified file.
+     * @throws ParseException When the data does not meet the expected format.
+     */
+    public static StopGraph readGraph(File stopsFile, File tripsFile, boolean parallel) throws IOException, ParseError {
+        return readGraph(stopsFile, tripsFile, parallel, LineReader.MIN_CHUNK_SIZE);
+    }
 
-            tripEntry.getKey().lockStops();
-        }
+    /**
+     * Reads stops and trips from file and builds them into a graph, splitting the files into
+     * chunks of at least the given size.
+     *
+     * @param minChunkSize Smallest number of bytes each chunk of a file is read in.
+     * @see #readGraph(File, File, boolean)
+     */
+    static StopGraph readGraph(File stopsFile, File tripsFile, boolean parallel, long minChunkSize) throws IOException, ParseError {
+        StopGraph.Builder builder = new StopGraph.Builder(readStops(stopsFile, parallel, minChunkSize).values());
+        Map<Trip, int[]> trips = readTrips(tripsFile, new StopIdIndex(builder), parallel, minChunkSize);
 
-        // Prevent further modification of the stops.
-        for (Stop stop : stops.values()) {
-            stop.lockConnections();
-        }
+        for (Map.Entry<Trip, int[]> tripEntry : trips.entrySet())
+            builder.addTrip(tripEntry.getKey(), tripEntry.getValue());
 
-        return stops.values();
+        return builder.build();
     }
 
 
     /**
      * Reads stops from a file into a map.
      *
-     * @param file File to read.
+     * @param file     File to read.
+     * @param parallel     Whether to parse chunks of the file in parallel.
+     * @param minChunkSize Smallest number of bytes each chunk of the file is read in.
      * @return Map with the Stop ID as the key and Stop object as the value.
      * @throws IOException    When an error occurs finding or reading the specified file.
      * @throws ParseException When the data does not meet the expected format.
      */
-    private static Map<String, Stop> readStops(File file) throws IOException, ParseError {
-        AtomicInteger lineNumber = new AtomicInteger(2);
-
-        return Files.lines(file.toPath()).skip(1).map(lines -> {
-            String[] tokens = lines.split("\t"); // Split line into tab separated values.
-
-            int lineNum = lineNumber.getAndIncrement(); // Not safe for parallel
-
-            if (tokens.length != 4)
-                throw new ParseError(String.format("Invalid data on line %d of stops file. Invalid number of tokens found.", lineNum));
-
-            String id = tokens[0];
-            String name = tokens[1];
-            double latitude;
-            double longitude;
-
-            // Try parse latitude.
-            try {
-                latitude = Double.parseDouble(tokens[2]);
-            } catch (NumberFormatException ex) {
-                throw new ParseError(String.format("Invalid latitude on line %d of stops file. Expected double, got %s", lineNum, tokens[2]));
-            }
-
-            // Try parse longitude.
-            try {
-                longitude = Double.parseDouble(tokens[3]);
-            } catch (NumberFormatException ex) {
-                throw new ParseError(String.format("Invalid longitude on line %d of stops file. Expected double, got %s", lineNum, tokens[3]));
-            }
-
-            return new Stop(id, name, Location.newFromLatLon(latitude, longitude));
-        }).collect(Collectors.toMap(Stop::getId, stop -> stop, (stop1, stop2) -> {
-            throw new ParseError(String.format("Duplicate stop found: %s", stop1.getId())); // Merge function called when multiple element have same key.
-        }));
+    private static Map<String, Stop> readStops(File file, boolean parallel, long minChunkSize) throws IOException, ParseError {
+        Map<String, Stop> stops = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+
+        LineReader.forEachLine(file, parallel, minChunkSize, (fields, lineNum) -> {
+            Stop stop = parseStop(fields, lineNum);
+
+            // In parallel mode the shared map catches duplicates that are in different chunks.
+            if (stops.putIfAbsent(stop.getId(), stop) != null)
+                throw new ParseError(String.format("Duplicate stop found on line %d: %s", lineNum, stop.getId()));
+        });
+
+        return stops;
     }
 
     /**
      * Reads trips from a file into a map.
      *
-     * @param file File to read.
-     * @return Map of trips where the key is the trip and the value is an array of stops.
+     * @param file     File to read.
+     * @param stops    Index of the stops that the trips can contain.
+     * @param parallel     Whether to parse chunks of the file in parallel.
+     * @param minChunkSize Smallest number of bytes each chunk of the file is read in.
+     * @return Map of trips where the key is the trip and the value is an array of stop indices.
      * @throws IOException    When an error occurs finding or reading the specified file.
      * @throws ParseException When the data does not meet the expected format.
      */
-    private static Map<Trip, String[]> readTrips(File file) throws IOException, ParseError {
-        AtomicInteger lineNumber = new AtomicInteger(2);
+    private static Map<Trip, int[]> readTrips(File file, StopIdIndex stops, boolean parallel, long minChunkSize) throws IOException, ParseError {
+        Map<Trip, int[]> trips = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+
+        LineReader.forEachLine(file, parallel, minChunkSize, (fields, lineNum) -> {
+            UnlinkedTrip trip = parseTrip(fields, stops, lineNum);
 
-        return Files.lines(file.toPath()).skip(1).map(lines -> {
-            String[] tokens = lines.split("\t"); // Split line into tab separated values.
+            if (trips.putIfAbsent(trip.getTrip(), trip.getStops()) != null)
+                throw new ParseError(String.format("Duplicate trip found on line %d: %s", lineNum, trip.getTrip().getId()));
+        });
 
-            int lineNum = lineNumber.getAndIncrement(); // Not safe for parallel.
+        return trips;
+    }
 
-            if (tokens.length < 2)
-                throw new ParseError(String.format("Invalid data on line %d of trips file. No stops found.", lineNum));
+    /**
+     * Parses a single line of the stops file.
+     *
+     * @param fields  Tokenizer positioned at the start of the line.
+     * @param lineNum Line number used in error messages.
+     * @return The stop described by the line.
+     * @throws ParseError When the line does not meet the expected format.
+     */
+    private static Stop parseStop(TabTokenizer fields, int lineNum) throws ParseError {
+        if (fields.countFields() != 4)
+            throw new ParseError(String.format("Invalid data on line %d of stops file. Invalid number of tokens found.", lineNum));
+
+        fields.next();
+        String id = fields.string();
+        fields.next();
+        String name = fields.string();
+        double latitude;
+        double longitude;
+
+        // Try parse latitude.
+        fields.next();
+        try {
+            latitude = fields.parseDouble();
+        } catch (NumberFormatException ex) {
+            throw new ParseError(String.format("Invalid latitude on line %d of stops file. Expected double, got %s", lineNum, fields.string()));
+        }
 
-            String id = tokens[0];
-            String[] stopIDs = Arrays.stream(tokens).skip(1).toArray(String[]::new); // Skip first element to get bus stops.
+        // Try parse longitude.
+        fields.next();
+        try {
+            longitude = fields.parseDouble();
+        } catch (NumberFormatException ex) {
+            throw new ParseError(String.format("Invalid longitude on line %d of stops file. Expected double, got %s", lineNum, fields.string()));
+        }
 
-            return new UnlinkedTrip(new Trip(id), stopIDs);
-        }).collect(Collectors.toMap(UnlinkedTrip::getTrip, UnlinkedTrip::getStopIDs, (trip1, trip2) -> {
-            throw new ParseError(String.format("Duplicate trip found.")); // Merge function called when multiple element have same key.
-        }));
+        return new Stop(id, name, Location.newFromLatLon(latitude, longitude));
     }
 
-    public static int getStopCount() {
-        return stopCount;
-    }
+    /**
+     * Parses a single line of the trips file, resolving the stop IDs as they are read.
+     *
+     * @param fields  Tokenizer positioned at the start of the line.
+     * @param stops   Index of the stops that the trip can contain.
+     * @param lineNum Line number used in error messages.
+     * @return The trip described by the line with the indices of its stops.
+     * @throws ParseError When the line does not meet the expected format.
+     */
+    private static UnlinkedTrip parseTrip(TabTokenizer fields, StopIdIndex stops, int lineNum) throws ParseError {
+        int fieldCount = fields.countFields();
 
-    public static int getTripCount() {
-        return tripCount;
-    }
+        if (fieldCount < 2)
+            throw new ParseError(String.format("Invalid data on line %d of trips file. No stops found.", lineNum));
+
+        fields.next();
+        String id = fields.string();
+        int[] tripStops = new int[fieldCount - 1]; // First field is the trip ID
+
+        for (int i = 0; i < tripStops.length; ++i) {
+            fields.next();
+            int stop = stops.get(fields.buffer(), fields.fieldStart(), fields.fieldEnd());
+
+            // Ensure the stop listed in the trip exists.
+            if (stop < 0)
+                throw new ParseError(String.format("Trip on line %d of trips file contains stop that was not found: %s", lineNum, fields.string()));
+
+            tripStops[i] = stop;
+        }
 
-    public static int getConnectionCount() {
-        return connectionCount;
+        return new UnlinkedTrip(new Trip(id), tripStops);
     }
 }
@@ -0,0 +1,188 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the lines of a file as tab separated fields, optionally in parallel.
+ * <p>
+ * The file is split into byte ranges that start and end on newline boundaries and each range is
+ * memory mapped. In parallel mode the ranges are parsed on the fork-join pool. The number of lines
+ * in each range is counted first so every line is still given its exact line number.
+ *
+ * @author Matthew Corfiatis
+ */
+class LineReader {
+    static final long MIN_CHUNK_SIZE = 1 << 20; // Small files are not worth splitting
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE; // Largest range that can be mapped
+    private static final int CHUNKS_PER_THREAD = 4; // Extra chunks to balance uneven line lengths
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    /**
+     * Receives a single line from the file.
+     * In parallel mode implementations are called from multiple threads at once.
+     */
+    interface LineConsumer {
+        /**
+         * @param fields     Tokenizer positioned at the start of the line. Only valid until this method returns.
+         * @param lineNumber Line number in the file.
+         */
+        void accept(TabTokenizer fields, int lineNumber);
+    }
+
+    /**
+     * Calls the consumer for every line in the file after the header line.
+     * Line numbers start at 2 to account for the header.
+     *
+     * @param file     File to read.
+     * @param parallel Whether to read chunks of the file in parallel.
+     * @param consumer Consumer to receive each line, must be thread safe in parallel mode.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     */
+    static void forEachLine(File file, boolean parallel, LineConsumer consumer) throws IOException {
+        forEachLine(file, parallel, MIN_CHUNK_SIZE, consumer);
+    }
+
+    /**
+     * Calls the consumer for every line in the file after the header line, splitting the file
+     * into chunks of at least the given size. Tests use a small size to split small files.
+     *
+     * @param file         File to read.
+     * @param parallel     Whether to read chunks of the file in parallel.
+     * @param minChunkSize Smallest number of bytes in a chunk, before extending it to the next line.
+     * @param consumer     Consumer to receive each line, must be thread safe in parallel mode.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     */
+    static void forEachLine(File file, boolean parallel, long minChunkSize, LineConsumer consumer) throws IOException {
+        if (minChunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be greater than 0.");
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = nextLineStart(channel, 0, size); // Skip header
+            long[] boundaries = findChunkBoundaries(channel, start, size, minChunkSize);
+            int chunkCount = boundaries.length - 1;
+
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; ++i)
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]);
+
+            // Count lines first so each chunk knows the line number it starts on.
+            int[] lineCounts = new int[chunkCount];
+            chunkIndices(chunkCount, parallel).forEach(i -> lineCounts[i] = countLines(chunks[i]));
+
+            int[] firstLines = new int[chunkCount];
+            int lineNumber = 2;
+            for (int i = 0; i < chunkCount; ++i) {
+                firstLines[i] = lineNumber;
+                lineNumber += lineCounts[i];
+            }
+
+            chunkIndices(chunkCount, parallel).forEach(i -> readChunk(chunks[i], firstLines[i], consumer));
+        }
+    }
+
+    private static IntStream chunkIndices(int chunkCount, boolean parallel) {
+        IntStream indices = IntStream.range(0, chunkCount);
+        return parallel ? indices.parallel() : indices;
+    }
+
+    /**
+     * Splits the range between start and end into chunks that each begin at the start of a line.
+     *
+     * @return Array of chunk boundaries, chunk i covers boundaries[i] (inclusive) to boundaries[i + 1] (exclusive).
+     */
+    private static long[] findChunkBoundaries(FileChannel channel, long start, long end, long minChunkSize) throws IOException {
+        long length = end - start;
+        int targetChunks = ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD;
+        long chunkSize = Math.max(minChunkSize, length / targetChunks + 1);
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE / 2); // Leave room to extend a chunk to the next newline
+
+        int chunkCount = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+        long[] boundaries = new long[chunkCount + 1];
+        boundaries[0] = start;
+        int count = 1;
+
+        for (int i = 1; i < chunkCount; ++i) {
+            long boundary = nextLineStart(channel, start + i * chunkSize, end);
+            if (boundary > boundaries[count - 1] && boundary < end)
+                boundaries[count++] = boundary;
+        }
+        boundaries[count++] = end;
+
+        if (count == boundaries.length)
+            return boundaries;
+
+        long[] trimmed = new long[count];
+        System.arraycopy(boundaries, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    /**
+     * Finds the position of the first byte after the next newline at or after a position.
+     *
+     * @return Start of the next line, or end if there are no more newlines.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+
+            for (int i = 0; i < read; ++i) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+
+        return end;
+    }
+
+    private static int countLines(ByteBuffer chunk) {
+        int limit = chunk.limit();
+        int lines = 0;
+
+        for (int i = 0; i < limit; ++i) {
+            if (chunk.get(i) == '\n')
+                ++lines;
+        }
+
+        // Last line of the file may not have a trailing newline.
+        if (limit > 0 && chunk.get(limit - 1) != '\n')
+            ++lines;
+
+        return lines;
+    }
+
+    private static void readChunk(ByteBuffer chunk, int firstLine, LineConsumer consumer) {
+        int limit = chunk.limit();
+        TabTokenizer fields = new TabTokenizer(); // Reused for every line in the chunk
+        int lineNumber = firstLine;
+        int lineStart = 0;
+
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n')
+                ++lineEnd;
+
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && chunk.get(contentEnd - 1) == '\r')
+                --contentEnd;
+
+            fields.reset(chunk, lineStart, contentEnd);
+            consumer.accept(fields, lineNumber++);
+
+            lineStart = lineEnd + 1;
+        }
+    }
+}
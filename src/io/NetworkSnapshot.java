@@ -0,0 +1,168 @@
+package io;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Reads and writes a compact binary snapshot of a loaded network of stops and trips.
+ * <p>
+ * Loading a snapshot skips all of the text parsing done by the JourneyReader, the file is
+ * memory mapped and the trips refer to stops by index instead of by ID.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int    magic ("JPSN")
+ * int    version
+ * int    stop count
+ *        per stop: string id, string name, double x, double y
+ * int    trip count
+ *        per trip: string id, int stop count, int[] stop indices
+ * </pre>
+ * Strings are stored as an int byte length followed by UTF-8 bytes.
+ *
+ * @author Matthew Corfiatis
+ */
+public class NetworkSnapshot {
+    private static final int MAGIC = 0x4A50534E; // "JPSN"
+    private static final int VERSION = 1;
+    private static final int STOP_MIN_BYTES = 2 * Integer.BYTES + 2 * Double.BYTES; // Two empty strings and a location
+    private static final int TRIP_MIN_BYTES = 2 * Integer.BYTES; // An empty ID and no stops
+
+    /**
+     * Writes a snapshot of a graph of stops and trips to a file.
+     *
+     * @param graph Graph to write, as returned by the JourneyReader.
+     * @param file  File to write the snapshot to.
+     * @throws IOException When an error occurs writing the file.
+     */
+    public static void write(StopGraph graph, File file) throws IOException {
+        if (graph == null)
+            throw new IllegalArgumentException("Graph must not be null.");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(graph.getStopCount());
+            for (int i = 0; i < graph.getStopCount(); ++i) {
+                Stop stop = graph.getStop(i);
+                writeString(out, stop.getId());
+                writeString(out, stop.getName());
+                out.writeDouble(graph.stopX(i));
+                out.writeDouble(graph.stopY(i));
+            }
+
+            out.writeInt(graph.getTripCount());
+            for (int i = 0; i < graph.getTripCount(); ++i) {
+                writeString(out, graph.getTrip(i).getId());
+                out.writeInt(graph.tripEnd(i) - graph.tripStart(i));
+                for (int position = graph.tripStart(i); position < graph.tripEnd(i); ++position)
+                    out.writeInt(graph.tripStop(position));
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file and builds the stops and trips into a graph.
+     *
+     * @param file Snapshot file to read.
+     * @return A graph containing all of the stops linked together with trip information.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     * @throws ParseError  When the file is not a snapshot, is an unsupported version, or is corrupt.
+     */
+    public static StopGraph read(File file) throws IOException, ParseError {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot file is too large to map.");
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    private static StopGraph read(ByteBuffer buffer) throws ParseError {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new ParseError("File is not a journey snapshot.");
+
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new ParseError(String.format("Unsupported snapshot version %d, expected %d.", version, VERSION));
+
+            byte[] scratch = new byte[256]; // Reused for decoding strings, longer strings get their own array.
+
+            Stop[] stops = new Stop[readCount(buffer, STOP_MIN_BYTES, "stops")];
+            for (int i = 0; i < stops.length; ++i) {
+                String id = readString(buffer, scratch);
+                String name = readString(buffer, scratch);
+                double x = buffer.getDouble();
+                double y = buffer.getDouble();
+                stops[i] = new Stop(id, name, new Location(x, y));
+            }
+
+            StopGraph.Builder builder = new StopGraph.Builder(Arrays.asList(stops));
+            int tripCount = readCount(buffer, TRIP_MIN_BYTES, "trips");
+            for (int i = 0; i < tripCount; ++i) {
+                Trip trip = new Trip(readString(buffer, scratch));
+                int[] tripStops = new int[readCount(buffer, Integer.BYTES, "trip stops")];
+
+                for (int j = 0; j < tripStops.length; ++j) {
+                    tripStops[j] = buffer.getInt();
+                    if (tripStops[j] < 0 || tripStops[j] >= stops.length)
+                        throw new ParseError(String.format("Trip %s contains stop index %d that was not found.", trip.getId(), tripStops[j]));
+                }
+
+                builder.addTrip(trip, tripStops);
+            }
+
+            return builder.build();
+        } catch (BufferUnderflowException ex) {
+            throw new ParseError("Snapshot file is truncated.");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads the number of records that follow, checking that the rest of the file could hold them
+     * so a corrupt count can not allocate a huge array.
+     *
+     * @param minBytes Fewest bytes each record can take.
+     * @param what     What is counted, used in error messages.
+     */
+    private static int readCount(ByteBuffer buffer, int minBytes, String what) throws ParseError {
+        int count = buffer.getInt();
+        if (count < 0)
+            throw new ParseError(String.format("Snapshot contains a negative number of %s.", what));
+        if (count > buffer.remaining() / minBytes)
+            throw new ParseError(String.format("Snapshot is truncated, it can not hold %d %s.", count, what));
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0)
+            throw new ParseError("Snapshot contains a string with negative length.");
+        if (length > buffer.remaining())
+            throw new ParseError("Snapshot file is truncated.");
+
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,94 @@
+package io;
+
+import common.StopGraph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Looks up the index of stops by the raw UTF-8 bytes of their ID.
+ * <p>
+ * Used while reading trips so the stop IDs in each line can be resolved straight from the
+ * file buffer without creating a string for every ID. Open addressing with linear probing,
+ * immutable once built and safe to read from multiple threads.
+ *
+ * @author Matthew Corfiatis
+ */
+class StopIdIndex {
+    private final byte[][] keys;
+    private final int[] indices;
+    private final int mask;
+
+    /**
+     * Builds an index over the stops of a graph builder.
+     *
+     * @param stops Builder holding the stops in index order.
+     */
+    StopIdIndex(StopGraph.Builder stops) {
+        int capacity = Integer.highestOneBit(Math.max(2, stops.getStopCount() * 2 - 1)) << 1; // Load factor at most 0.5
+        keys = new byte[capacity][];
+        indices = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < stops.getStopCount(); ++i) {
+            byte[] key = stops.getStop(i).getId().getBytes(StandardCharsets.UTF_8);
+            int slot = hash(key) & mask;
+
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+
+            keys[slot] = key;
+            indices[slot] = i;
+        }
+    }
+
+    /**
+     * Finds the stop with the ID stored in a range of a buffer.
+     *
+     * @param buffer Buffer containing the ID.
+     * @param start  Index of the first byte of the ID.
+     * @param end    Index after the last byte of the ID.
+     * @return Index of the stop, or -1 if no stop has the ID.
+     */
+    int get(ByteBuffer buffer, int start, int end) {
+        int slot = hash(buffer, start, end) & mask;
+
+        while (keys[slot] != null) {
+            if (matches(keys[slot], buffer, start, end))
+                return indices[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start)
+            return false;
+
+        for (int i = 0; i < key.length; ++i) {
+            if (key[i] != buffer.get(start + i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0;
+        for (byte b : key)
+            h = 31 * h + b;
+        return spread(h);
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; ++i)
+            h = 31 * h + buffer.get(i);
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,156 @@
+package io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the tab separated fields of a line in place without splitting it.
+ * <p>
+ * The tokenizer is reset onto each line of a buffer and reused, so reading a field as a double
+ * or looking it up as a stop ID does not allocate. Only fields that are needed as strings are decoded.
+ * Trailing empty fields are ignored, the same as {@link String#split(String)}, except that a line
+ * of only tabs is a single empty field rather than none. Either is rejected by the readers.
+ * <p>
+ * Not thread safe, each thread should use its own tokenizer.
+ *
+ * @author Matthew Corfiatis
+ */
+class TabTokenizer {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53; // Largest integer a double can represent exactly
+
+    private ByteBuffer buffer;
+    private int lineEnd;
+    private int fieldStart;
+    private int fieldEnd;
+    private byte[] scratch = new byte[64]; // Reused for decoding fields into strings
+
+    /**
+     * Positions the tokenizer before the first field of a line.
+     *
+     * @param buffer    Buffer containing the line.
+     * @param lineStart Index of the first byte of the line.
+     * @param lineEnd   Index after the last byte of the line, excluding the line terminator.
+     */
+    void reset(ByteBuffer buffer, int lineStart, int lineEnd) {
+        // Ignore trailing empty fields.
+        while (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\t')
+            --lineEnd;
+
+        this.buffer = buffer;
+        this.lineEnd = lineEnd;
+        this.fieldStart = lineStart;
+        this.fieldEnd = lineStart - 1; // Next field starts after this position
+    }
+
+    /**
+     * Counts the fields on the line without moving the tokenizer.
+     */
+    int countFields() {
+        int count = 1;
+        for (int i = fieldEnd + 1; i < lineEnd; ++i) {
+            if (buffer.get(i) == '\t')
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Moves to the next field on the line.
+     *
+     * @return False if there are no more fields.
+     */
+    boolean next() {
+        if (fieldEnd >= lineEnd)
+            return false;
+
+        fieldStart = fieldEnd + 1;
+        fieldEnd = fieldStart;
+        while (fieldEnd < lineEnd && buffer.get(fieldEnd) != '\t')
+            ++fieldEnd;
+
+        return true;
+    }
+
+    /**
+     * Buffer containing the current field.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Index of the first byte of the current field.
+     */
+    int fieldStart() {
+        return fieldStart;
+    }
+
+    /**
+     * Index after the last byte of the current field.
+     */
+    int fieldEnd() {
+        return fieldEnd;
+    }
+
+    /**
+     * Decodes the current field into a string.
+     */
+    String string() {
+        int length = fieldEnd - fieldStart;
+        if (length > scratch.length)
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+
+        buffer.get(fieldStart, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the current field as a double.
+     * <p>
+     * Plain decimals such as "-12.37345" are parsed straight from the buffer. Anything else,
+     * such as exponents or more digits than fit exactly in a double, falls back to {@link Double#parseDouble(String)}.
+     *
+     * @throws NumberFormatException When the field is not a valid double.
+     */
+    double parseDouble() throws NumberFormatException {
+        int i = fieldStart;
+        boolean negative = false;
+
+        if (i < fieldEnd && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            ++i;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+
+        for (; i < fieldEnd; ++i) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                ++digits;
+                if (point)
+                    ++fractionDigits;
+                if (mantissa >= MAX_EXACT_MANTISSA)
+                    return Double.parseDouble(string());
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return Double.parseDouble(string()); // Exponents, NaN etc. or invalid
+            }
+        }
+
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length)
+            return Double.parseDouble(string());
+
+        // Both values are exact so a single division gives a correctly rounded result.
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+}
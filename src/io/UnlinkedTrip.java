@@ -4,24 +4,24 @@ import common.Trip;
 
 /**
  * Represents a trip object before the stops have been linked to it directly.
- * Stores ID's of stops and the trip that will be linked.
+ * Stores the indices of the stops and the trip that will be linked.
  *
  * @author Matthew Corfiatis
  */
 class UnlinkedTrip {
     private final Trip trip;
-    private final String[] stopIDs;
+    private final int[] stops;
 
-    public UnlinkedTrip(Trip trip, String[] stopIDs) {
+    public UnlinkedTrip(Trip trip, int[] stops) {
         this.trip = trip;
-        this.stopIDs = stopIDs;
+        this.stops = stops;
     }
 
     public Trip getTrip() {
         return trip;
     }
 
-    public String[] getStopIDs() {
-        return stopIDs;
+    public int[] getStops() {
+        return stops;
     }
 }
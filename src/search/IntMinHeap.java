@@ -0,0 +1,109 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int values ordered by a double priority.
+ * <p>
+ * Priorities are stored alongside the values so they are never recomputed, and the arrays are
+ * kept between uses so a cleared heap can be refilled without allocating.
+ *
+ * @author Matthew Corfiatis
+ */
+public class IntMinHeap {
+    private int[] values;
+    private double[] priorities;
+    private int size = 0;
+
+    public IntMinHeap() {
+        this(16);
+    }
+
+    public IntMinHeap(int capacity) {
+        values = new int[Math.max(1, capacity)];
+        priorities = new double[Math.max(1, capacity)];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values, keeping the allocated space.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a value to the heap.
+     *
+     * @param value    Value to add.
+     * @param priority Priority of the value, lower priorities are removed first.
+     */
+    public void add(int value, double priority) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+        }
+
+        // Sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority)
+                break;
+            values[i] = values[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+
+        values[i] = value;
+        priorities[i] = priority;
+    }
+
+    /**
+     * Value with the lowest priority, the heap must not be empty.
+     */
+    public int peek() {
+        return values[0];
+    }
+
+    /**
+     * Lowest priority in the heap, the heap must not be empty.
+     */
+    public double peekPriority() {
+        return priorities[0];
+    }
+
+    /**
+     * Removes and returns the value with the lowest priority, the heap must not be empty.
+     */
+    public int poll() {
+        int result = values[0];
+        int value = values[--size];
+        double priority = priorities[size];
+
+        // Sift down
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && priorities[child + 1] < priorities[child])
+                ++child;
+            if (priority <= priorities[child])
+                break;
+            values[i] = values[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+
+        values[i] = value;
+        priorities[i] = priority;
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of objects ordered by a double priority.
+ * <p>
+ * Each priority is computed once when the value is added and stored alongside it, instead of
+ * being recomputed by a comparator on every comparison. The arrays are kept between uses so a
+ * cleared heap can be refilled without allocating.
+ *
+ * @param <T> Type of the values.
+ * @author Matthew Corfiatis
+ */
+public class MinHeap<T> {
+    private Object[] values;
+    private double[] priorities;
+    private int size = 0;
+
+    public MinHeap() {
+        this(16);
+    }
+
+    public MinHeap(int capacity) {
+        values = new Object[Math.max(1, capacity)];
+        priorities = new double[Math.max(1, capacity)];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values, keeping the allocated space.
+     */
+    public void clear() {
+        Arrays.fill(values, 0, size, null); // Don't keep the values alive
+        size = 0;
+    }
+
+    /**
+     * Adds a value to the heap.
+     *
+     * @param value    Value to add.
+     * @param priority Priority of the value, lower priorities are removed first.
+     */
+    public void add(T value, double priority) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            priorities = Arrays.copyOf(priorities, size * 2);
+        }
+
+        // Sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority)
+                break;
+            values[i] = values[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+
+        values[i] = value;
+        priorities[i] = priority;
+    }
+
+    /**
+     * Lowest priority in the heap, the heap must not be empty.
+     */
+    public double peekPriority() {
+        return priorities[0];
+    }
+
+    /**
+     * Removes and returns the value with the lowest priority, the heap must not be empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        T result = (T) values[0];
+        Object value = values[--size];
+        double priority = priorities[size];
+        values[size] = null;
+
+        // Sift down
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && priorities[child + 1] < priorities[child])
+                ++child;
+            if (priority <= priorities[child])
+                break;
+            values[i] = values[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+
+        if (size > 0) {
+            values[i] = value;
+            priorities[i] = priority;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,198 @@
+package search;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import io.JourneyReader;
+import io.ParseError;
+import search.quad.FlatQuadTree;
+import search.token.TokenIndex;
+import search.trie.PrefixMatch;
+import search.trie.PrefixSearcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * An immutable snapshot of a loaded network of stops and trips, with its search indexes and
+ * the statistics of the load.
+ * <p>
+ * Nothing in a snapshot changes once it is built, so any number of threads can search it at once
+ * without locking. A newer version of the network is a new snapshot, whether it is reloaded, see
+ * {@link QueryService}, or updated, see {@link io.FeedUpdater}. The indexes are held by one
+ * {@link StopSearcher}, which the map draws from.
+ *
+ * @author Matthew Corfiatis
+ */
+public final class Network {
+    private final StopGraph graph;
+    private final Map<String, Stop> stops = new HashMap<>();
+    private final Map<String, Trip> trips = new HashMap<>();
+    private final StopSearcher searcher;
+    private final double loadMillis;
+
+    /**
+     * Builds the search indexes for a graph of stops and trips.
+     *
+     * @param graph Graph of connected stops, as returned by the JourneyReader.
+     */
+    public Network(StopGraph graph) {
+        this(graph, System.nanoTime());
+    }
+
+    /**
+     * @param graph     Graph of connected stops.
+     * @param loadStart Time the load started, from System.nanoTime.
+     */
+    private Network(StopGraph graph, long loadStart) {
+        if (graph == null)
+            throw new IllegalArgumentException("Graph must not be null.");
+
+        this.graph = graph;
+
+        for (Stop stop : graph.getStops())
+            stops.put(stop.getId(), stop);
+
+        for (Trip trip : graph.getTrips())
+            trips.put(trip.getId(), trip);
+
+        // The stops are attached to the graph first, so scores such as popularity see their trips.
+        searcher = new StopSearcher(graph);
+
+        loadMillis = (System.nanoTime() - loadStart) / 1e6;
+    }
+
+    /**
+     * Reads stops and trips from files and builds a snapshot of them.
+     *
+     * @param stopsFile Stops file to load.
+     * @param tripsFile Trips file to load.
+     * @param parallel  Whether to parse the files in parallel.
+     * @return The loaded network.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     * @throws ParseError  When the data does not meet the expected format.
+     */
+    public static Network load(File stopsFile, File tripsFile, boolean parallel) throws IOException, ParseError {
+        long start = System.nanoTime();
+        return new Network(JourneyReader.readGraph(stopsFile, tripsFile, parallel), start);
+    }
+
+    public StopGraph getGraph() {
+        return graph;
+    }
+
+    public List<Stop> getStops() {
+        return graph.getStops();
+    }
+
+    public List<Trip> getTrips() {
+        return graph.getTrips();
+    }
+
+    /**
+     * Finds a stop by ID.
+     *
+     * @return The stop, or null if the network has no stop with the ID.
+     */
+    public Stop getStop(String id) {
+        return stops.get(id);
+    }
+
+    /**
+     * Finds a trip by ID.
+     *
+     * @return The trip, or null if the network has no trip with the ID.
+     */
+    public Trip getTrip(String id) {
+        return trips.get(id);
+    }
+
+    public int getStopCount() {
+        return graph.getStopCount();
+    }
+
+    public int getTripCount() {
+        return graph.getTripCount();
+    }
+
+    public int getConnectionCount() {
+        return graph.getConnectionCount();
+    }
+
+    /**
+     * Searcher over the stops of this snapshot.
+     */
+    public StopSearcher getSearcher() {
+        return searcher;
+    }
+
+    /**
+     * Time taken to read and index the network, in milliseconds. Only the indexing is included
+     * when the snapshot was built from a graph.
+     */
+    public double getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Searches for the best ranked stops whose name or ID starts with a prefix.
+     *
+     * @param name  Name prefix to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, with the highest scores first.
+     * @see PrefixSearcher#searchPrefix(String, int)
+     */
+    public List<PrefixMatch> searchPrefix(String name, int count) {
+        return searcher.searchPrefix(name, count);
+    }
+
+    /**
+     * Searches for the best ranked stops whose names contain every word of a query.
+     *
+     * @param query Words to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, with the highest scores first.
+     * @see TokenIndex#search(String, int)
+     */
+    public List<PrefixMatch> searchWords(String query, int count) {
+        return searcher.searchWords(query, count);
+    }
+
+    /**
+     * Searches for stops by name allowing for typos, see {@link StopSearcher#searchFuzzy(String, int)}.
+     */
+    public List<PrefixMatch> searchFuzzy(String name, int count) {
+        return searcher.searchFuzzy(name, count);
+    }
+
+    /**
+     * Finds the closest stop to a location.
+     *
+     * @return Closest stop or null if the network has no stops.
+     */
+    public Stop searchClosest(Location location) {
+        return searcher.searchClosest(location);
+    }
+
+    /**
+     * Finds the closest stop to each of many co-ordinates at once, in parallel.
+     *
+     * @return Closest stop to each location, or nulls if the network has no stops.
+     * @see FlatQuadTree#searchClosest(double[], double[])
+     */
+    public Stop[] searchClosest(double[] xs, double[] ys) {
+        return searcher.searchClosest(xs, ys);
+    }
+
+    /**
+     * Finds the stops closest to a location.
+     *
+     * @param k Maximum number of stops to find.
+     * @return Up to k stops, closest first.
+     */
+    public List<Stop> searchNearest(Location location, int k) {
+        return searcher.searchNearest(location, k);
+    }
+}
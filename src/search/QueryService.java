@@ -0,0 +1,77 @@
+package search;
+
+import io.ParseError;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Holds the current {@link Network} for threads that query it.
+ * <p>
+ * The network is kept in a single volatile reference. Queries never lock, they read the
+ * reference and search that snapshot; a reload builds a complete new snapshot and then swaps
+ * it in, so a query sees either the old network or the new one and never a mix. A query that
+ * makes several searches should read the network once and use it for all of them.
+ *
+ * @author Matthew Corfiatis
+ */
+public class QueryService {
+    private volatile Network network;
+    private final Object reloadLock = new Object(); // Keeps concurrent reloads in order
+
+    /**
+     * Creates a service with no network loaded.
+     */
+    public QueryService() {
+    }
+
+    /**
+     * @param network Network to start with.
+     */
+    public QueryService(Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Current network, or null if none has been loaded.
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * Replaces the current network.
+     *
+     * @param network Network to use for queries from now on.
+     * @return The network that was replaced, or null if there was none.
+     */
+    public Network swap(Network network) {
+        if (network == null)
+            throw new IllegalArgumentException("Network must not be null.");
+
+        synchronized (reloadLock) {
+            Network previous = this.network;
+            this.network = network;
+            return previous;
+        }
+    }
+
+    /**
+     * Reads stops and trips from files and swaps them in once they are indexed. Queries carry on
+     * using the current network while the files are read. If the files can not be loaded the
+     * current network is kept.
+     *
+     * @param stopsFile Stops file to load.
+     * @param tripsFile Trips file to load.
+     * @return The loaded network.
+     * @throws IOException When an error occurs finding or reading the specified file.
+     * @throws ParseError  When the data does not meet the expected format.
+     */
+    public Network reload(File stopsFile, File tripsFile) throws IOException, ParseError {
+        synchronized (reloadLock) {
+            Network loaded = Network.load(stopsFile, tripsFile, true);
+            network = loaded;
+            return loaded;
+        }
+    }
+}
@@ -2,36 +2,46 @@ package search;
 
 import common.Location;
 import common.Stop;
-import search.quad.Quad;
-import search.quad.QuadSearcher;
+import common.StopGraph;
+import search.quad.FlatQuadTree;
+import search.quad.StopVisitor;
+import search.token.TokenIndex;
 import search.trie.PrefixMatch;
+import search.trie.PrefixScore;
 import search.trie.PrefixSearcher;
 
-import java.awt.geom.Point2D;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
  * Manages indexing and searching for bus stops in the journey.
+ * <p>
+ * A searcher is never changed once it is built, so any number of threads can search it at once
+ * without locking. Feed updates do not change a searcher that is in use, each version of the
+ * network gets its own searcher, see {@link Network}. One {@link FlatQuadTree} answers every
+ * search by location.
  *
  * @author Matthew Corfiatis
  */
 public class StopSearcher {
-    private final Collection<Stop> stops;
+    private final StopGraph graph;
     private final PrefixSearcher prefixSearcher;
-    private final QuadSearcher quadSearcher;
+    private final TokenIndex tokenIndex;
+    private final FlatQuadTree flatTree;
 
     /**
-     * Creates a StopSearcher object and indexes the provided stops to
+     * Creates a StopSearcher object and indexes the stops of a graph to
      * allow easy searching.
      *
-     * @param stops Stops to be indexed.
+     * @param graph Graph holding the stops to be indexed.
      */
-    public StopSearcher(Collection<Stop> stops) {
-        this.stops = stops;
-        prefixSearcher = new PrefixSearcher(stops);
-        quadSearcher = new QuadSearcher(stops);
+    public StopSearcher(StopGraph graph) {
+        this.graph = graph;
+        prefixSearcher = new PrefixSearcher(graph.getStops());
+        tokenIndex = new TokenIndex(graph.getStops(), PrefixScore.POPULARITY);
+        flatTree = new FlatQuadTree(graph);
     }
 
     /**
@@ -48,13 +58,63 @@ public class StopSearcher {
         return prefixSearcher.searchPrefix(name);
     }
 
+    /**
+     * Searches for the stops that go through the most trips by name.
+     *
+     * @param name  Name prefix to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, most popular first.
+     */
+    public List<PrefixMatch> searchPrefix(String name, int count) {
+        return prefixSearcher.searchPrefix(name, count);
+    }
+
+    /**
+     * Searches for stops with every word of a query somewhere in their name.
+     * Each word of the query matches the start of a word in the name, so
+     * "inter" finds "Casuarina Interchange".
+     *
+     * @param query Words to search for.
+     * @return Every stop matching all of the words.
+     */
+    public List<PrefixMatch> searchWords(String query) {
+        return tokenIndex.search(query);
+    }
+
+    /**
+     * Searches for the most popular stops with every word of a query somewhere in their name.
+     *
+     * @param query Words to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, most popular first.
+     */
+    public List<PrefixMatch> searchWords(String query, int count) {
+        return tokenIndex.search(query, count);
+    }
+
+    /**
+     * Searches for stops by name, allowing one typo in names of three to five characters
+     * and two typos in longer names.
+     *
+     * @param name  Name to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, closest and then most popular first.
+     */
+    public List<PrefixMatch> searchFuzzy(String name, int count) {
+        if (name == null)
+            return Collections.emptyList();
+
+        int maxDistance = name.length() < 3 ? 0 : name.length() <= 5 ? 1 : 2;
+        return prefixSearcher.searchFuzzy(name, maxDistance, count);
+    }
+
     /**
      * Finds the closest stop to a lat/long co-ordinate location.
      * @param location Location to base the search.
      * @return Closest stop or null if none found.
      */
     public Stop searchClosest(Location location) {
-        return quadSearcher.searchClosest(new Point2D.Double(location.x, location.y));
+        return flatTree.searchClosest(location.x, location.y);
 //        Stop closestStop = null;
 //        double closestDistance = 0;
 //
@@ -75,6 +135,53 @@ public class StopSearcher {
 //        return closestStop;
     }
 
+    /**
+     * Finds the closest stop to each of many co-ordinates at once, in parallel.
+     * @param xs X co-ordinates of the locations.
+     * @param ys Y co-ordinates of the locations, the same length as xs.
+     * @return Closest stop to each location, or nulls if there are no stops.
+     * @see FlatQuadTree#searchClosest(double[], double[])
+     */
+    public Stop[] searchClosest(double[] xs, double[] ys) {
+        int[] closest = flatTree.searchClosest(xs, ys);
+        Stop[] result = new Stop[closest.length];
+        for (int i = 0; i < closest.length; ++i)
+            result[i] = closest[i] < 0 ? null : graph.getStop(closest[i]);
+        return result;
+    }
+
+    /**
+     * Finds the stops closest to a location.
+     * @param location Location to base the search.
+     * @param k Maximum number of stops to find.
+     * @return Up to k stops, closest first.
+     */
+    public List<Stop> searchNearest(Location location, int k) {
+        return flatTree.searchNearest(location.x, location.y, k);
+    }
+
+    /**
+     * Finds all stops within a distance of a location.
+     * @param location Location to base the search.
+     * @param radius Maximum distance from the location, in kilometres.
+     * @return Stops within the radius, closest first.
+     */
+    public List<Stop> searchWithinRadius(Location location, double radius) {
+        return flatTree.searchWithinRadius(location.x, location.y, radius);
+    }
+
+    /**
+     * Visits the stops between two corners, clustering areas smaller than the detail size.
+     * @param min Bottom left corner.
+     * @param max Top right corner.
+     * @param detail Size below which stops are clustered, in the same units as a Location.
+     * @param visitor Receives the index in {@link #getGraph()} of each stop found.
+     * @see FlatQuadTree#searchWithinRectangle(double, double, double, double, double, StopVisitor)
+     */
+    public void searchWithinRectangle(Location min, Location max, double detail, StopVisitor visitor) {
+        flatTree.searchWithinRectangle(min.x, min.y, max.x, max.y, detail, visitor);
+    }
+
     /**
      * Streams all stops.
      * @return A stream of all stops.
@@ -88,11 +195,18 @@ public class StopSearcher {
      * @return A collection of stops.
      */
     public Collection<Stop> getStops() {
-        return Collections.unmodifiableCollection(stops);
+        return graph.getStops();
+    }
+
+    public StopGraph getGraph() {
+        return graph;
     }
 
-    public Collection<Quad> getQuads() {
-        return quadSearcher.getQuads();
+    /**
+     * Tree holding the stops by location, for drawing its nodes when debugging.
+     */
+    public FlatQuadTree getTree() {
+        return flatTree;
     }
 
 }
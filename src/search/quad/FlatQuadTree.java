@@ -0,0 +1,498 @@
+package search.quad;
+
+import common.Stop;
+import common.StopGraph;
+import search.IntMinHeap;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Static quad tree that is bulk loaded from the stops of a graph and stored in flat arrays.
+ * <p>
+ * Points are sorted by their Morton (Z-order) code, which places every quad's points in one
+ * contiguous range of the sorted points. Nodes are then cut from the sorted points top down and
+ * only hold the range of points they cover, the range of their children and a bounding box
+ * shrunk to fit their points. A point is only the index of its stop, co-ordinates are read from
+ * the graph's arrays. The tree can not be changed once built, which also makes it safe to search
+ * from many threads at once.
+ *
+ * @author Matthew Corfiatis
+ */
+public class FlatQuadTree {
+    public static final int DEFAULT_LEAF_SIZE = 8;
+    private static final int CODE_BITS = 20; // Bits per axis in a Morton code
+    private static final int INDEX_BITS = 63 - 2 * CODE_BITS; // Bits left for the point index when sorting
+    private static final int BATCH_CHUNK = 1024; // Queries searched in order by one thread in a batch search
+    private static final ThreadLocal<IntMinHeap> SEARCH_HEAP = ThreadLocal.withInitial(IntMinHeap::new); // Reused by every search on a thread
+
+    private final int leafSize;
+
+    private final StopGraph graph;
+    private final int[] points; // Stop indices in Morton order
+
+    // Nodes, the root is node 0. A leaf has no children.
+    private int nodeCount = 0;
+    private int[] pointStart;
+    private int[] pointEnd;
+    private int[] childStart;
+    private int[] childEnd;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+
+    public FlatQuadTree(StopGraph graph) {
+        this(graph, DEFAULT_LEAF_SIZE);
+    }
+
+    /**
+     * Builds a tree containing every stop of a graph.
+     *
+     * @param graph    Graph holding the stops and their co-ordinates.
+     * @param leafSize Number of points a quad can hold before it is divided.
+     */
+    public FlatQuadTree(StopGraph graph, int leafSize) {
+        if (graph == null)
+            throw new IllegalArgumentException("Graph cannot be null.");
+        if (leafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be at least 1.");
+        if (graph.getStopCount() >= 1 << INDEX_BITS)
+            throw new IllegalArgumentException(String.format("A flat quad tree can hold at most %d stops.", (1 << INDEX_BITS) - 1));
+
+        this.graph = graph;
+        this.leafSize = leafSize;
+
+        int count = graph.getStopCount();
+        double boundsMinX = Double.POSITIVE_INFINITY, boundsMinY = Double.POSITIVE_INFINITY;
+        double boundsMaxX = Double.NEGATIVE_INFINITY, boundsMaxY = Double.NEGATIVE_INFINITY;
+
+        for (int s = 0; s < count; ++s) {
+            boundsMinX = Math.min(boundsMinX, graph.stopX(s));
+            boundsMinY = Math.min(boundsMinY, graph.stopY(s));
+            boundsMaxX = Math.max(boundsMaxX, graph.stopX(s));
+            boundsMaxY = Math.max(boundsMaxY, graph.stopY(s));
+        }
+
+        // Sort by Morton code, with the index packed into the low bits so a primitive sort can be used.
+        long[] keys = new long[count];
+        for (int s = 0; s < count; ++s) {
+            long code = mortonCode(
+                    quantize(graph.stopX(s), boundsMinX, boundsMaxX),
+                    quantize(graph.stopY(s), boundsMinY, boundsMaxY));
+            keys[s] = code << INDEX_BITS | s;
+        }
+        Arrays.sort(keys);
+
+        points = new int[count];
+        for (int i = 0; i < count; ++i) {
+            points[i] = (int) (keys[i] & ((1L << INDEX_BITS) - 1));
+            keys[i] >>>= INDEX_BITS; // Only the code is needed from here on
+        }
+
+        int capacity = 2 * count / leafSize + 1;
+        pointStart = new int[capacity];
+        pointEnd = new int[capacity];
+        childStart = new int[capacity];
+        childEnd = new int[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+
+        if (count > 0)
+            buildNode(newNode(0, count), keys, 0);
+    }
+
+    public int size() {
+        return points.length;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getLeafSize() {
+        return leafSize;
+    }
+
+    public StopGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Bounding box of a node, shrunk to fit the points it covers.
+     *
+     * @param node Index of the node, between 0 and the node count.
+     */
+    public Rectangle2D getNodeBounds(int node) {
+        if (node < 0 || node >= nodeCount)
+            throw new IllegalArgumentException("Node index is out of range.");
+
+        return new Rectangle2D.Double(minX[node], minY[node], maxX[node] - minX[node], maxY[node] - minY[node]);
+    }
+
+    /**
+     * Finds the closest stop to a co-ordinate.
+     * <p>
+     * Quads are visited closest first, and the search ends once the closest remaining quad
+     * is further away than the closest point found so far.
+     *
+     * @param x X co-ordinate to base the search.
+     * @param y Y co-ordinate to base the search.
+     * @return Closest stop or null if the tree is empty.
+     * @throws IllegalArgumentException When a co-ordinate is NaN.
+     */
+    public Stop searchClosest(double x, double y) throws IllegalArgumentException {
+        checkCoordinate(x, y);
+        if (nodeCount == 0)
+            return null;
+
+        return graph.getStop(points[closestPoint(x, y, -1)]);
+    }
+
+    /**
+     * Finds the k stops closest to a co-ordinate.
+     *
+     * @param x X co-ordinate to base the search.
+     * @param y Y co-ordinate to base the search.
+     * @param k Maximum number of stops to find.
+     * @return Up to k stops, closest first.
+     * @throws IllegalArgumentException When a co-ordinate is NaN.
+     */
+    public List<Stop> searchNearest(double x, double y, int k) throws IllegalArgumentException {
+        return searchBestFirst(x, y, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds all stops within a distance of a co-ordinate.
+     *
+     * @param x      X co-ordinate to base the search.
+     * @param y      Y co-ordinate to base the search.
+     * @param radius Maximum distance from the co-ordinate.
+     * @return Stops within the radius, closest first.
+     * @throws IllegalArgumentException When a co-ordinate is NaN.
+     */
+    public List<Stop> searchWithinRadius(double x, double y, double radius) throws IllegalArgumentException {
+        return searchBestFirst(x, y, Integer.MAX_VALUE, radius);
+    }
+
+    /**
+     * Visits the stops inside a rectangle.
+     * <p>
+     * Nodes that hold more than one point and are no wider or taller than the detail size are not
+     * divided any further. Their first point is visited as a cluster standing in for the whole
+     * node, so the number of stops visited depends on the size of the rectangle and not on the
+     * number of stops in it.
+     *
+     * @param minX    Left edge of the rectangle.
+     * @param minY    Bottom edge of the rectangle.
+     * @param maxX    Right edge of the rectangle.
+     * @param maxY    Top edge of the rectangle.
+     * @param detail  Size below which nodes are clustered, or 0 to visit every stop.
+     * @param visitor Receives the index in the graph of each stop found.
+     */
+    public void searchWithinRectangle(double minX, double minY, double maxX, double maxY, double detail, StopVisitor visitor) {
+        if (visitor == null)
+            throw new IllegalArgumentException("Visitor cannot be null.");
+
+        if (nodeCount > 0)
+            visitWithin(0, minX, minY, maxX, maxY, detail, visitor);
+    }
+
+    private void visitWithin(int node, double minX, double minY, double maxX, double maxY, double detail, StopVisitor visitor) {
+        if (this.maxX[node] < minX || this.minX[node] > maxX || this.maxY[node] < minY || this.minY[node] > maxY)
+            return;
+
+        if (pointEnd[node] - pointStart[node] > 1 && detail > 0 &&
+                this.maxX[node] - this.minX[node] <= detail && this.maxY[node] - this.minY[node] <= detail) {
+            visitor.visit(points[pointStart[node]], true);
+            return;
+        }
+
+        if (childStart[node] != childEnd[node]) {
+            for (int child = childStart[node]; child < childEnd[node]; ++child)
+                visitWithin(child, minX, minY, maxX, maxY, detail, visitor);
+            return;
+        }
+
+        for (int i = pointStart[node]; i < pointEnd[node]; ++i) {
+            double x = graph.stopX(points[i]);
+            double y = graph.stopY(points[i]);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+                visitor.visit(points[i], false);
+        }
+    }
+
+    /**
+     * Collects points from a best first search until enough have been found.
+     * <p>
+     * Quads and points share one heap ordered by distance. A leaf's points are added to the heap
+     * when it is taken off, so a point is only found once nothing left in the heap can be closer.
+     *
+     * @param k      Maximum number of stops to find.
+     * @param radius Maximum distance from the co-ordinate.
+     * @return Stops found, closest first.
+     */
+    private List<Stop> searchBestFirst(double x, double y, int k, double radius) throws IllegalArgumentException {
+        checkCoordinate(x, y);
+        List<Stop> found = new ArrayList<>(Math.max(0, Math.min(k, points.length)));
+        if (k <= 0 || nodeCount == 0)
+            return found;
+
+        // Nodes are stored as their index and points as the complement of theirs.
+        IntMinHeap items = SEARCH_HEAP.get();
+        items.clear();
+        items.add(0, nodeDistance(0, x, y));
+
+        double radiusSquared = radius * radius;
+        while (found.size() < k && !items.isEmpty() && items.peekPriority() <= radiusSquared) {
+            int item = items.poll();
+
+            if (item < 0) {
+                found.add(graph.getStop(points[~item]));
+            } else if (childStart[item] == childEnd[item]) {
+                for (int i = pointStart[item]; i < pointEnd[item]; ++i) {
+                    double dx = graph.stopX(points[i]) - x;
+                    double dy = graph.stopY(points[i]) - y;
+                    items.add(~i, dx * dx + dy * dy);
+                }
+            } else {
+                for (int child = childStart[item]; child < childEnd[item]; ++child)
+                    items.add(child, nodeDistance(child, x, y));
+            }
+        }
+
+        items.clear();
+        return found;
+    }
+
+    /**
+     * Finds the closest stop to each of many co-ordinates, searching in parallel on the common
+     * fork-join pool.
+     * <p>
+     * Queries are sorted into Morton order and split into chunks, so each thread searches a run of
+     * nearby queries that visit the same nodes. Each query in a chunk starts with the distance to
+     * the previous query's answer as its bound, which is usually close, so few nodes are visited.
+     *
+     * @param xs X co-ordinates of the queries.
+     * @param ys Y co-ordinates of the queries, the same length as xs.
+     * @return For each query, the index of the closest stop in the graph, or -1 if the tree is empty.
+     * @throws IllegalArgumentException When the arrays are null or have different lengths, or a
+     *                                  co-ordinate is NaN.
+     */
+    public int[] searchClosest(double[] xs, double[] ys) throws IllegalArgumentException {
+        if (xs == null || ys == null)
+            throw new IllegalArgumentException("Co-ordinates cannot be null.");
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("There must be the same number of x and y co-ordinates.");
+        for (int i = 0; i < xs.length; ++i)
+            checkCoordinate(xs[i], ys[i]);
+
+        int[] closest = new int[xs.length];
+        if (nodeCount == 0) {
+            Arrays.fill(closest, -1);
+            return closest;
+        }
+
+        // The query index is packed beside the code when sorting, which limits how many fit in one sort.
+        int sliceSize = (1 << INDEX_BITS) - 1;
+        for (int from = 0; from < xs.length; from += sliceSize)
+            searchSlice(xs, ys, from, Math.min(xs.length, from + sliceSize), closest);
+
+        return closest;
+    }
+
+    private void searchSlice(double[] queryXs, double[] queryYs, int from, int to, int[] closest) {
+        int count = to - from;
+        long[] order = new long[count];
+        for (int i = 0; i < count; ++i) {
+            long code = mortonCode(
+                    quantize(Math.max(minX[0], Math.min(maxX[0], queryXs[from + i])), minX[0], maxX[0]),
+                    quantize(Math.max(minY[0], Math.min(maxY[0], queryYs[from + i])), minY[0], maxY[0]));
+            order[i] = code << INDEX_BITS | i;
+        }
+        Arrays.parallelSort(order);
+
+        int chunks = (count + BATCH_CHUNK - 1) / BATCH_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int hint = -1;
+            for (int i = chunk * BATCH_CHUNK; i < Math.min(count, (chunk + 1) * BATCH_CHUNK); ++i) {
+                int query = from + (int) (order[i] & ((1L << INDEX_BITS) - 1));
+                hint = closestPoint(queryXs[query], queryYs[query], hint);
+                closest[query] = points[hint];
+            }
+        });
+    }
+
+    /**
+     * Finds the position of the closest point to a co-ordinate in the sorted points.
+     * <p>
+     * Quads are visited closest first, and the search ends once the closest remaining quad is
+     * further away than the closest point found so far. Distances are compared squared.
+     *
+     * @param hint Position of a point to start with as the closest, or -1 for none.
+     */
+    private int closestPoint(double x, double y, int hint) {
+        IntMinHeap nodes = SEARCH_HEAP.get();
+        nodes.clear();
+        nodes.add(0, nodeDistance(0, x, y));
+
+        int closest = hint;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        if (hint >= 0) {
+            double dx = graph.stopX(points[hint]) - x;
+            double dy = graph.stopY(points[hint]) - y;
+            closestDistance = dx * dx + dy * dy;
+        }
+
+        while (!nodes.isEmpty() && nodes.peekPriority() < closestDistance) {
+            int node = nodes.poll();
+
+            if (childStart[node] == childEnd[node]) {
+                for (int i = pointStart[node]; i < pointEnd[node]; ++i) {
+                    double dx = graph.stopX(points[i]) - x;
+                    double dy = graph.stopY(points[i]) - y;
+                    double distance = dx * dx + dy * dy;
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closest = i;
+                    }
+                }
+            } else {
+                for (int child = childStart[node]; child < childEnd[node]; ++child) {
+                    double distance = nodeDistance(child, x, y);
+                    if (distance < closestDistance)
+                        nodes.add(child, distance);
+                }
+            }
+        }
+
+        nodes.clear();
+        return closest;
+    }
+
+    /**
+     * Rejects a NaN co-ordinate, which is never closer or further than anything and so would
+     * return an arbitrary stop.
+     */
+    private static void checkCoordinate(double x, double y) throws IllegalArgumentException {
+        if (Double.isNaN(x) || Double.isNaN(y))
+            throw new IllegalArgumentException("Co-ordinates cannot be NaN.");
+    }
+
+    /**
+     * Divides a node into up to four children, one for each quadrant that contains points.
+     * The children are given consecutive node indices before any of them are divided further.
+     *
+     * @param node  Node to divide.
+     * @param codes Morton codes of the sorted points.
+     * @param depth Depth of the node, the root is 0.
+     */
+    private void buildNode(int node, long[] codes, int depth) {
+        int start = pointStart[node];
+        int end = pointEnd[node];
+
+        // Points with the same code can not be separated, so they stay in one leaf.
+        if (end - start <= leafSize || depth == CODE_BITS)
+            return;
+
+        int shift = 2 * (CODE_BITS - 1 - depth);
+        int first = nodeCount;
+
+        // Points are sorted, so each quadrant is a run of points with the same two bits.
+        int quadrantStart = start;
+        while (quadrantStart < end) {
+            long quadrant = codes[quadrantStart] >>> shift & 3;
+            int quadrantEnd = quadrantStart + 1;
+            while (quadrantEnd < end && (codes[quadrantEnd] >>> shift & 3) == quadrant)
+                ++quadrantEnd;
+
+            newNode(quadrantStart, quadrantEnd);
+            quadrantStart = quadrantEnd;
+        }
+
+        childStart[node] = first;
+        childEnd[node] = nodeCount;
+
+        for (int child = first; child < childEnd[node]; ++child)
+            buildNode(child, codes, depth + 1);
+    }
+
+    /**
+     * Adds a node covering a range of the sorted points, with bounds that fit those points.
+     *
+     * @return Index of the new node.
+     */
+    private int newNode(int start, int end) {
+        if (nodeCount == pointStart.length) {
+            int capacity = nodeCount * 2;
+            pointStart = Arrays.copyOf(pointStart, capacity);
+            pointEnd = Arrays.copyOf(pointEnd, capacity);
+            childStart = Arrays.copyOf(childStart, capacity);
+            childEnd = Arrays.copyOf(childEnd, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+
+        int node = nodeCount++;
+        pointStart[node] = start;
+        pointEnd[node] = end;
+        minX[node] = minY[node] = Double.POSITIVE_INFINITY;
+        maxX[node] = maxY[node] = Double.NEGATIVE_INFINITY;
+
+        for (int i = start; i < end; ++i) {
+            minX[node] = Math.min(minX[node], graph.stopX(points[i]));
+            minY[node] = Math.min(minY[node], graph.stopY(points[i]));
+            maxX[node] = Math.max(maxX[node], graph.stopX(points[i]));
+            maxY[node] = Math.max(maxY[node], graph.stopY(points[i]));
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the squared distance from a co-ordinate to the closest edge of a node, or 0 if it is inside.
+     */
+    private double nodeDistance(int node, double x, double y) {
+        double dx = Math.max(0, Math.max(minX[node] - x, x - maxX[node]));
+        double dy = Math.max(0, Math.max(minY[node] - y, y - maxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Scales a co-ordinate into a cell number between 0 and 2^CODE_BITS - 1.
+     */
+    private static long quantize(double value, double min, double max) {
+        if (max <= min)
+            return 0;
+
+        long cells = 1L << CODE_BITS;
+        return Math.min(cells - 1, (long) ((value - min) / (max - min) * cells));
+    }
+
+    /**
+     * Interleaves the bits of two cell numbers, with the y bit above the x bit at every level.
+     */
+    private static long mortonCode(long x, long y) {
+        return spreadBits(x) | spreadBits(y) << 1;
+    }
+
+    /**
+     * Moves the low 32 bits of a value so there is a zero bit between each of them.
+     */
+    private static long spreadBits(long value) {
+        value &= 0xFFFFFFFFL;
+        value = (value | value << 16) & 0x0000FFFF0000FFFFL;
+        value = (value | value << 8) & 0x00FF00FF00FF00FFL;
+        value = (value | value << 4) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value << 2) & 0x3333333333333333L;
+        value = (value | value << 1) & 0x5555555555555555L;
+        return value;
+    }
+}
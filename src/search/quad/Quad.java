@@ -20,7 +20,7 @@ public class Quad implements QuadItem {
             southWest,
             northWest;
     private boolean divided = false;
-    private final Set<QuadPoint> points = new HashSet<>();
+    private final List<QuadPoint> points = new ArrayList<>(); // List so searches can index it without an iterator
 
     public Quad(Rectangle2D bounds, int maxPoints) {
         this.bounds = bounds;
@@ -77,7 +77,7 @@ public class Quad implements QuadItem {
         visited.add(this);
 
         if(hasPoints()) {
-            Optional<QuadPoint> point = streamPoints().filter(x -> !x.getPoint().equals(exclude)).findAny();
+            Optional<QuadPoint> point = streamPoints().filter(x -> x.getX() != exclude.getX() || x.getY() != exclude.getY()).findAny();
             if(point.isPresent())
                 return point.get();
         }
@@ -100,7 +100,7 @@ public class Quad implements QuadItem {
      * @param point
      */
     public boolean addPoint(QuadPoint point) {
-        if(!bounds.contains(point.getPoint()))
+        if(!bounds.contains(point.getX(), point.getY()))
             return false;
 
         if(isDivided()) { // If this quad has already divided, the children can be put inside
@@ -128,15 +128,18 @@ public class Quad implements QuadItem {
         if(divided)
             return false;
 
-        double x = bounds.getX();
-        double y = bounds.getY();
-        double w = bounds.getWidth();
-        double h = bounds.getHeight();
+        double minX = bounds.getMinX();
+        double minY = bounds.getMinY();
+        double maxX = bounds.getMaxX();
+        double maxY = bounds.getMaxY();
+        double midX = minX + bounds.getWidth() / 2;
+        double midY = minY + bounds.getHeight() / 2;
 
-        northEast = new Quad(x + w/2, y, w/2, h/2, this, maxPoints);
-        southEast = new Quad(x + w/2, y + h/2, w/2, h/2, this, maxPoints);
-        southWest = new Quad(x, y + h/2, w/2, h/2, this, maxPoints);
-        northWest = new Quad(x, y, w/2, h/2, this, maxPoints);
+        // Built from edges so the children exactly cover this quad.
+        northEast = new Quad(QuadRectangle.fromEdges(midX, minY, maxX, midY), this, maxPoints);
+        southEast = new Quad(QuadRectangle.fromEdges(midX, midY, maxX, maxY), this, maxPoints);
+        southWest = new Quad(QuadRectangle.fromEdges(minX, midY, midX, maxY), this, maxPoints);
+        northWest = new Quad(QuadRectangle.fromEdges(minX, minY, midX, midY), this, maxPoints);
 
         divided = true;
 
@@ -175,8 +178,37 @@ public class Quad implements QuadItem {
         return set;
     }
 
-    public Set<QuadPoint> getPoints() {
-        return Collections.unmodifiableSet(points);
+    public List<QuadPoint> getPoints() {
+        return Collections.unmodifiableList(points);
+    }
+
+    /**
+     * Number of points directly inside this quad.
+     */
+    public int getPointCount() {
+        return points.size();
+    }
+
+    /**
+     * Returns a point directly inside this quad by index, without creating a collection.
+     * @param index Index between 0 and getPointCount().
+     */
+    public QuadPoint getPoint(int index) {
+        return points.get(index);
+    }
+
+    /**
+     * Returns a direct child of this quad by index, without creating a collection.
+     * @param index Index between 0 and 3, the quad must be divided.
+     */
+    public Quad getChild(int index) {
+        switch(index) {
+            case 0: return northEast;
+            case 1: return southEast;
+            case 2: return southWest;
+            case 3: return northWest;
+            default: throw new IndexOutOfBoundsException("Quads have 4 children, got index " + index);
+        }
     }
 
     public Stream<QuadPoint> streamPoints() {
@@ -270,7 +302,20 @@ public class Quad implements QuadItem {
      */
     @Override
     public double distance(Point2D point) {
-        return point.distance(closestPointOnQuad(point));
+        return distance(point.getX(), point.getY());
+    }
+
+    /**
+     * Finds the distance from a given point to the closest point on/in the quad.
+     * Same result as measuring to closestPointOnQuad, worked out without creating a point.
+     * @param x X co-ordinate of the point.
+     * @param y Y co-ordinate of the point.
+     * @return A distance double, zero if the point is inside the quad.
+     */
+    public double distance(double x, double y) {
+        double dx = Math.max(0, Math.max(bounds.getMinX() - x, x - bounds.getMaxX()));
+        double dy = Math.max(0, Math.max(bounds.getMinY() - y, y - bounds.getMaxY()));
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     @Override
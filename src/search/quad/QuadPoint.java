@@ -1,42 +1,67 @@
 package search.quad;
 
 import common.Stop;
+import common.StopGraph;
 
 import java.awt.geom.Point2D;
-import java.util.Objects;
 
 /**
- * Represents a point in a quad tree and an item associated with that point.
+ * Represents a point in a quad tree, the stop at an index of a graph. Co-ordinates are read from
+ * the graph's arrays rather than copied into the point.
  *
  * @author Matthew Corfiatis
  */
 public class QuadPoint implements QuadItem {
-    private final Point2D point;
-    private final Stop stop;
+    private final StopGraph graph;
+    private final int index;
 
-    public QuadPoint(Point2D point, Stop stop) {
-        this.point = point;
-        this.stop = stop;
+    /**
+     * Creates the point of a stop in a graph.
+     *
+     * @param graph Graph holding the stop and its co-ordinates.
+     * @param index Index of the stop in the graph.
+     */
+    public QuadPoint(StopGraph graph, int index) {
+        this.graph = graph;
+        this.index = index;
     }
 
-    public Point2D getPoint() {
-        return point;
+    public double getX() {
+        return graph.stopX(index);
+    }
+
+    public double getY() {
+        return graph.stopY(index);
+    }
+
+    public int getIndex() {
+        return index;
     }
 
     public Stop getStop() {
-        return stop;
+        return graph.getStop(index);
     }
 
     @Override
     public double distance(Point2D point) {
-        return this.point.distance(point);
+        return distance(point.getX(), point.getY());
+    }
+
+    /**
+     * Returns the distance from this point to a co-ordinate.
+     */
+    public double distance(double x, double y) {
+        double dx = getX() - x;
+        double dy = getY() - y;
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     @Override
     public String toString() {
         return "QuadPoint{" +
-                "point=" + point +
-                ", stop=" + stop +
+                "x=" + getX() +
+                ", y=" + getY() +
+                ", stop=" + getStop() +
                 '}';
     }
 
@@ -45,13 +70,12 @@ public class QuadPoint implements QuadItem {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         QuadPoint quadPoint = (QuadPoint) o;
-        return Objects.equals(point, quadPoint.point) &&
-                Objects.equals(stop, quadPoint.stop);
+        return graph == quadPoint.graph && index == quadPoint.index;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(point, stop);
+        return 31 * System.identityHashCode(graph) + index;
     }
 
 }
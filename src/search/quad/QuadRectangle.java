@@ -5,33 +5,54 @@ import java.awt.geom.Rectangle2D;
 
 /**
  * Extends a Rectangle2D.Double and implements contains to include all edges.
+ * <p>
+ * The edges are stored exactly as given so a quad and its children share the same edge values.
+ * Working them out from x + width can be off by a rounding error, leaving a gap that points fall through.
  *
  * @author Matthew Corfiatis
  */
 public class QuadRectangle extends Rectangle2D.Double {
+    private final double maxX;
+    private final double maxY;
 
     public QuadRectangle(double x, double y, double w, double h) {
+        this(x, y, w, h, x + w, y + h);
+    }
+
+    private QuadRectangle(double x, double y, double w, double h, double maxX, double maxY) {
         super(x, y, w, h);
+        this.maxX = maxX;
+        this.maxY = maxY;
     }
 
     /**
-     * Implemented to include points that are exactly on the edge of the rectangle.
+     * Creates a rectangle from the positions of its edges.
      */
+    public static QuadRectangle fromEdges(double minX, double minY, double maxX, double maxY) {
+        return new QuadRectangle(minX, minY, maxX - minX, maxY - minY, maxX, maxY);
+    }
+
     @Override
-    public boolean contains(Point2D p) {
-        if(super.contains(p))
-            return true;
+    public double getMaxX() {
+        return maxX;
+    }
 
-        // Check top and bottom edges
-        if(p.getX() >= getMinX() && p.getX() <= getMaxX())
-            if(p.getY() == getMinY() || p.getY() == getMaxY())
-                return true;
+    @Override
+    public double getMaxY() {
+        return maxY;
+    }
 
-        // Check left and right edges
-        if(p.getY() >= getMinY() && p.getY() <= getMaxY())
-            if(p.getX() == getMinX() || p.getX() == getMaxX())
-                return true;
+    /**
+     * Implemented to include points that are exactly on the edge of the rectangle.
+     */
+    @Override
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
 
-        return false;
+    @Override
+    public boolean contains(double x, double y) {
+        return x >= getMinX() && x <= maxX &&
+                y >= getMinY() && y <= maxY;
     }
 }
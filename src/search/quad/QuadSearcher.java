@@ -1,9 +1,11 @@
 package search.quad;
 
-import common.Location;
 import common.Stop;
+import common.StopGraph;
+import search.MinHeap;
 
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,9 +16,10 @@ import java.util.stream.Collectors;
  */
 public class QuadSearcher {
     private static final int MAX_POINTS = 2; // Max points per quad
+    private static final ThreadLocal<MinHeap<QuadItem>> SEARCH_HEAP = ThreadLocal.withInitial(MinHeap::new); // Reused by every search on a thread
     private Quad rootQuad;
     private Set<Quad> quads = new HashSet<>();
-    private List<QuadPoint> quadPoints = new ArrayList<>();
+    private Set<QuadPoint> quadPoints = new HashSet<>();
 
     private double
             minX = Double.NaN,
@@ -24,8 +27,16 @@ public class QuadSearcher {
             maxX = Double.NaN,
             maxY = Double.NaN;
 
-    public QuadSearcher(Collection<Stop> stops) {
-        generatePoints(stops);
+    /**
+     * Builds a tree containing every stop of a graph.
+     *
+     * @param graph Graph holding the stops and their co-ordinates.
+     */
+    public QuadSearcher(StopGraph graph) {
+        if (graph == null)
+            throw new IllegalArgumentException("Graph cannot be null.");
+
+        generatePoints(graph);
         buildTree(quadPoints);
     }
 
@@ -40,6 +51,21 @@ public class QuadSearcher {
         //return searchClosestElimination(location);
     }
 
+    /**
+     * Finds the closest stop to a co-ordinate without allocating.
+     *
+     * @param x X co-ordinate to base the search.
+     * @param y Y co-ordinate to base the search.
+     * @return Closest stop or null if none found.
+     */
+    public Stop searchClosest(double x, double y) {
+        MinHeap<QuadItem> items = startSearch();
+        QuadPoint closest = nextClosestPoint(items, x, y, Double.POSITIVE_INFINITY);
+        items.clear();
+
+        return closest == null ? null : closest.getStop();
+    }
+
     /**
      * Uses priority queue implementation of closest neighbour search to find
      * closest point to another point.
@@ -47,32 +73,162 @@ public class QuadSearcher {
      * @return The closest stop or null if no stops found.
      */
     public Stop searchClosestPriorityQueue(final Point2D location) {
-        PriorityQueue<QuadItem> items = new PriorityQueue<QuadItem>(1, (i1, i2) -> {
-            double i1Dist = i1.distance(location);
-            double i2Dist = i2.distance(location);
+        return searchClosest(location.getX(), location.getY());
+    }
+
+    /**
+     * Finds the k stops closest to a location.
+     *
+     * @param location Location to base the search.
+     * @param k        Maximum number of stops to find.
+     * @return Up to k stops, closest first.
+     */
+    public List<Stop> searchNearest(final Point2D location, int k) {
+        return searchBestFirst(location, k, Double.POSITIVE_INFINITY);
+    }
 
-            if(i1Dist < i2Dist)
-                return -1;
-            else if(i1Dist > i2Dist)
-                return 1;
+    /**
+     * Finds all stops within a distance of a location.
+     *
+     * @param location Location to base the search.
+     * @param radius   Maximum distance from the location, in the same units as a Location.
+     * @return Stops within the radius, closest first.
+     */
+    public List<Stop> searchWithinRadius(final Point2D location, double radius) {
+        return searchBestFirst(location, Integer.MAX_VALUE, radius);
+    }
 
-            return 0;
-        });
+    /**
+     * Visits the stops inside a rectangle.
+     * <p>
+     * Quads that are no wider or taller than the detail size are not divided any further. One stop
+     * from each of them is visited as a cluster standing in for the whole quad, so the number of
+     * stops visited depends on the size of the rectangle and not on the number of stops in it.
+     *
+     * @param minX    Left edge of the rectangle.
+     * @param minY    Bottom edge of the rectangle.
+     * @param maxX    Right edge of the rectangle.
+     * @param maxY    Top edge of the rectangle.
+     * @param detail  Size below which quads are clustered, or 0 to visit every stop.
+     * @param visitor Receives the stops found.
+     */
+    public void searchWithinRectangle(double minX, double minY, double maxX, double maxY, double detail, StopVisitor visitor) {
+        if (visitor == null)
+            throw new IllegalArgumentException("Visitor cannot be null.");
 
-        items.add(rootQuad);
+        visitWithin(rootQuad, minX, minY, maxX, maxY, detail, visitor);
+    }
+
+    private void visitWithin(Quad quad, double minX, double minY, double maxX, double maxY, double detail, StopVisitor visitor) {
+        Rectangle2D bounds = quad.getBounds();
+        if (bounds.getMaxX() < minX || bounds.getMinX() > maxX || bounds.getMaxY() < minY || bounds.getMinY() > maxY)
+            return;
+
+        if (bounds.getWidth() <= detail && bounds.getHeight() <= detail) {
+            QuadPoint point = firstPoint(quad);
+            if (point != null)
+                visitor.visit(point.getIndex(), true);
+            return;
+        }
 
+        if (quad.isDivided()) {
+            for (int i = 0; i < 4; ++i)
+                visitWithin(quad.getChild(i), minX, minY, maxX, maxY, detail, visitor);
+            return;
+        }
+
+        for (int i = 0; i < quad.getPointCount(); ++i) {
+            QuadPoint point = quad.getPoint(i);
+            double x = point.getX();
+            double y = point.getY();
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+                visitor.visit(point.getIndex(), false);
+        }
+    }
+
+    /**
+     * Finds any point inside a quad, or null if it has none.
+     */
+    private static QuadPoint firstPoint(Quad quad) {
+        if (!quad.isDivided())
+            return quad.getPointCount() == 0 ? null : quad.getPoint(0);
+
+        for (int i = 0; i < 4; ++i) {
+            QuadPoint point = firstPoint(quad.getChild(i));
+            if (point != null)
+                return point;
+        }
+        return null;
+    }
+
+    /**
+     * Collects points from a best first search until enough have been found.
+     *
+     * @param location Location to base the search.
+     * @param k        Maximum number of stops to find.
+     * @param radius   Maximum distance from the location.
+     * @return Stops found, closest first.
+     */
+    private List<Stop> searchBestFirst(final Point2D location, int k, double radius) {
+        List<Stop> found = new ArrayList<>();
+
+        if (k <= 0)
+            return found;
+
+        MinHeap<QuadItem> items = startSearch();
+        QuadPoint point;
+
+        while (found.size() < k && (point = nextClosestPoint(items, location.getX(), location.getY(), radius)) != null)
+            found.add(point.getStop());
+
+        items.clear();
+        return found;
+    }
+
+    /**
+     * Gets the heap for this thread, holding only the root quad.
+     */
+    private MinHeap<QuadItem> startSearch() {
+        MinHeap<QuadItem> items = SEARCH_HEAP.get();
+        items.clear();
+        items.add(rootQuad, 0);
+        return items;
+    }
+
+    /**
+     * Best first search of the tree. Items are visited in order of distance from the location,
+     * so each call returns the next closest point. The search stops expanding as soon as the next
+     * closest item is further away than the radius. Each item's distance is worked out once, when
+     * it is added to the heap.
+     *
+     * @param items  Heap holding the items left to visit, kept between calls.
+     * @param x      X co-ordinate to base the search.
+     * @param y      Y co-ordinate to base the search.
+     * @param radius Maximum distance from the location.
+     * @return The next closest point, or null if there are no more points within the radius.
+     */
+    private static QuadPoint nextClosestPoint(MinHeap<QuadItem> items, double x, double y, double radius) {
         while (!items.isEmpty()) {
+            if (items.peekPriority() > radius)
+                return null; // Everything left is further away.
+
             QuadItem item = items.poll();
 
             if(item instanceof Quad) {
                 Quad quad = (Quad)item;
                 if(quad.isDivided()) {
-                    items.addAll(quad.getQuads());
+                    for (int i = 0; i < 4; ++i) {
+                        Quad child = quad.getChild(i);
+                        items.add(child, child.distance(x, y));
+                    }
                 } else {
-                    items.addAll(quad.getPoints());
+                    for (int i = 0; i < quad.getPointCount(); ++i) {
+                        QuadPoint point = quad.getPoint(i);
+                        items.add(point, point.distance(x, y));
+                    }
                 }
             } else if(item instanceof QuadPoint) {
-                return ((QuadPoint)item).getStop();
+                return (QuadPoint)item;
             }
         }
 
@@ -100,7 +256,7 @@ public class QuadSearcher {
         if (nearbyPoint == null)
             return null;
         nearestPoint = nearbyPoint;
-        nearestPointDistance = nearestPoint.getPoint().distance(location);
+        nearestPointDistance = nearestPoint.distance(location);
 
         // Get all points from quads that are within the range of the distance to the initial reference point.
         Set<QuadPoint> foundPoints = quads.stream().filter(x -> x.hasPoints() && x.distance(location) <= nearestPointDistance)
@@ -114,11 +270,11 @@ public class QuadSearcher {
         for(QuadPoint p : foundPoints) {
             if(closest == null) {
                 closest = p;
-                closestDistance = closest.getPoint().distance(location);
+                closestDistance = closest.distance(location);
                 continue;
             }
 
-            double distance = p.getPoint().distance(location);
+            double distance = p.distance(location);
             if(distance < closestDistance) {
                 closest = p;
                 closestDistance = distance;
@@ -138,7 +294,7 @@ public class QuadSearcher {
      * @param points Points to generate the tree from.
      */
     private void buildTree(Collection<QuadPoint> points) {
-        rootQuad = new Quad(minX, minY, maxX - minX, maxY - minY, MAX_POINTS);
+        rootQuad = new Quad(QuadRectangle.fromEdges(minX, minY, maxX, maxY), MAX_POINTS);
         quads.add(rootQuad);
         for (QuadPoint p : points) {
             if (!rootQuad.addPoint(p))
@@ -150,23 +306,35 @@ public class QuadSearcher {
     /**
      * Populates the quadPoints field and finds the spatial range of the points.
      *
-     * @param stops Stops to generate data from.
+     * @param graph Graph to generate data from.
      */
-    private void generatePoints(Collection<Stop> stops) {
-        for (Stop stop : stops) {
-            Location l = stop.getLocation();
-
-            // Find range of points.
-            if (Double.isNaN(minX) || l.x < minX)
-                minX = l.x;
-            if (Double.isNaN(minY) || l.y < minY)
-                minY = l.y;
-            if (Double.isNaN(maxX) || l.x > maxX)
-                maxX = l.x;
-            if (Double.isNaN(maxY) || l.y > maxY)
-                maxY = l.y;
-
-            quadPoints.add(new QuadPoint(new Point2D.Double(l.x, l.y), stop));
+    private void generatePoints(StopGraph graph) {
+        for (int i = 0; i < graph.getStopCount(); ++i) {
+            quadPoints.add(createPoint(graph, i));
         }
     }
+
+    /**
+     * Creates a quad point for a stop and expands the spatial range to include it.
+     *
+     * @param graph Graph holding the stop.
+     * @param index Index of the stop in the graph.
+     * @return A quad point at the location of the stop.
+     */
+    private QuadPoint createPoint(StopGraph graph, int index) {
+        double x = graph.stopX(index);
+        double y = graph.stopY(index);
+
+        // Find range of points.
+        if (Double.isNaN(minX) || x < minX)
+            minX = x;
+        if (Double.isNaN(minY) || y < minY)
+            minY = y;
+        if (Double.isNaN(maxX) || x > maxX)
+            maxX = x;
+        if (Double.isNaN(maxY) || y > maxY)
+            maxY = y;
+
+        return new QuadPoint(graph, index);
+    }
 }
@@ -0,0 +1,15 @@
+package search.quad;
+
+/**
+ * Receives the stops found by an area search, as their index in the graph that was searched.
+ *
+ * @author Matthew Corfiatis
+ */
+@FunctionalInterface
+public interface StopVisitor {
+    /**
+     * @param stop    Index of the stop that was found.
+     * @param cluster Whether the stop stands in for every stop in a quad too small to show in detail.
+     */
+    void visit(int stop, boolean cluster);
+}
@@ -0,0 +1,88 @@
+package search.route;
+
+import common.Stop;
+import common.Trip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A route between two stops made up of legs travelled on trips.
+ *
+ * @author Matthew Corfiatis
+ */
+public class Journey {
+    private final List<JourneyLeg> legs;
+    private final double distance;
+
+    Journey(List<JourneyLeg> legs, double distance) {
+        this.legs = legs;
+        this.distance = distance;
+    }
+
+    public List<JourneyLeg> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    /**
+     * Total straight line distance travelled between consecutive stops.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Every stop visited on the journey in order, stops where trips are changed are only listed once.
+     */
+    public List<Stop> getStops() {
+        List<Stop> stops = new ArrayList<>();
+
+        for (JourneyLeg leg : legs) {
+            List<Stop> legStops = leg.getStops();
+            stops.addAll(stops.isEmpty() ? legStops : legStops.subList(1, legStops.size()));
+        }
+
+        return stops;
+    }
+
+    /**
+     * Trips used on the journey in order.
+     */
+    public List<Trip> getTrips() {
+        List<Trip> trips = new ArrayList<>();
+
+        for (JourneyLeg leg : legs)
+            trips.add(leg.getTrip());
+
+        return trips;
+    }
+
+    /**
+     * Stops where the journey changes from one trip to another.
+     */
+    public List<Stop> getTransferStops() {
+        List<Stop> transfers = new ArrayList<>();
+
+        for (int i = 1; i < legs.size(); ++i)
+            transfers.add(legs.get(i).getBoardingStop());
+
+        return transfers;
+    }
+
+    public int getTransferCount() {
+        return Math.max(0, legs.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (JourneyLeg leg : legs) {
+            builder.append(leg);
+            builder.append(System.lineSeparator());
+        }
+
+        return builder.toString();
+    }
+}
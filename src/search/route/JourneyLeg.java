@@ -0,0 +1,46 @@
+package search.route;
+
+import common.Stop;
+import common.Trip;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Part of a journey that is travelled on a single trip.
+ *
+ * @author Matthew Corfiatis
+ */
+public class JourneyLeg {
+    private final Trip trip;
+    private final List<Stop> stops;
+
+    JourneyLeg(Trip trip, List<Stop> stops) {
+        this.trip = trip;
+        this.stops = stops;
+    }
+
+    public Trip getTrip() {
+        return trip;
+    }
+
+    /**
+     * Stops visited on this leg, including the stop the leg is boarded at and the stop it is left at.
+     */
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+
+    public Stop getBoardingStop() {
+        return stops.get(0);
+    }
+
+    public Stop getAlightingStop() {
+        return stops.get(stops.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return trip.getId() + ": " + getBoardingStop().getName() + " -> " + getAlightingStop().getName();
+    }
+}
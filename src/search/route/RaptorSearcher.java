@@ -0,0 +1,369 @@
+package search.route;
+
+import common.Stop;
+import common.StopGraph;
+
+import java.util.*;
+
+/**
+ * Finds every journey between two stops that is not beaten on both number of transfers and number
+ * of stops travelled, using round based search (RAPTOR).
+ * <p>
+ * Trips that visit the same stops in the same order are merged into one route, since the feed has
+ * no timetable to tell them apart. Round k finds the fewest stops travelled to reach each stop using
+ * k trips, by scanning each route once from the earliest stop that improved in round k - 1. A
+ * journey found in round k is only kept if it travels fewer stops than any journey with fewer
+ * trips, so the journeys reaching the destination form the Pareto set.
+ * <p>
+ * The routes are stored in flat arrays built from the StopGraph. Working arrays are kept between
+ * searches so a searcher should be reused, but it is not thread safe.
+ *
+ * @author Matthew Corfiatis
+ */
+public class RaptorSearcher {
+    public static final int DEFAULT_MAX_TRANSFERS = 7;
+    private static final int NONE = -1;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private final int maxTransfers;
+
+    // Route tables, built for the graph of the last search.
+    private StopGraph graph;
+    private int[] routeTrips; // Trip standing in for each route
+    private int[] routeOffsets;
+    private int[] routeStops;
+    private int[] stopRouteOffsets;
+    private int[] stopRoutes; // Route of each visit to a stop
+    private int[] stopRoutePositions; // Position in routeStops of each visit to a stop
+
+    // Working state. A stop's labels are only valid when its stamp equals the current search.
+    private int[] previousStops; // Fewest stops travelled with fewer trips than the current round
+    private int[] previousLabels;
+    private int[] bestStops; // Fewest stops travelled with up to the current round's trips
+    private int[] bestLabels;
+    private int[] stopStamps;
+    private int[] routeScanFrom; // Earliest position to scan each route from, valid when its stamp is current
+    private int[] routeStamps;
+    private int search = 0;
+    private int[] marked = new int[16];
+    private int markedCount;
+    private int[] improved = new int[16];
+    private int improvedCount;
+    private boolean[] isImproved;
+    private int[] queuedRoutes = new int[16];
+
+    // Labels, each one a leg on a route that reaches a stop.
+    private int labelCount;
+    private int[] labelRoutes = new int[64];
+    private int[] labelBoards = new int[64];
+    private int[] labelAlights = new int[64];
+    private int[] labelParents = new int[64];
+
+    public RaptorSearcher() {
+        this(DEFAULT_MAX_TRANSFERS);
+    }
+
+    /**
+     * @param maxTransfers Most changes between trips a journey can make.
+     * @throws IllegalArgumentException When the maximum is negative.
+     */
+    public RaptorSearcher(int maxTransfers) throws IllegalArgumentException {
+        if (maxTransfers < 0)
+            throw new IllegalArgumentException("Maximum transfers must not be negative.");
+
+        this.maxTransfers = maxTransfers;
+    }
+
+    /**
+     * Finds the journeys from one stop to another that trade off transfers against stops travelled.
+     *
+     * @param origin      Stop to start from.
+     * @param destination Stop to finish at.
+     * @return Journeys with increasing numbers of transfers and decreasing numbers of stops,
+     * a single empty journey if the stops are the same, or an empty list if there is no route.
+     * @throws IllegalArgumentException When non nullable arguments are null or the stops are not in the same graph.
+     */
+    public List<Journey> searchPareto(Stop origin, Stop destination) throws IllegalArgumentException {
+        if (origin == null)
+            throw new IllegalArgumentException("Origin must not be null.");
+
+        if (destination == null)
+            throw new IllegalArgumentException("Destination must not be null.");
+
+        if (origin.getGraph() == null || origin.getGraph() != destination.getGraph())
+            throw new IllegalArgumentException("Origin and destination must be part of the same graph.");
+
+        List<Journey> journeys = new ArrayList<>();
+        if (origin.equals(destination)) {
+            journeys.add(new Journey(new ArrayList<>(), 0));
+            return journeys;
+        }
+
+        prepare(origin.getGraph());
+        int target = destination.getIndex();
+
+        setLabel(origin.getIndex(), 0, NONE);
+        previousStops[origin.getIndex()] = 0;
+        previousLabels[origin.getIndex()] = NONE;
+        marked[0] = origin.getIndex();
+        markedCount = 1;
+
+        for (int round = 1; round <= maxTransfers + 1 && markedCount > 0; ++round) {
+            scanRoutes(target);
+
+            // Every arrival at the destination beats those from earlier rounds, as worse ones were pruned.
+            if (isImproved[target])
+                journeys.add(buildJourney(bestLabels[target]));
+
+            // Arrivals from this round can be boarded from in the next one.
+            for (int i = 0; i < improvedCount; ++i) {
+                int stop = improved[i];
+                previousStops[stop] = bestStops[stop];
+                previousLabels[stop] = bestLabels[stop];
+                isImproved[stop] = false;
+            }
+
+            int[] swap = marked;
+            marked = improved;
+            improved = swap;
+            markedCount = improvedCount;
+            improvedCount = 0;
+        }
+
+        return journeys;
+    }
+
+    /**
+     * Scans every route through a stop marked in the previous round, starting from the earliest marked stop.
+     *
+     * @param target Destination stop, arrivals that travel more stops than its best arrival are pruned.
+     */
+    private void scanRoutes(int target) {
+        int queuedCount = 0;
+
+        for (int i = 0; i < markedCount; ++i) {
+            int stop = marked[i];
+            for (int visit = stopRouteOffsets[stop]; visit < stopRouteOffsets[stop + 1]; ++visit) {
+                int route = stopRoutes[visit];
+                int position = stopRoutePositions[visit];
+
+                if (routeStamps[route] != search) {
+                    routeStamps[route] = search;
+                    routeScanFrom[route] = position;
+                    if (queuedCount == queuedRoutes.length)
+                        queuedRoutes = Arrays.copyOf(queuedRoutes, queuedCount * 2);
+                    queuedRoutes[queuedCount++] = route;
+                } else if (position < routeScanFrom[route]) {
+                    routeScanFrom[route] = position;
+                }
+            }
+        }
+
+        for (int i = 0; i < queuedCount; ++i) {
+            int route = queuedRoutes[i];
+            routeStamps[route] = 0; // Can be queued again next round
+            scanRoute(route, routeScanFrom[route], target);
+        }
+    }
+
+    /**
+     * Travels along a route, boarding wherever an earlier round arrived with fewer stops travelled.
+     */
+    private void scanRoute(int route, int from, int target) {
+        int boardPosition = NONE;
+        int boardStops = 0;
+        int boardLabel = NONE;
+
+        for (int position = from; position < routeOffsets[route + 1]; ++position) {
+            int stop = routeStops[position];
+            int stops = boardPosition == NONE ? UNREACHED : boardStops + position - boardPosition;
+
+            if (stops < best(stop) && stops < best(target)) {
+                setLabel(stop, stops, addLabel(route, boardPosition, position, boardLabel));
+
+                if (!isImproved[stop]) {
+                    isImproved[stop] = true;
+                    if (improvedCount == improved.length)
+                        improved = Arrays.copyOf(improved, improvedCount * 2);
+                    improved[improvedCount++] = stop;
+                }
+            }
+
+            // Boarding here is better if an earlier round arrived with fewer stops travelled.
+            if (stopStamps[stop] == search && previousStops[stop] < stops) {
+                boardPosition = position;
+                boardStops = previousStops[stop];
+                boardLabel = previousLabels[stop];
+            }
+        }
+    }
+
+    /**
+     * Fewest stops travelled to a stop so far, or UNREACHED.
+     */
+    private int best(int stop) {
+        return stopStamps[stop] == search ? bestStops[stop] : UNREACHED;
+    }
+
+    private void setLabel(int stop, int stops, int label) {
+        if (stopStamps[stop] != search) {
+            stopStamps[stop] = search;
+            previousStops[stop] = UNREACHED;
+            previousLabels[stop] = NONE;
+        }
+
+        bestStops[stop] = stops;
+        bestLabels[stop] = label;
+    }
+
+    private int addLabel(int route, int board, int alight, int parent) {
+        if (labelCount == labelRoutes.length) {
+            int capacity = labelCount * 2;
+            labelRoutes = Arrays.copyOf(labelRoutes, capacity);
+            labelBoards = Arrays.copyOf(labelBoards, capacity);
+            labelAlights = Arrays.copyOf(labelAlights, capacity);
+            labelParents = Arrays.copyOf(labelParents, capacity);
+        }
+
+        labelRoutes[labelCount] = route;
+        labelBoards[labelCount] = board;
+        labelAlights[labelCount] = alight;
+        labelParents[labelCount] = parent;
+        return labelCount++;
+    }
+
+    /**
+     * Sets up the working arrays for a search, building the route tables if the graph has changed.
+     */
+    private void prepare(StopGraph searchGraph) {
+        labelCount = 0;
+        markedCount = 0;
+        improvedCount = 0;
+
+        if (searchGraph != graph) {
+            graph = searchGraph;
+            buildRoutes();
+
+            int stops = graph.getStopCount();
+            previousStops = new int[stops];
+            previousLabels = new int[stops];
+            bestStops = new int[stops];
+            bestLabels = new int[stops];
+            stopStamps = new int[stops];
+            isImproved = new boolean[stops];
+            routeScanFrom = new int[routeTrips.length];
+            routeStamps = new int[routeTrips.length];
+            search = 0;
+        }
+
+        if (++search == Integer.MAX_VALUE) { // Stamps would wrap around, start again from zero.
+            Arrays.fill(stopStamps, 0);
+            Arrays.fill(routeStamps, 0);
+            search = 1;
+        }
+    }
+
+    /**
+     * Merges trips with the same stops into routes and lists the routes through each stop.
+     */
+    private void buildRoutes() {
+        Map<RouteKey, Integer> routeIndices = new HashMap<>();
+        int[] trips = new int[graph.getTripCount()];
+        int routeCount = 0;
+        int routeStopCount = 0;
+
+        for (int t = 0; t < graph.getTripCount(); ++t) {
+            int start = graph.tripStart(t);
+            int end = graph.tripEnd(t);
+            if (end - start < 2)
+                continue; // Can not travel anywhere
+
+            int[] stops = new int[end - start];
+            for (int i = start; i < end; ++i)
+                stops[i - start] = graph.tripStop(i);
+
+            RouteKey key = new RouteKey(stops);
+            if (!routeIndices.containsKey(key)) {
+                routeIndices.put(key, routeCount);
+                trips[routeCount++] = t;
+                routeStopCount += stops.length;
+            }
+        }
+
+        routeTrips = Arrays.copyOf(trips, routeCount);
+        routeOffsets = new int[routeCount + 1];
+        routeStops = new int[routeStopCount];
+        stopRouteOffsets = new int[graph.getStopCount() + 1];
+
+        for (int r = 0; r < routeCount; ++r) {
+            int t = routeTrips[r];
+            int length = graph.tripEnd(t) - graph.tripStart(t);
+            routeOffsets[r + 1] = routeOffsets[r] + length;
+
+            for (int i = 0; i < length; ++i) {
+                int stop = graph.tripStop(graph.tripStart(t) + i);
+                routeStops[routeOffsets[r] + i] = stop;
+                ++stopRouteOffsets[stop + 1];
+            }
+        }
+
+        for (int s = 0; s < graph.getStopCount(); ++s)
+            stopRouteOffsets[s + 1] += stopRouteOffsets[s];
+
+        stopRoutes = new int[routeStopCount];
+        stopRoutePositions = new int[routeStopCount];
+        int[] fill = Arrays.copyOf(stopRouteOffsets, graph.getStopCount());
+
+        for (int r = 0; r < routeCount; ++r) {
+            for (int position = routeOffsets[r]; position < routeOffsets[r + 1]; ++position) {
+                int visit = fill[routeStops[position]]++;
+                stopRoutes[visit] = r;
+                stopRoutePositions[visit] = position;
+            }
+        }
+    }
+
+    /**
+     * Follows the labels back from the destination to create the legs of the journey.
+     */
+    private Journey buildJourney(int lastLabel) {
+        LinkedList<JourneyLeg> legs = new LinkedList<>();
+        double distance = 0;
+
+        for (int label = lastLabel; label != NONE; label = labelParents[label]) {
+            List<Stop> stops = new ArrayList<>();
+            for (int position = labelBoards[label]; position <= labelAlights[label]; ++position) {
+                if (position > labelBoards[label])
+                    distance += graph.distance(routeStops[position - 1], routeStops[position]);
+                stops.add(graph.getStop(routeStops[position]));
+            }
+
+            legs.addFirst(new JourneyLeg(graph.getTrip(routeTrips[labelRoutes[label]]), stops));
+        }
+
+        return new Journey(new ArrayList<>(legs), distance);
+    }
+
+    /**
+     * Sequence of stop indices used to find trips that visit the same stops.
+     */
+    private static class RouteKey {
+        private final int[] stops;
+        private final int hash;
+
+        RouteKey(int[] stops) {
+            this.stops = stops;
+            this.hash = Arrays.hashCode(stops);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RouteKey && Arrays.equals(stops, ((RouteKey) o).stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
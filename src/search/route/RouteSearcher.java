@@ -0,0 +1,214 @@
+package search.route;
+
+import common.Stop;
+import common.StopGraph;
+import search.IntMinHeap;
+
+import java.util.*;
+
+/**
+ * Finds routes between stops by following the connections between them.
+ * <p>
+ * Uses A* search where the cost of a connection is the straight line distance between its stops,
+ * plus a fixed penalty each time the journey changes to a different trip. The straight line
+ * distance to the destination never overestimates the remaining cost, so the first route found
+ * is the cheapest.
+ * <p>
+ * The search runs over the index arrays of the StopGraph. A search state is an outgoing edge of the
+ * graph, meaning the stop it leads to was arrived at on the trip of that edge. Working arrays are
+ * kept between searches so a searcher should be reused, but it is not thread safe.
+ * <p>
+ * The feed has no timetable so routes are not time dependent, trips are assumed to always be available.
+ *
+ * @author Matthew Corfiatis
+ */
+public class RouteSearcher {
+    public static final double DEFAULT_TRANSFER_PENALTY = 1.0; // Same cost as travelling 1km
+    private static final int NONE = -1;
+
+    private final double transferPenalty;
+
+    // Working state, sized for the graph of the last search.
+    private StopGraph graph;
+    private double[] edgeLengths;
+    private double[] edgeCosts;
+    private int[] edgeParents;
+    private int[] edgeStamps; // Edge state is only valid when its stamp equals the current search
+    private boolean[] edgeClosed;
+    private double[] stopCheapest;
+    private double[] stopHeuristics;
+    private int[] stopStamps;
+    private final IntMinHeap open = new IntMinHeap();
+    private int search = 0;
+
+    public RouteSearcher() {
+        this(DEFAULT_TRANSFER_PENALTY);
+    }
+
+    /**
+     * @param transferPenalty Cost added each time the journey changes trips, in the same units as a Location.
+     * @throws IllegalArgumentException When the penalty is negative.
+     */
+    public RouteSearcher(double transferPenalty) throws IllegalArgumentException {
+        if (transferPenalty < 0 || Double.isNaN(transferPenalty))
+            throw new IllegalArgumentException("Transfer penalty must not be negative.");
+
+        this.transferPenalty = transferPenalty;
+    }
+
+    /**
+     * Finds the cheapest journey from one stop to another.
+     *
+     * @param origin      Stop to start from.
+     * @param destination Stop to finish at.
+     * @return The cheapest journey, an empty journey if the stops are the same, or null if there is no route.
+     * @throws IllegalArgumentException When non nullable arguments are null or the stops are not in the same graph.
+     */
+    public Journey searchRoute(Stop origin, Stop destination) throws IllegalArgumentException {
+        if (origin == null)
+            throw new IllegalArgumentException("Origin must not be null.");
+
+        if (destination == null)
+            throw new IllegalArgumentException("Destination must not be null.");
+
+        if (origin.getGraph() == null || origin.getGraph() != destination.getGraph())
+            throw new IllegalArgumentException("Origin and destination must be part of the same graph.");
+
+        if (origin.equals(destination))
+            return new Journey(new ArrayList<>(), 0);
+
+        prepare(origin.getGraph());
+        int target = destination.getIndex();
+
+        // Avoid searching the whole network when the stops can't be left or reached.
+        if (graph.outStart(origin.getIndex()) == graph.outEnd(origin.getIndex()) || graph.inStart(target) == graph.inEnd(target))
+            return null;
+
+        relax(origin.getIndex(), NONE, NONE, 0, target);
+
+        while (!open.isEmpty()) {
+            double estimate = open.peekPriority();
+            int edge = open.poll();
+
+            if (edgeClosed[edge] || estimate > edgeCosts[edge] + stopHeuristics[graph.outTarget(edge)])
+                continue; // A cheaper path to this state was found after it was queued.
+            edgeClosed[edge] = true;
+
+            int stop = graph.outTarget(edge);
+            if (stop == target)
+                return buildJourney(origin, edge);
+
+            relax(stop, edge, graph.outTrip(edge), edgeCosts[edge], target);
+        }
+
+        return null;
+    }
+
+    /**
+     * Queues every outgoing edge of a stop that improves on the states found so far.
+     *
+     * @param stop   Stop to leave from.
+     * @param parent Edge the stop was arrived on, or NONE at the origin.
+     * @param trip   Trip the stop was arrived on, or NONE at the origin.
+     * @param cost   Cost of arriving at the stop.
+     * @param target Destination stop.
+     */
+    private void relax(int stop, int parent, int trip, double cost, int target) {
+        for (int edge = graph.outStart(stop); edge < graph.outEnd(stop); ++edge) {
+            int next = graph.outTarget(edge);
+            double nextCost = cost + edgeLengths[edge];
+            if (trip != NONE && trip != graph.outTrip(edge))
+                nextCost += transferPenalty;
+
+            if (stopStamps[next] != search) {
+                stopStamps[next] = search;
+                stopCheapest[next] = Double.POSITIVE_INFINITY;
+                stopHeuristics[next] = graph.distance(next, target);
+            }
+
+            // Arriving on a different trip is only worth keeping if it beats changing trips from the cheapest arrival.
+            if (nextCost >= stopCheapest[next] + transferPenalty)
+                continue;
+
+            if (edgeStamps[edge] == search && edgeCosts[edge] <= nextCost)
+                continue;
+
+            edgeStamps[edge] = search;
+            edgeCosts[edge] = nextCost;
+            edgeParents[edge] = parent;
+            edgeClosed[edge] = false;
+            if (nextCost < stopCheapest[next])
+                stopCheapest[next] = nextCost;
+
+            open.add(edge, nextCost + stopHeuristics[next]);
+        }
+    }
+
+    /**
+     * Sets up the working arrays for a search, reallocating them if the graph has changed.
+     */
+    private void prepare(StopGraph searchGraph) {
+        open.clear();
+
+        if (searchGraph != graph) {
+            graph = searchGraph;
+            int edges = graph.getConnectionCount();
+            int stops = graph.getStopCount();
+
+            edgeLengths = new double[edges];
+            for (int stop = 0; stop < stops; ++stop) {
+                for (int edge = graph.outStart(stop); edge < graph.outEnd(stop); ++edge)
+                    edgeLengths[edge] = graph.distance(stop, graph.outTarget(edge));
+            }
+
+            edgeCosts = new double[edges];
+            edgeParents = new int[edges];
+            edgeStamps = new int[edges];
+            edgeClosed = new boolean[edges];
+            stopCheapest = new double[stops];
+            stopHeuristics = new double[stops];
+            stopStamps = new int[stops];
+            search = 0;
+        }
+
+        if (++search == Integer.MAX_VALUE) { // Stamps would wrap around, start again from zero.
+            Arrays.fill(edgeStamps, 0);
+            Arrays.fill(stopStamps, 0);
+            search = 1;
+        }
+    }
+
+    /**
+     * Walks back from the edge arriving at the destination to create the legs of the journey.
+     */
+    private Journey buildJourney(Stop origin, int lastEdge) {
+        LinkedList<Integer> edges = new LinkedList<>();
+        for (int edge = lastEdge; edge != NONE; edge = edgeParents[edge])
+            edges.addFirst(edge);
+
+        List<JourneyLeg> legs = new ArrayList<>();
+        List<Stop> legStops = new ArrayList<>();
+        int legTrip = NONE;
+        Stop previousStop = origin;
+        double distance = 0;
+
+        for (int edge : edges) {
+            // Start a new leg where the trip changes.
+            if (graph.outTrip(edge) != legTrip) {
+                if (legTrip != NONE)
+                    legs.add(new JourneyLeg(graph.getTrip(legTrip), legStops));
+
+                legTrip = graph.outTrip(edge);
+                legStops = new ArrayList<>();
+                legStops.add(previousStop);
+            }
+
+            previousStop = graph.getStop(graph.outTarget(edge));
+            legStops.add(previousStop);
+            distance += edgeLengths[edge];
+        }
+
+        legs.add(new JourneyLeg(graph.getTrip(legTrip), legStops));
+        return new Journey(legs, distance);
+    }
+}
@@ -0,0 +1,416 @@
+package search.token;
+
+import common.Stop;
+import search.IntMinHeap;
+import search.trie.PrefixMatch;
+import search.trie.PrefixScore;
+
+import java.util.*;
+
+/**
+ * Inverted index from the words in stop names to the stops that contain them.
+ * <p>
+ * Stops are numbered from the highest score to the lowest. The distinct words are sorted, so
+ * every word starting with a prefix is in one range, and each word has a sorted postings list of
+ * the stops that contain it. A query matches a stop when every word of the query is the start of
+ * a word in the stop's name, in any order. The query word with the fewest postings is found first
+ * and the other words only filter its stops, either by intersecting postings or by checking the
+ * words of each stop. Since the numbers follow the ranking, a ranked search can stop as soon as it
+ * has found enough stops.
+ * <p>
+ * Stops are scored when the index is built, so a score such as {@link PrefixScore#POPULARITY}
+ * needs the stops to be attached to their graph first. An index is never changed once it is built,
+ * a new version of the network gets a new index.
+ *
+ * @author Matthew Corfiatis
+ */
+public class TokenIndex {
+    private final PrefixScore score;
+
+    // Indexed stops, numbered by position from the highest score.
+    private Stop[] stops;
+
+    // Sorted distinct words, with their postings in compressed rows.
+    private String[] tokens;
+    private int[] postingStart;
+    private int[] postings;
+
+    // Words of each stop in compressed rows, as indices into tokens.
+    private int[] stopTokenStart;
+    private int[] stopTokens;
+
+    /**
+     * Indexes the words in the names of stops.
+     *
+     * @param stops Stops to index.
+     * @param score Score used to rank matches, higher scores are ranked first.
+     */
+    public TokenIndex(Collection<Stop> stops, PrefixScore score) {
+        if (stops == null)
+            throw new IllegalArgumentException("Stops must not be null.");
+
+        if (score == null)
+            throw new IllegalArgumentException("Score must not be null.");
+
+        this.score = score;
+        build(stops);
+    }
+
+    /**
+     * Searches for the stops whose names contain every word of a query.
+     *
+     * @param query Words to search for, the last word of a name can be part typed.
+     * @return Matches with the highest scores first.
+     */
+    public List<PrefixMatch> search(String query) {
+        List<PrefixMatch> result = new ArrayList<>();
+        String[] words = tokenize(query);
+
+        if (words.length == 0)
+            return result;
+
+        for (int stop : findIndexed(words))
+            result.add(new PrefixMatch(stops[stop].getName(), stops[stop]));
+
+        return result;
+    }
+
+    /**
+     * Searches for the best ranked stops whose names contain every word of a query.
+     *
+     * @param query Words to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, with the highest scores first.
+     */
+    public List<PrefixMatch> search(String query, int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("Count must be at least 1.");
+
+        String[] words = tokenize(query);
+        if (words.length == 0)
+            return new ArrayList<>();
+
+        int[] top = findTop(words, count);
+        List<PrefixMatch> result = new ArrayList<>(top.length);
+        for (int stop : top)
+            result.add(new PrefixMatch(stops[stop].getName(), stops[stop]));
+
+        return result;
+    }
+
+    /**
+     * Splits text into distinct lower case words of letters and digits.
+     *
+     * @param text Text to split.
+     * @return Words in the order they first appear.
+     */
+    public static String[] tokenize(String text) {
+        if (text == null)
+            return new String[0];
+
+        String lower = text.toLowerCase();
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+
+        for (int i = 0; i <= lower.length(); ++i) {
+            boolean wordCharacter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                String word = lower.substring(start, i);
+                if (!words.contains(word))
+                    words.add(word);
+                start = -1;
+            }
+        }
+
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Finds the indexed stops that match every word of a query.
+     *
+     * @param words Words of the query.
+     * @return Sorted numbers of the matching stops.
+     */
+    private int[] findIndexed(String[] words) {
+        int[][] ranges = findRanges(words);
+        if (ranges == null)
+            return new int[0];
+
+        int[] candidates = union(ranges[0][0], ranges[0][1]);
+        int size = candidates.length;
+
+        for (int w = 1; w < ranges.length && size > 0; ++w) {
+            int low = ranges[w][0];
+            int high = ranges[w][1];
+            if (high - low == 1)
+                size = intersect(candidates, size, postingStart[low], postingStart[high]);
+            else
+                size = filter(candidates, size, low, high);
+        }
+
+        return Arrays.copyOf(candidates, size);
+    }
+
+    /**
+     * Finds the lowest numbered indexed stops that match every word of a query. The postings of
+     * one word are merged in order, so only the stops up to the last one found are read.
+     *
+     * @param words Words of the query.
+     * @param count Maximum number of stops to find.
+     * @return Sorted numbers of up to count matching stops.
+     */
+    private int[] findTop(String[] words, int count) {
+        int[][] ranges = findRanges(words);
+        if (ranges == null)
+            return new int[0];
+
+        // Merge the range that is cheapest to read in full, each of its words adds a heap entry.
+        int driver = 0;
+        for (int w = 1; w < ranges.length; ++w)
+            if (mergeCost(ranges[w]) < mergeCost(ranges[driver]))
+                driver = w;
+
+        int[] swap = ranges[0];
+        ranges[0] = ranges[driver];
+        ranges[driver] = swap;
+
+        int low = ranges[0][0];
+        int high = ranges[0][1];
+        int[] cursors = new int[high - low];
+        IntMinHeap next = new IntMinHeap(cursors.length);
+
+        for (int token = low; token < high; ++token) {
+            cursors[token - low] = postingStart[token];
+            next.add(token, postings[postingStart[token]]);
+        }
+
+        int[] found = new int[count];
+        int size = 0;
+        int previous = -1;
+
+        while (!next.isEmpty() && size < count) {
+            int token = next.poll();
+            int stop = postings[cursors[token - low]++];
+            if (cursors[token - low] < postingStart[token + 1])
+                next.add(token, postings[cursors[token - low]]);
+
+            // A stop with several words starting with the prefix is in several lists.
+            if (stop == previous)
+                continue;
+            previous = stop;
+
+            boolean matches = true;
+            for (int w = 1; w < ranges.length && matches; ++w)
+                matches = hasToken(stop, ranges[w][0], ranges[w][1]);
+
+            if (matches)
+                found[size++] = stop;
+        }
+
+        return Arrays.copyOf(found, size);
+    }
+
+    private int mergeCost(int[] range) {
+        return postingStart[range[1]] - postingStart[range[0]] + 4 * (range[1] - range[0]);
+    }
+
+    /**
+     * Finds the range of indexed words starting with each word of a query.
+     *
+     * @param words Words of the query.
+     * @return Low and high word index of each range, smallest range first,
+     * or null if a word does not start any indexed word.
+     */
+    private int[][] findRanges(String[] words) {
+        int[][] ranges = new int[words.length][];
+
+        for (int i = 0; i < words.length; ++i) {
+            int low = lowerBound(words[i]);
+            int high = prefixEnd(words[i], low);
+            if (low == high)
+                return null;
+            ranges[i] = new int[]{low, high};
+        }
+
+        // The words of a prefix are in one range, so the range of postings gives its size.
+        Arrays.sort(ranges, Comparator.comparingInt(range -> postingStart[range[1]] - postingStart[range[0]]));
+        return ranges;
+    }
+
+    /**
+     * Finds the stops containing any of a range of words.
+     *
+     * @return Sorted stop numbers with no duplicates.
+     */
+    private int[] union(int lowToken, int highToken) {
+        if (highToken - lowToken == 1)
+            return Arrays.copyOfRange(postings, postingStart[lowToken], postingStart[highToken]);
+
+        BitSet found = new BitSet(stops.length);
+        for (int i = postingStart[lowToken]; i < postingStart[highToken]; ++i)
+            found.set(postings[i]);
+
+        return found.stream().toArray();
+    }
+
+    /**
+     * Keeps the candidates that are also in a sorted postings list, galloping through the
+     * postings so a short candidate list does not read all of a long list.
+     *
+     * @return Number of candidates kept at the start of the array.
+     */
+    private int intersect(int[] candidates, int size, int start, int end) {
+        int kept = 0;
+        int position = start;
+
+        for (int i = 0; i < size && position < end; ++i) {
+            int stop = candidates[i];
+
+            // Gallop forward to pass the stop, then binary search the last step.
+            int step = 1;
+            int low = position;
+            while (position < end && postings[position] < stop) {
+                low = position;
+                position += step;
+                step <<= 1;
+            }
+            int high = Math.min(position + 1, end);
+            position = Arrays.binarySearch(postings, low, high, stop);
+
+            if (position >= 0) {
+                candidates[kept++] = stop;
+                ++position;
+            } else {
+                position = -position - 1;
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * Keeps the candidates that contain a word in a range of words.
+     *
+     * @return Number of candidates kept at the start of the array.
+     */
+    private int filter(int[] candidates, int size, int lowToken, int highToken) {
+        int kept = 0;
+
+        for (int i = 0; i < size; ++i)
+            if (hasToken(candidates[i], lowToken, highToken))
+                candidates[kept++] = candidates[i];
+
+        return kept;
+    }
+
+    /**
+     * Checks whether a stop's name contains a word in a range of words.
+     */
+    private boolean hasToken(int stop, int lowToken, int highToken) {
+        for (int j = stopTokenStart[stop]; j < stopTokenStart[stop + 1]; ++j)
+            if (stopTokens[j] >= lowToken && stopTokens[j] < highToken)
+                return true;
+        return false;
+    }
+
+    /**
+     * Index of the first word that is not less than a prefix.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Index after the last word that starts with a prefix.
+     */
+    private int prefixEnd(String prefix, int start) {
+        int low = start;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].startsWith(prefix))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Builds the postings and the words of each stop.
+     *
+     * @param stopCollection Stops to index.
+     */
+    private void build(Collection<Stop> stopCollection) {
+        List<PrefixMatch> ranked = new ArrayList<>(stopCollection.size());
+        for (Stop stop : stopCollection) {
+            if (stop == null)
+                throw new IllegalArgumentException("Stop must not be null.");
+            ranked.add(new PrefixMatch(stop.getName(), stop));
+        }
+
+        // Number the stops by score, stops with equal scores stay in the order they were given.
+        double[] scores = new double[ranked.size()];
+        Integer[] order = new Integer[ranked.size()];
+        for (int i = 0; i < order.length; ++i) {
+            scores[i] = score.score(ranked.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        stops = new Stop[order.length];
+        for (int i = 0; i < order.length; ++i)
+            stops[i] = ranked.get(order[i]).getStop();
+
+        String[][] stopWords = new String[stops.length][];
+        Map<String, Integer> tokenNumbers = new HashMap<>();
+
+        for (int i = 0; i < stops.length; ++i) {
+            stopWords[i] = tokenize(stops[i].getName());
+            for (String word : stopWords[i])
+                tokenNumbers.putIfAbsent(word, 0);
+        }
+
+        tokens = tokenNumbers.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        for (int i = 0; i < tokens.length; ++i)
+            tokenNumbers.put(tokens[i], i);
+
+        // Words of each stop, counting the postings of each word as they are found.
+        stopTokenStart = new int[stops.length + 1];
+        for (int i = 0; i < stops.length; ++i)
+            stopTokenStart[i + 1] = stopTokenStart[i] + stopWords[i].length;
+
+        stopTokens = new int[stopTokenStart[stops.length]];
+        postingStart = new int[tokens.length + 1];
+        for (int i = 0; i < stops.length; ++i) {
+            for (int j = 0; j < stopWords[i].length; ++j) {
+                int token = tokenNumbers.get(stopWords[i][j]);
+                stopTokens[stopTokenStart[i] + j] = token;
+                ++postingStart[token + 1];
+            }
+        }
+
+        for (int i = 0; i < tokens.length; ++i)
+            postingStart[i + 1] += postingStart[i];
+
+        // Stops are visited in order, so every postings list is sorted.
+        postings = new int[stopTokens.length];
+        int[] next = Arrays.copyOf(postingStart, tokens.length);
+        for (int i = 0; i < stops.length; ++i)
+            for (int j = stopTokenStart[i]; j < stopTokenStart[i + 1]; ++j)
+                postings[next[stopTokens[j]]++] = i;
+    }
+}
@@ -0,0 +1,109 @@
+package search.trie;
+
+import java.util.Arrays;
+
+/**
+ * Nondeterministic Levenshtein automaton that accepts every string with a prefix within
+ * an edit distance of a query.
+ * <p>
+ * The automaton is simulated with one bit mask per number of edits. Bit j of mask i is set when
+ * the characters read so far can be turned into the first j characters of the query with i edits,
+ * so a mask is updated for a whole character with a few shifts. The masks grow with the number of
+ * edits, which makes a state dead once the mask for the largest allowed distance is empty.
+ *
+ * @author Matthew Corfiatis
+ */
+class LevenshteinAutomaton {
+    static final int MAX_LENGTH = 62; // Query characters that fit in a mask beside the empty prefix bit
+
+    private final int length;
+    private final int maxDistance;
+    private final long valid; // Bits 0 to length
+    private final char[] characters; // Distinct characters of the query
+    private final long[] characterMasks; // Bit j + 1 set where the query has the character at j
+
+    /**
+     * Creates an automaton for a query. Only the first {@link #MAX_LENGTH} characters of
+     * longer queries are matched.
+     *
+     * @param query       Query to match.
+     * @param maxDistance Maximum number of edits.
+     */
+    LevenshteinAutomaton(String query, int maxDistance) {
+        this.length = Math.min(query.length(), MAX_LENGTH);
+        this.maxDistance = maxDistance;
+        this.valid = (1L << (length + 1)) - 1;
+
+        char[] distinct = new char[length];
+        long[] masks = new long[length];
+        int count = 0;
+
+        for (int j = 0; j < length; ++j) {
+            int i = 0;
+            while (i < count && distinct[i] != query.charAt(j))
+                ++i;
+            if (i == count)
+                distinct[count++] = query.charAt(j);
+            masks[i] |= 1L << (j + 1);
+        }
+
+        this.characters = Arrays.copyOf(distinct, count);
+        this.characterMasks = Arrays.copyOf(masks, count);
+    }
+
+    /**
+     * Returns the state before any characters are read, where the first i characters of the
+     * query can be deleted with i edits.
+     */
+    long[] start() {
+        long[] state = new long[maxDistance + 1];
+        for (int i = 0; i <= maxDistance; ++i)
+            state[i] = ((1L << (i + 1)) - 1) & valid;
+        return state;
+    }
+
+    /**
+     * Reads a character.
+     *
+     * @param from  State before the character.
+     * @param to    Receives the state after the character, may not be the same array as from.
+     * @param c     Character to read.
+     * @param bound Largest number of edits to track, masks above it are left as they are.
+     * @return Whether any prefix within the bound can still be reached.
+     */
+    boolean step(long[] from, long[] to, char c, int bound) {
+        long matching = 0;
+        for (int i = 0; i < characters.length; ++i) {
+            if (characters[i] == c) {
+                matching = characterMasks[i];
+                break;
+            }
+        }
+
+        to[0] = (from[0] << 1) & matching;
+        for (int i = 1; i <= bound; ++i) {
+            to[i] = ((from[i] << 1) & matching) // Match
+                    | (from[i - 1] << 1) // Substitution
+                    | from[i - 1] // Insertion
+                    | (to[i - 1] << 1); // Deletion
+            to[i] &= valid;
+        }
+
+        return to[bound] != 0;
+    }
+
+    /**
+     * Finds the fewest edits that turn the characters read so far into the query.
+     *
+     * @param state State to check.
+     * @param bound Largest number of edits to check.
+     * @return Number of edits, or -1 if more than the bound are needed.
+     */
+    int distance(long[] state, int bound) {
+        long accept = 1L << length;
+        for (int i = 0; i <= bound; ++i)
+            if ((state[i] & accept) != 0)
+                return i;
+        return -1;
+    }
+}
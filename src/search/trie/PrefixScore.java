@@ -0,0 +1,21 @@
+package search.trie;
+
+/**
+ * Scores prefix matches to rank them, matches with higher scores are ranked first.
+ *
+ * @author Matthew Corfiatis
+ */
+@FunctionalInterface
+public interface PrefixScore {
+    /**
+     * Ranks stops that more trips go through first.
+     */
+    PrefixScore POPULARITY = match -> match.getStop().getTrips().size();
+
+    /**
+     * Ranks the shortest matched names and IDs first.
+     */
+    PrefixScore SHORTEST = match -> -match.getTokenMatched().length();
+
+    double score(PrefixMatch match);
+}
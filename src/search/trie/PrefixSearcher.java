@@ -2,21 +2,38 @@ package search.trie;
 
 import common.Stop;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Stack;
+import java.util.*;
 
 /**
  * Searches for named objects by prefix.
+ * <p>
+ * Stop IDs and names are held in an immutable {@link RadixTrie}. Matches are scored as the trie is
+ * built, so scores that depend on the network, such as {@link PrefixScore#POPULARITY}, need the
+ * stops to be attached to their graph first. A searcher is never changed once it is built, a new
+ * version of the network gets a new searcher.
  *
  * @author Matthew Corfiatis
  */
 public class PrefixSearcher {
-    private final StopNode trieRoot = new StopNode();
+    private final PrefixScore score;
+    private final RadixTrie trie;
 
     public PrefixSearcher(Collection<Stop> stops) {
-        buildTrie(stops);
+        this(stops, PrefixScore.POPULARITY);
+    }
+
+    /**
+     * Creates a searcher that ranks its matches with a score.
+     *
+     * @param stops Stops to search.
+     * @param score Score used to rank matches, higher scores are ranked first.
+     */
+    public PrefixSearcher(Collection<Stop> stops, PrefixScore score) {
+        if (score == null)
+            throw new IllegalArgumentException("Score must not be null.");
+
+        this.score = score;
+        trie = buildTrie(stops);
     }
 
     /**
@@ -30,143 +47,93 @@ public class PrefixSearcher {
      * @return A collection of stops matching the name prefix.
      */
     public Collection<PrefixMatch> searchPrefix(String name) {
-        List<PrefixMatch> matches = new ArrayList<>();
-
         if (name == null || name.length() == 0)
-            return matches;
-
-        StopNode node = findNode(name.toLowerCase());
-
-        if (node == null) {
-            return matches;
-        }
-
-        // Returns a single node if the query was matched exactly.
-        if(node.hasStop()) {
-            node.getStops().forEach(matches::add);
-            return matches;
-        }
-
-        // Depth first search for leaf nodes.
-        Stack<StopNode> searchNodes = new Stack<>();
-        searchNodes.push(node);
-
-        while (!searchNodes.isEmpty()) {
-            StopNode searchNode = searchNodes.pop();
-
-            if (searchNode.hasStop())
-                searchNode.getStops().forEach(matches::add);
-
-            for (StopNode childNode : searchNode.getChildren()) {
-                searchNodes.push(childNode);
-            }
-        }
+            return Collections.emptyList();
 
-        return matches;
+        return trie.search(name.toLowerCase());
     }
 
     /**
-     * Prints trie into the console for debugging.
+     * Searches for the best ranked stops by name, following the same rules as
+     * {@link #searchPrefix(String)}.
+     *
+     * @param name  Name prefix to search for.
+     * @param count Maximum number of stops to return.
+     * @return Up to count matches, with the highest scores first.
      */
-    public void printTrie() {
-        printNodes(trieRoot, "");
+    public List<PrefixMatch> searchPrefix(String name, int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("Count must be at least 1.");
+
+        if (name == null || name.length() == 0)
+            return Collections.emptyList();
+
+        return trie.searchTop(name.toLowerCase(), count);
     }
 
     /**
-     * Prints a node and all its children to the console.
+     * Searches for stops by name, allowing for typos. A stop matches when the start of its name
+     * or ID is within an edit distance of the query.
      *
-     * @param node  Node to print.
-     * @param space Recursive space.
+     * @param name        Name to search for.
+     * @param maxDistance Maximum number of characters that can be inserted, deleted or replaced.
+     * @param count       Maximum number of stops to return.
+     * @return Up to count matches, with the fewest edits and then the highest scores first.
      */
-    private void printNodes(StopNode node, String space) {
-        System.out.print(space);
-        System.out.println(node.getNameCharacter());
+    public List<PrefixMatch> searchFuzzy(String name, int maxDistance, int count) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException("Distance must not be negative.");
 
-        for (StopNode child : node.getChildren()) {
-            printNodes(child, space + "  ");
-        }
+        if (count < 1)
+            throw new IllegalArgumentException("Count must be at least 1.");
+
+        if (name == null || name.length() == 0)
+            return Collections.emptyList();
+
+        return trie.searchFuzzy(name.toLowerCase(), maxDistance, count);
     }
 
     /**
-     * Find node with path matching search prefix.
-     * @param query
-     * @return
+     * Prints trie into the console for debugging.
      */
-    private StopNode findNode(String query) {
-        StopNode node = trieRoot;
-        boolean resultsFound = true;
-
-        for (int i = 0; i < query.length(); ++i) {
-            if (node.hasChild(query.charAt(i))) {
-                node = node.getChild(query.charAt(i));
-            } else {
-                resultsFound = false;
-                break;
-            }
-        }
-
-        if(!resultsFound)
-            return null;
-
-        return node;
+    public void printTrie() {
+        trie.print();
     }
 
     /**
      * Builds search trie from collection of stops.
      *
      * @param stops Collection of stops to build trie from.
+     * @return The trie.
      */
-    private void buildTrie(Collection<Stop> stops) {
+    private RadixTrie buildTrie(Collection<Stop> stops) {
         if (stops == null)
             throw new IllegalArgumentException("Stops must not be null.");
 
+        List<String> keys = new ArrayList<>(stops.size() * 2);
+        List<PrefixMatch> matches = new ArrayList<>(stops.size() * 2);
+
         // Add stop ID's and names to the trie.
         for (Stop stop : stops) {
-            addStop(stop, stop.getId().toLowerCase(), true);
-            addStop(stop, stop.getName().toLowerCase(), false);
-        }
-
-        // Depth first traversal.
-        Stack<StopNode> nodes = new Stack<>();
-        nodes.push(trieRoot);
-
-        // Lock all nodes to prevent modification (make immutable).
-        while (!nodes.isEmpty()) {
-            StopNode node = nodes.pop();
-            node.lockChildren();
+            if (stop == null)
+                throw new IllegalArgumentException("Stop must not be null.");
 
-            for (StopNode childNode : node.getChildren()) {
-                nodes.push(childNode);
-            }
+            keys.add(toKey(stop.getId()));
+            matches.add(new PrefixMatch(stop.getId(), stop));
+            keys.add(toKey(stop.getName()));
+            matches.add(new PrefixMatch(stop.getName(), stop));
         }
+
+        return new RadixTrie(keys, matches, score);
     }
 
     /**
-     * Adds a stop to the search trie.
-     *
-     * @param stop Stop to add.
-     * @param tag  Tag to add the stop as. (Name or ID)
+     * Converts a token to the key it is stored under.
      */
-    private void addStop(Stop stop, String tag, boolean useId) {
-        StopNode node = trieRoot;
-
-        if (stop == null)
-            throw new IllegalArgumentException("Stop must not be null.");
-
-        if (tag == null || tag.length() < 1)
+    private static String toKey(String token) {
+        if (token == null || token.length() < 1)
             throw new IllegalArgumentException("Cannot add a node with no name.");
 
-        // Add path to leaf node
-        char[] chars = tag.toCharArray();
-
-        for (int i = 0; i < chars.length; ++i) {
-            char c = chars[i];
-            if (node.hasChild(c))
-                node = node.getChild(c);
-            else
-                node = node.addChild(c, new StopNode(c));
-        }
-
-        node.addStop(stop, useId);
+        return token.toLowerCase();
     }
 }
@@ -0,0 +1,484 @@
+package search.trie;
+
+import java.util.*;
+
+/**
+ * Immutable path compressed trie of prefix matches, stored in flat arrays.
+ * <p>
+ * Keys are kept sorted, so the matches below any node form one contiguous range of the match
+ * array and a prefix search only has to find the node and return its range. A node stores the
+ * depth of its path, the range of its matches and the range of its children. The characters on
+ * the edge into a node are not copied, they are read from the first key below the node.
+ * <p>
+ * Every match is scored when the trie is built. Nodes with more than {@link #TOP_COUNT} matches
+ * below them also keep their best matches in order, so a ranked search for up to that many
+ * matches takes the same time however many matches the prefix has.
+ *
+ * @author Matthew Corfiatis
+ */
+class RadixTrie {
+    static final int TOP_COUNT = 16; // Number of ranked matches kept by each node
+
+    // Entries sorted by key, matches with the same key are kept in the order they were added.
+    private final String[] keys;
+    private final PrefixMatch[] matches;
+    private final PrefixScore score;
+    private final double[] scores;
+
+    // Nodes, the root is node 0.
+    private int nodeCount = 0;
+    private int[] depth;
+    private char[] firstChar; // First character on the edge into the node
+    private int[] childStart;
+    private int[] childEnd;
+    private int[] matchStart;
+    private int[] exactEnd; // Matches with a key equal to the node's path come first
+    private int[] matchEnd;
+    private int[] topStart; // Range of topMatches, empty for nodes with TOP_COUNT matches or less
+    private int[] topEnd;
+    private int[] topMatches;
+    private int topCount = 0;
+
+    /**
+     * Builds a trie from keys and the matches they lead to.
+     *
+     * @param keys    Keys to add, must not be empty.
+     * @param matches Match for each key.
+     * @param score   Score used to rank the matches.
+     */
+    RadixTrie(List<String> keys, List<PrefixMatch> matches, PrefixScore score) {
+        // Stable sort of the entry indices by key.
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparing(keys::get));
+
+        this.keys = new String[order.length];
+        this.matches = new PrefixMatch[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            this.keys[i] = keys.get(order[i]);
+            this.matches[i] = matches.get(order[i]);
+        }
+
+        this.score = score;
+        this.scores = scoreMatches();
+        build();
+    }
+
+    public int size() {
+        return matches.length;
+    }
+
+    /**
+     * Finds the matches for a prefix.
+     * <p>
+     * If any keys equal the prefix, only their matches are returned.
+     * Otherwise all of the matches with a key starting with the prefix are returned.
+     *
+     * @param prefix Lower case prefix to search for.
+     * @return Matches in key order.
+     */
+    public List<PrefixMatch> search(String prefix) {
+        int node = findNode(prefix);
+        if (node < 0)
+            return Collections.emptyList();
+
+        if (isExact(node, prefix))
+            return range(matchStart[node], exactEnd[node]);
+
+        return range(matchStart[node], matchEnd[node]);
+    }
+
+    /**
+     * Finds the best matches for a prefix, following the same rules as {@link #search(String)}.
+     *
+     * @param prefix Lower case prefix to search for.
+     * @param count  Maximum number of matches to return.
+     * @return Matches with the highest scores first, matches with equal scores are in key order.
+     */
+    public List<PrefixMatch> searchTop(String prefix, int count) {
+        int node = findNode(prefix);
+        if (node < 0)
+            return Collections.emptyList();
+
+        if (isExact(node, prefix))
+            return selectTop(matchStart[node], exactEnd[node], count);
+
+        // Use the ranked matches stored with the node when there are enough of them.
+        if (topEnd[node] > topStart[node] && count <= TOP_COUNT) {
+            List<PrefixMatch> top = new ArrayList<>(count);
+            for (int i = topStart[node]; i < topStart[node] + count; ++i)
+                top.add(matches[topMatches[i]]);
+            return top;
+        }
+
+        return selectTop(matchStart[node], matchEnd[node], count);
+    }
+
+    /**
+     * Finds the best matches for keys that start with a prefix within an edit distance of a query.
+     * <p>
+     * The trie is walked with a {@link LevenshteinAutomaton}, and a branch is dropped as soon as
+     * no key below it can come within the distance. Once a node is reached within the distance,
+     * every match below it is found, and the walk only carries on below it looking for closer keys.
+     *
+     * @param query       Lower case query to search for.
+     * @param maxDistance Maximum number of edits.
+     * @param count       Maximum number of matches to return.
+     * @return Matches with the fewest edits first, then the highest scores.
+     */
+    public List<PrefixMatch> searchFuzzy(String query, int maxDistance, int count) {
+        LevenshteinAutomaton automaton = new LevenshteinAutomaton(query, maxDistance);
+        List<int[]> found = new ArrayList<>(); // Node and distance pairs
+
+        long[] start = automaton.start();
+        int distance = automaton.distance(start, maxDistance);
+        if (distance >= 0)
+            found.add(new int[]{0, distance});
+        if (distance != 0)
+            searchFuzzy(0, start, distance < 0 ? maxDistance : distance - 1, automaton, found);
+
+        // Closer nodes are always below further ones, so taking each distance in turn and
+        // skipping the matches already taken gives each match its smallest distance.
+        List<PrefixMatch> result = new ArrayList<>(Math.min(count, 64));
+        BitSet taken = new BitSet();
+
+        for (int d = 0; d <= maxDistance && result.size() < count; ++d) {
+            int[] top = new int[count - result.size()];
+            int size = 0;
+
+            for (int[] nodeDistance : found) {
+                if (nodeDistance[1] != d)
+                    continue;
+
+                size = selectFuzzyTop(nodeDistance[0], taken, top, size);
+            }
+
+            for (int[] nodeDistance : found)
+                if (nodeDistance[1] == d)
+                    taken.set(matchStart[nodeDistance[0]], matchEnd[nodeDistance[0]]);
+
+            for (int i = 0; i < size; ++i)
+                result.add(matches[top[i]]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Walks the children of a node with the automaton, recording the nodes that are reached.
+     *
+     * @param node      Node the automaton is at.
+     * @param state     State of the automaton at the node.
+     * @param bound     Largest distance still worth finding below the node.
+     * @param automaton Automaton for the query.
+     * @param found     Receives the nodes within the distance and their distances.
+     */
+    private void searchFuzzy(int node, long[] state, int bound, LevenshteinAutomaton automaton, List<int[]> found) {
+        long[] from = new long[state.length];
+        long[] to = new long[state.length];
+
+        for (int child = childStart[node]; child < childEnd[node]; ++child) {
+            String key = keys[matchStart[child]];
+            int childBound = bound;
+            boolean alive = true;
+            System.arraycopy(state, 0, from, 0, state.length);
+
+            for (int i = depth[node]; i < depth[child] && alive; ++i) {
+                alive = automaton.step(from, to, key.charAt(i), childBound);
+                long[] swap = from;
+                from = to;
+                to = swap;
+
+                int distance = alive ? automaton.distance(from, childBound) : -1;
+                if (distance >= 0) {
+                    found.add(new int[]{child, distance});
+                    childBound = distance - 1;
+                    alive = childBound >= 0;
+                }
+            }
+
+            if (alive && childEnd[child] > childStart[child])
+                searchFuzzy(child, from, childBound, automaton, found);
+        }
+    }
+
+    /**
+     * Inserts the matches below a node that have not been taken into a list of the best matches.
+     * The node's ranked matches are used when enough of them are left.
+     */
+    private int selectFuzzyTop(int node, BitSet taken, int[] top, int size) {
+        if (topEnd[node] > topStart[node]) {
+            int left = 0;
+            for (int i = topStart[node]; i < topEnd[node]; ++i)
+                if (!taken.get(topMatches[i]))
+                    ++left;
+
+            if (left >= top.length) {
+                for (int i = topStart[node]; i < topEnd[node]; ++i)
+                    if (!taken.get(topMatches[i]))
+                        size = insertTop(topMatches[i], top, size);
+                return size;
+            }
+        }
+
+        for (int match = taken.nextClearBit(matchStart[node]); match < matchEnd[node]; match = taken.nextClearBit(match + 1))
+            size = insertTop(match, top, size);
+        return size;
+    }
+
+    /**
+     * Prints every node's edge with its depth shown as indentation.
+     */
+    public void print() {
+        printNode(0, 0, "");
+    }
+
+    private void printNode(int node, int parentDepth, String space) {
+        System.out.print(space);
+        System.out.println(keys.length == 0 ? "" : keys[matchStart[node]].substring(parentDepth, depth[node]));
+
+        for (int child = childStart[node]; child < childEnd[node]; ++child)
+            printNode(child, depth[node], space + "  ");
+    }
+
+    /**
+     * Follows a prefix down the trie.
+     *
+     * @return The node at the end of the prefix, the node below if the prefix ends part
+     * way along an edge, or -1 if no keys start with the prefix.
+     */
+    private int findNode(String prefix) {
+        int node = 0;
+
+        while (prefix.length() > depth[node]) {
+            int child = findChild(node, prefix.charAt(depth[node]));
+            if (child < 0)
+                return -1;
+
+            // The first character was matched by findChild, check the rest of the edge.
+            String key = keys[matchStart[child]];
+            int end = Math.min(prefix.length(), depth[child]);
+            for (int i = depth[node] + 1; i < end; ++i)
+                if (key.charAt(i) != prefix.charAt(i))
+                    return -1;
+
+            node = child;
+        }
+
+        return node;
+    }
+
+    /**
+     * Checks whether any keys equal a prefix that was followed to a node. A prefix that
+     * ends part way along an edge can not equal a key.
+     */
+    private boolean isExact(int node, String prefix) {
+        return prefix.length() == depth[node] && exactEnd[node] > matchStart[node];
+    }
+
+    /**
+     * Checks whether a match should be ranked before another.
+     */
+    private boolean isBetter(int match, int other) {
+        return scores[match] > scores[other] || (scores[match] == scores[other] && match < other);
+    }
+
+    /**
+     * Finds the best matches in a range of the sorted entries.
+     *
+     * @return Up to count matches, best first.
+     */
+    private List<PrefixMatch> selectTop(int start, int end, int count) {
+        int[] top = new int[Math.min(count, end - start)];
+        int size = selectTop(start, end, top, 0);
+
+        List<PrefixMatch> result = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i)
+            result.add(matches[top[i]]);
+        return result;
+    }
+
+    /**
+     * Inserts the matches from a range of the sorted entries into a list of the best matches.
+     *
+     * @param top  Best matches so far, best first. Worse matches fall off the end when it is full.
+     * @param size Number of matches in the list.
+     * @return New number of matches in the list.
+     */
+    private int selectTop(int start, int end, int[] top, int size) {
+        for (int match = start; match < end; ++match)
+            size = insertTop(match, top, size);
+        return size;
+    }
+
+    private int insertTop(int match, int[] top, int size) {
+        if (size == top.length && !isBetter(match, top[size - 1]))
+            return size;
+
+        int i = Math.min(size, top.length - 1);
+        while (i > 0 && isBetter(match, top[i - 1])) {
+            top[i] = top[i - 1];
+            --i;
+        }
+        top[i] = match;
+
+        return Math.min(size + 1, top.length);
+    }
+
+    private double[] scoreMatches() {
+        double[] scores = new double[matches.length];
+        for (int i = 0; i < matches.length; ++i)
+            scores[i] = score.score(matches[i]);
+        return scores;
+    }
+
+    /**
+     * Finds the child of a node whose edge starts with a character.
+     *
+     * @return Index of the child or -1 if there is none.
+     */
+    private int findChild(int node, char c) {
+        int low = childStart[node];
+        int high = childEnd[node] - 1;
+
+        // Children are in key order, so their first characters are sorted.
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstChar[mid] < c)
+                low = mid + 1;
+            else if (firstChar[mid] > c)
+                high = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    private List<PrefixMatch> range(int start, int end) {
+        return Collections.unmodifiableList(Arrays.asList(matches).subList(start, end));
+    }
+
+    /**
+     * Builds the nodes from the sorted keys.
+     */
+    private void build() {
+        int capacity = 2 * keys.length + 1; // Every node but the root has matches of its own or at least two children
+        depth = new int[capacity];
+        firstChar = new char[capacity];
+        childStart = new int[capacity];
+        childEnd = new int[capacity];
+        matchStart = new int[capacity];
+        exactEnd = new int[capacity];
+        matchEnd = new int[capacity];
+        topStart = new int[capacity];
+        topEnd = new int[capacity];
+        topMatches = new int[16];
+
+        buildNode(newNode(0, keys.length, 0, (char) 0));
+
+        depth = Arrays.copyOf(depth, nodeCount);
+        firstChar = Arrays.copyOf(firstChar, nodeCount);
+        childStart = Arrays.copyOf(childStart, nodeCount);
+        childEnd = Arrays.copyOf(childEnd, nodeCount);
+        matchStart = Arrays.copyOf(matchStart, nodeCount);
+        exactEnd = Arrays.copyOf(exactEnd, nodeCount);
+        matchEnd = Arrays.copyOf(matchEnd, nodeCount);
+        topStart = Arrays.copyOf(topStart, nodeCount);
+        topEnd = Arrays.copyOf(topEnd, nodeCount);
+        topMatches = Arrays.copyOf(topMatches, topCount);
+    }
+
+    /**
+     * Adds the children of a node, one for each distinct character that follows the node's path.
+     * The children are given consecutive node indices before any of their own children are added.
+     *
+     * @param node Node to build.
+     */
+    private void buildNode(int node) {
+        int nodeDepth = depth[node];
+        int start = exactEnd[node];
+        int end = matchEnd[node];
+        int first = nodeCount;
+
+        while (start < end) {
+            char c = keys[start].charAt(nodeDepth);
+            int groupEnd = start + 1;
+            while (groupEnd < end && keys[groupEnd].charAt(nodeDepth) == c)
+                ++groupEnd;
+
+            // Keys are sorted, so the prefix shared by the whole group is shared by its first and last keys.
+            newNode(start, groupEnd, commonPrefixLength(keys[start], keys[groupEnd - 1]), c);
+            start = groupEnd;
+        }
+
+        childStart[node] = first;
+        childEnd[node] = nodeCount;
+
+        for (int child = first; child < childEnd[node]; ++child)
+            buildNode(child);
+
+        buildTop(node);
+    }
+
+    /**
+     * Ranks the best matches below a node from the matches of its own and the best matches of
+     * its children. The children must already be ranked.
+     *
+     * @param node Node to rank.
+     */
+    private void buildTop(int node) {
+        if (matchEnd[node] - matchStart[node] <= TOP_COUNT)
+            return;
+
+        int[] top = new int[TOP_COUNT];
+        int size = selectTop(matchStart[node], exactEnd[node], top, 0);
+
+        for (int child = childStart[node]; child < childEnd[node]; ++child) {
+            if (topEnd[child] > topStart[child]) {
+                for (int i = topStart[child]; i < topEnd[child]; ++i)
+                    size = insertTop(topMatches[i], top, size);
+            } else {
+                size = selectTop(matchStart[child], matchEnd[child], top, size);
+            }
+        }
+
+        if (topCount + size > topMatches.length)
+            topMatches = Arrays.copyOf(topMatches, Math.max(topMatches.length * 2, topCount + size));
+
+        System.arraycopy(top, 0, topMatches, topCount, size);
+        topStart[node] = topCount;
+        topCount += size;
+        topEnd[node] = topCount;
+    }
+
+    /**
+     * Adds a node covering a range of the sorted entries.
+     *
+     * @return Index of the new node.
+     */
+    private int newNode(int start, int end, int nodeDepth, char c) {
+        int node = nodeCount++;
+        depth[node] = nodeDepth;
+        firstChar[node] = c;
+        matchStart[node] = start;
+        matchEnd[node] = end;
+
+        // Keys equal to the node's path sort before any longer keys.
+        int exact = start;
+        while (exact < end && keys[exact].length() == nodeDepth)
+            ++exact;
+        exactEnd[node] = exact;
+
+        return node;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i))
+            ++i;
+        return i;
+    }
+}
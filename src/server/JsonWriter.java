@@ -0,0 +1,177 @@
+package server;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON straight to a stream as it is produced, so responses are never built in memory.
+ * <p>
+ * Values are written with explicit calls instead of by reflection, and the writer only tracks
+ * whether a comma is needed at each level of nesting. Names must be written before each value in
+ * an object. Structure is not otherwise checked.
+ *
+ * @author Matthew Corfiatis
+ */
+public class JsonWriter {
+    private static final int MAX_DEPTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean[] hasValue = new boolean[MAX_DEPTH]; // Whether each open level needs a comma
+    private int depth = 0;
+    private boolean afterName = false;
+
+    /**
+     * @param out Stream to write to, it is not closed or flushed by the writer.
+     */
+    public JsonWriter(Writer out) {
+        if (out == null)
+            throw new IllegalArgumentException("Output cannot be null.");
+
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next value in an object.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string, or null.
+     */
+    public JsonWriter value(String value) throws IOException {
+        if (value == null)
+            return nullValue();
+
+        separate();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a number, or null if it is not finite as JSON has no infinities.
+     */
+    public JsonWriter value(double value) throws IOException {
+        if (!Double.isFinite(value))
+            return nullValue();
+
+        separate();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        if (depth == MAX_DEPTH)
+            throw new IllegalStateException("JSON is nested too deeply.");
+
+        separate();
+        out.write(bracket);
+        hasValue[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0)
+            throw new IllegalStateException("No object or array is open.");
+
+        --depth;
+        out.write(bracket);
+        return this;
+    }
+
+    /**
+     * Writes a comma if the value or name being written is not the first at its level.
+     */
+    private void separate() throws IOException {
+        if (afterName) { // The value belongs to the name just written
+            afterName = false;
+            return;
+        }
+
+        if (depth > 0) {
+            if (hasValue[depth - 1])
+                out.write(',');
+            hasValue[depth - 1] = true;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+
+        // Copy runs of plain characters at once and escape the rest.
+        int runStart = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\')
+                continue;
+
+            out.write(value, runStart, i - runStart);
+            runStart = i + 1;
+
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    out.write("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+
+        out.write(value, runStart, value.length() - runStart);
+        out.write('"');
+    }
+}
@@ -0,0 +1,136 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Counts latencies in buckets whose width grows with the value, in the style of HdrHistogram.
+ * <p>
+ * Values below 256 are counted exactly; above that every doubling is split into 128 buckets, so
+ * a reported value is within 0.8% of the values it stands for. Recording is a few shifts and an
+ * increment, and never allocates, so a histogram can be recorded into on every request. A
+ * histogram is not thread safe, each thread keeps its own and they are added together at the end.
+ *
+ * @author Matthew Corfiatis
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Values counted exactly
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2; // Buckets per doubling above that
+    private static final int MAX_SHIFT = 64 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS];
+    private long totalCount = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * Counts one value.
+     *
+     * @param value Value to count, must not be negative.
+     */
+    public void record(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Value must not be negative.");
+
+        ++counts[index(value)];
+        ++totalCount;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Counts a value, and the values that were never measured because the request was late.
+     * <p>
+     * When a request that should have been sent every interval takes longer than the interval,
+     * the requests that would have been sent while waiting for it would also have been delayed.
+     * These are counted with latencies decreasing by the interval, which corrects for
+     * coordinated omission when the load generator waits for each response before sending.
+     *
+     * @param value            Value to count.
+     * @param expectedInterval Time between requests that the load should have, 0 for no correction.
+     */
+    public void recordCorrected(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval <= 0)
+            return;
+
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval)
+            record(missing);
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Finds a percentile of the counted values.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return The highest value in the bucket holding the percentile, never more than the largest
+     * value counted, or 0 if nothing was counted.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= target)
+                return Math.min(max, highestValue(i));
+        }
+        return max;
+    }
+
+    /**
+     * Bucket a value is counted in.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        // Keep the top SUB_BUCKET_BITS bits of the value, the first of which is always set.
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Largest value counted in a bucket.
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
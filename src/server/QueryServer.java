@@ -0,0 +1,381 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.Location;
+import common.Stop;
+import common.Trip;
+import io.ParseError;
+import search.Network;
+import search.QueryService;
+import search.trie.PrefixMatch;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves stop and trip queries over HTTP as JSON, without the window.
+ * <p>
+ * Endpoints, all GET:
+ * <pre>
+ * /status                                   Counts of the loaded network
+ * /stops/search?q=prefix[&amp;count=10]          Best ranked stops by name prefix, or by words in the name
+ * /stops/nearest?lat=..&amp;lon=..[&amp;count=1]     Closest stops, x=..&amp;y=.. can be given instead of lat and lon
+ * /stops/{id}                               A stop and the trips through it
+ * /trips/{id}                               A trip and its stops
+ * </pre>
+ * Every request reads the current network from the {@link QueryService} once and searches that
+ * snapshot without locking. Responses are encoded by a {@link JsonWriter} straight to the
+ * connection. Requests are handled on virtual threads when the JVM has them, otherwise on a
+ * fixed pool of threads.
+ * <p>
+ * The JDK server writes the headers and each chunk of a response separately, so without
+ * TCP_NODELAY the body waits for the client's delayed acknowledgement of the headers, about 40 ms
+ * on every request. The only switch for it is the JVM wide system property
+ * {@code sun.net.httpserver.nodelay}, which the server reads once when the first server is created.
+ * {@link #main} sets it; a program that embeds a server should run with
+ * {@code -Dsun.net.httpserver.nodelay=true} or call {@link #enableNoDelay()} before creating one.
+ * <p>
+ * Usage: {@code QueryServer directory [port]}, where the directory holds stops.txt and trips.txt.
+ *
+ * @author Matthew Corfiatis
+ */
+public class QueryServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_COUNT = 10; // Stops returned by a search when no count is given
+    private static final int MAX_COUNT = 100;
+    private static final int BACKLOG = 1024; // Connections waiting to be accepted
+    private static final int THREADS_PER_CORE = 4; // Size of the fallback pool, handlers block on slow clients
+
+    private final QueryService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server, it does not accept requests until it is started.
+     *
+     * @param service Holds the network to query.
+     * @param address Address to listen on, port 0 picks a free port.
+     * @throws IOException When the address can not be bound.
+     */
+    public QueryServer(QueryService service, InetSocketAddress address) throws IOException {
+        if (service == null)
+            throw new IllegalArgumentException("Service cannot be null.");
+
+        this.service = service;
+        server = HttpServer.create(address, BACKLOG);
+        executor = newExecutor();
+        server.setExecutor(executor);
+
+        // Longest prefix wins, so the search endpoints are found before the stop IDs.
+        route("/status", this::status);
+        route("/stops/search", this::searchStops);
+        route("/stops/nearest", this::nearestStops);
+        route("/stops/", this::stopDetails);
+        route("/trips/", this::tripDetails);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second for running requests to finish.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Address the server is listening on.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Turns on TCP_NODELAY for every JDK HTTP server created after this call, unless it was set
+     * on the command line. This changes a JVM wide system property, see the class comment.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: QueryServer directory [port]");
+            System.exit(1);
+        }
+
+        File directory = new File(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        enableNoDelay();
+
+        QueryService service = new QueryService();
+        try {
+            Network network = service.reload(new File(directory, "stops.txt"), new File(directory, "trips.txt"));
+            System.out.printf("Loaded %d stops, %d trips and %d connections in %.0f ms%n",
+                    network.getStopCount(), network.getTripCount(), network.getConnectionCount(), network.getLoadMillis());
+        } catch (ParseError ex) {
+            System.err.println("Invalid data encountered while reading one of the files: " + ex.getMessage());
+            System.exit(1);
+        }
+
+        QueryServer server = new QueryServer(service, new InetSocketAddress(port));
+        server.start();
+        System.out.printf("Listening on http://localhost:%d/%n", server.getAddress().getPort());
+    }
+
+    /**
+     * Answers a request. Anything that can fail is checked before the response body is returned,
+     * so the status is known before the body is written.
+     */
+    private interface Endpoint {
+        Body handle(Network network, String path, Map<String, String> params) throws RequestError;
+    }
+
+    /**
+     * Writes the body of a successful response.
+     */
+    private interface Body {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * A request that can not be answered, the message is returned to the client.
+     */
+    private static class RequestError extends Exception {
+        private final int status;
+
+        private RequestError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void route(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            try {
+                handle(exchange, endpoint);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        Body body;
+        int status = 200;
+
+        try {
+            if (!exchange.getRequestMethod().equals("GET"))
+                throw new RequestError(405, "Only GET is supported.");
+
+            Network network = service.getNetwork();
+            if (network == null)
+                throw new RequestError(503, "No network is loaded.");
+
+            body = endpoint.handle(network, exchange.getRequestURI().getPath(), parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (RequestError ex) {
+            status = ex.status;
+            body = json -> json.beginObject().name("error").value(ex.getMessage()).endObject();
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0); // Length unknown, the body is sent in chunks
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            body.write(new JsonWriter(writer));
+        }
+    }
+
+    private Body status(Network network, String path, Map<String, String> params) {
+        return json -> json.beginObject()
+                .name("stops").value(network.getStopCount())
+                .name("trips").value(network.getTripCount())
+                .name("connections").value(network.getConnectionCount())
+                .name("loadMillis").value(network.getLoadMillis())
+                .endObject();
+    }
+
+    private Body searchStops(Network network, String path, Map<String, String> params) throws RequestError {
+        String query = params.get("q");
+        if (query == null || query.isEmpty())
+            throw new RequestError(400, "Missing query parameter q.");
+
+        int count = intParam(params, "count", DEFAULT_COUNT);
+
+        // Fall back to matching the words anywhere in the names, as the window does.
+        List<PrefixMatch> matches = network.searchPrefix(query, count);
+        if (matches.isEmpty())
+            matches = network.searchWords(query, count);
+
+        List<PrefixMatch> found = matches;
+        return json -> {
+            json.beginObject().name("query").value(query).name("stops").beginArray();
+            for (PrefixMatch match : found)
+                writeStop(json, match.getStop());
+            json.endArray().endObject();
+        };
+    }
+
+    private Body nearestStops(Network network, String path, Map<String, String> params) throws RequestError {
+        Location location;
+        if (params.containsKey("lat") || params.containsKey("lon"))
+            location = Location.newFromLatLon(doubleParam(params, "lat"), doubleParam(params, "lon"));
+        else
+            location = new Location(doubleParam(params, "x"), doubleParam(params, "y"));
+
+        int count = intParam(params, "count", 1);
+        List<Stop> stops = count == 1 ? Collections.singletonList(network.searchClosest(location)) : network.searchNearest(location, count);
+
+        return json -> {
+            json.beginObject().name("stops").beginArray();
+            for (Stop stop : stops) {
+                if (stop == null)
+                    continue; // The network has no stops
+                json.beginObject()
+                        .name("id").value(stop.getId())
+                        .name("name").value(stop.getName())
+                        .name("x").value(stop.getLocation().x)
+                        .name("y").value(stop.getLocation().y)
+                        .name("distance").value(stop.getLocation().distance(location))
+                        .endObject();
+            }
+            json.endArray().endObject();
+        };
+    }
+
+    private Body stopDetails(Network network, String path, Map<String, String> params) throws RequestError {
+        Stop stop = network.getStop(pathId(path, "/stops/"));
+        if (stop == null)
+            throw new RequestError(404, "Stop not found.");
+
+        return json -> {
+            json.beginObject()
+                    .name("id").value(stop.getId())
+                    .name("name").value(stop.getName())
+                    .name("x").value(stop.getLocation().x)
+                    .name("y").value(stop.getLocation().y)
+                    .name("trips").beginArray();
+            for (Trip trip : stop.getTrips())
+                json.value(trip.getId());
+            json.endArray().endObject();
+        };
+    }
+
+    private Body tripDetails(Network network, String path, Map<String, String> params) throws RequestError {
+        Trip trip = network.getTrip(pathId(path, "/trips/"));
+        if (trip == null)
+            throw new RequestError(404, "Trip not found.");
+
+        return json -> {
+            json.beginObject().name("id").value(trip.getId()).name("stops").beginArray();
+            for (Stop stop : trip.getStops())
+                writeStop(json, stop);
+            json.endArray().endObject();
+        };
+    }
+
+    private static void writeStop(JsonWriter json, Stop stop) throws IOException {
+        json.beginObject()
+                .name("id").value(stop.getId())
+                .name("name").value(stop.getName())
+                .name("x").value(stop.getLocation().x)
+                .name("y").value(stop.getLocation().y)
+                .endObject();
+    }
+
+    /**
+     * Returns the ID following a prefix in a decoded path.
+     */
+    private static String pathId(String path, String prefix) throws RequestError {
+        String id = path.substring(prefix.length());
+        if (id.isEmpty())
+            throw new RequestError(404, "Missing ID.");
+        return id;
+    }
+
+    /**
+     * Splits a raw query string into decoded parameters, later duplicates replace earlier ones.
+     */
+    private static Map<String, String> parseQuery(String query) throws RequestError {
+        if (query == null || query.isEmpty())
+            return Collections.emptyMap();
+
+        Map<String, String> params = new HashMap<>();
+        try {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals < 0)
+                    params.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+                else
+                    params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new RequestError(400, "Invalid query string.");
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) throws RequestError {
+        String value = params.get(name);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1 || result > MAX_COUNT)
+                throw new RequestError(400, String.format("Parameter %s must be between 1 and %d.", name, MAX_COUNT));
+            return result;
+        } catch (NumberFormatException ex) {
+            throw new RequestError(400, String.format("Parameter %s must be an integer.", name));
+        }
+    }
+
+    private static double doubleParam(Map<String, String> params, String name) throws RequestError {
+        String value = params.get(name);
+        if (value == null)
+            throw new RequestError(400, String.format("Missing parameter %s.", name));
+
+        try {
+            double result = Double.parseDouble(value);
+            if (!Double.isFinite(result))
+                throw new NumberFormatException();
+            return result;
+        } catch (NumberFormatException ex) {
+            throw new RequestError(400, String.format("Parameter %s must be a number.", name));
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the JVM has one, otherwise a fixed pool.
+     * The factory is looked up at run time so the server still builds and runs on older JVMs.
+     * Only a missing or unusable factory falls back, any other error is not hidden.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * THREADS_PER_CORE, runnable -> {
+                Thread thread = new Thread(runnable, "query-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io;
+
+import common.Location;
+import common.Stop;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class feedDeltaTests {
+    private static final String HEADER = "action\ttype\tid\tfields\n";
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testRead() throws IOException {
+        FeedDelta delta = FeedDelta.read(write(HEADER +
+                "PUT\tSTOP\tS1\tNew Stop\t-36.85\t174.76\n" +
+                "REMOVE\tSTOP\tS2\n" +
+                "PUT\tTRIP\tT1\tS1\tS3\tS1\n" +
+                "REMOVE\tTRIP\tT2\n" +
+                "PUT\tTRIP\tT3\tS4\n"));
+
+        assertEquals(1, delta.getPutStops().size());
+        Stop stop = delta.getPutStops().get("S1");
+        assertEquals("S1", stop.getId());
+        assertEquals("New Stop", stop.getName());
+        Location expected = Location.newFromLatLon(-36.85, 174.76);
+        assertEquals(expected.x, stop.getLocation().x, 1e-9);
+        assertEquals(expected.y, stop.getLocation().y, 1e-9);
+        assertNull(stop.getGraph());
+
+        assertEquals(Arrays.asList("S2"), Arrays.asList(delta.getRemovedStops().toArray()));
+        assertArrayEquals(new String[]{"S1", "S3", "S1"}, delta.getPutTrips().get("T1"));
+        assertArrayEquals(new String[]{"S4"}, delta.getPutTrips().get("T3"));
+        assertEquals(Arrays.asList("T2"), Arrays.asList(delta.getRemovedTrips().toArray()));
+    }
+
+    @Test
+    public void testReadEmpty() throws IOException {
+        FeedDelta delta = FeedDelta.read(write(HEADER));
+
+        assertTrue(delta.getPutStops().isEmpty());
+        assertTrue(delta.getRemovedStops().isEmpty());
+        assertTrue(delta.getPutTrips().isEmpty());
+        assertTrue(delta.getRemovedTrips().isEmpty());
+    }
+
+    @Test
+    public void testInvalidLines() throws IOException {
+        assertError("Invalid action on line 2", "ADD\tSTOP\tS1\tName\t1\t2\n");
+        assertError("Invalid type on line 2", "PUT\tROUTE\tR1\tS1\n");
+        assertError("Invalid number of tokens", "REMOVE\tSTOP\n");
+        assertError("Invalid number of tokens", "PUT\tSTOP\tS1\tName\t1\n");
+        assertError("Invalid number of tokens", "PUT\tSTOP\tS1\tName\t1\t2\t3\n");
+        assertError("Invalid number of tokens", "REMOVE\tSTOP\tS1\textra\n");
+        assertError("Invalid number of tokens", "REMOVE\tTRIP\tT1\textra\n");
+        assertError("No stops found", "PUT\tTRIP\tT1\n");
+        assertError("Invalid latitude on line 2", "PUT\tSTOP\tS1\tName\tnorth\t2\n");
+        assertError("Invalid longitude on line 2", "PUT\tSTOP\tS1\tName\t1\teast\n");
+    }
+
+    @Test
+    public void testChangedTwice() throws IOException {
+        assertError("Stop on line 3 of delta file was already changed: S1",
+                "PUT\tSTOP\tS1\tName\t1\t2\n" +
+                        "REMOVE\tSTOP\tS1\n");
+        assertError("Trip on line 3 of delta file was already changed: T1",
+                "REMOVE\tTRIP\tT1\n" +
+                        "PUT\tTRIP\tT1\tS1\n");
+
+        // The same ID can be used for a stop and a trip.
+        FeedDelta delta = FeedDelta.read(write(HEADER +
+                "REMOVE\tSTOP\tX\n" +
+                "REMOVE\tTRIP\tX\n"));
+        assertTrue(delta.getRemovedStops().contains("X"));
+        assertTrue(delta.getRemovedTrips().contains("X"));
+    }
+
+    private void assertError(String message, String lines) throws IOException {
+        File file = write(HEADER + lines);
+        ParseError error = assertThrows(ParseError.class, () -> FeedDelta.read(file));
+        assertTrue(error.getMessage().contains(message), error.getMessage());
+    }
+
+    private File write(String content) throws IOException {
+        File file = File.createTempFile("delta", ".txt", directory);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
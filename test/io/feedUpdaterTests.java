@@ -0,0 +1,188 @@
+package io;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import search.Network;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class feedUpdaterTests {
+    private static final String HEADER = "action\ttype\tid\tfields\n";
+
+    @TempDir
+    File directory;
+
+    private final FeedUpdater updater;
+
+    public feedUpdaterTests() {
+        Stop a = new Stop("A", "Alpha Road", new Location(0, 0));
+        Stop b = new Stop("B", "Beta Street", new Location(1, 0));
+        Stop c = new Stop("C", "Gamma Avenue", new Location(2, 0));
+        Stop d = new Stop("D", "Delta Lane", new Location(3, 0));
+        updater = new FeedUpdater(new Network(new StopGraph.Builder(Arrays.asList(a, b, c, d))
+                .addTrip(new Trip("t1"), a, b, c)
+                .addTrip(new Trip("t2"), c, d)
+                .build()));
+    }
+
+    @Test
+    public void testAddStopAndTrip() throws IOException {
+        Network version = apply(
+                "PUT\tSTOP\tE\tEpsilon Place\t-36.85\t174.76\n" +
+                        "PUT\tTRIP\tt3\tD\tE\n");
+
+        assertSame(version, updater.getCurrent());
+        assertEquals(5, version.getGraph().getStopCount());
+        assertEquals(3, version.getGraph().getTripCount());
+
+        Stop e = version.getStop("E");
+        assertEquals("Epsilon Place", e.getName());
+        assertSame(version.getGraph(), e.getGraph());
+        assertEquals(Arrays.asList("D", "E"), ids(version.getTrip("t3").getStops()));
+        assertEquals(Arrays.asList("t3"), tripIds(e.getTrips()));
+        assertEquals(Arrays.asList("t2", "t3"), tripIds(version.getStop("D").getTrips()));
+
+        // Indexes are built over the new version.
+        assertEquals("E", version.getSearcher().searchPrefix("epsilon").iterator().next().getStop().getId());
+        assertEquals(1, version.getSearcher().searchWords("place").size());
+        assertEquals(e, version.searchClosest(e.getLocation()));
+    }
+
+    @Test
+    public void testRemoveStopAndTrip() throws IOException {
+        Network version = apply(
+                "REMOVE\tTRIP\tt2\n" +
+                        "REMOVE\tSTOP\tD\n");
+
+        assertEquals(3, version.getGraph().getStopCount());
+        assertEquals(1, version.getGraph().getTripCount());
+        assertNull(version.getStop("D"));
+        assertNull(version.getTrip("t2"));
+        assertEquals(Arrays.asList("t1"), tripIds(version.getStop("C").getTrips()));
+        assertTrue(version.getSearcher().searchPrefix("delta").isEmpty());
+
+        // Stops keep their order, so trips still visit the same stops.
+        assertEquals(Arrays.asList("A", "B", "C"), ids(version.getStops()));
+        assertEquals(Arrays.asList("A", "B", "C"), ids(version.getTrip("t1").getStops()));
+    }
+
+    @Test
+    public void testChangeStopAndTrip() throws IOException {
+        Network version = apply(
+                "PUT\tSTOP\tB\tBeta Interchange\t-36.9\t174.8\n" +
+                        "PUT\tTRIP\tt2\tD\tC\tB\n");
+
+        assertEquals(4, version.getGraph().getStopCount());
+        assertEquals(2, version.getGraph().getTripCount());
+
+        Stop b = version.getStop("B");
+        assertEquals("Beta Interchange", b.getName());
+        assertEquals(1, version.getGraph().getStop(1).getIndex()); // Replaced stops keep their index
+        assertSame(b, version.getGraph().getStop(1));
+
+        // Unchanged trips are relinked to the replaced stop.
+        assertSame(b, version.getTrip("t1").getStops().get(1));
+        assertEquals(Arrays.asList("D", "C", "B"), ids(version.getTrip("t2").getStops()));
+        assertEquals(Arrays.asList("t1", "t2"), tripIds(b.getTrips()));
+
+        assertTrue(version.getSearcher().searchPrefix("beta street").isEmpty());
+        assertEquals(1, version.getSearcher().searchPrefix("beta inter").size());
+    }
+
+    @Test
+    public void testAddedStopRanking() throws IOException {
+        Network version = apply(
+                "PUT\tSTOP\tE\tAlpha Court\t1\t2\n" +
+                        "PUT\tTRIP\tt3\tA\tE\n" +
+                        "PUT\tTRIP\tt4\tE\tB\n" +
+                        "PUT\tTRIP\tt5\tD\tE\n");
+
+        // The new stop has more trips than Alpha Road, so it is ranked first.
+        assertEquals(3, version.getStop("E").getTrips().size());
+        assertEquals(2, version.getStop("A").getTrips().size());
+        assertEquals("E", version.getSearcher().searchPrefix("alpha", 1).get(0).getStop().getId());
+        assertEquals(Arrays.asList("E", "A"), version.getSearcher().searchWords("alpha", 2).stream()
+                .map(m -> m.getStop().getId()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPreviousVersion() throws IOException {
+        Network previous = updater.getCurrent();
+        apply("PUT\tSTOP\tE\tEpsilon Place\t1\t2\n" +
+                "REMOVE\tTRIP\tt1\n");
+
+        assertNotSame(previous, updater.getCurrent());
+        assertEquals(4, previous.getGraph().getStopCount());
+        assertEquals(2, previous.getGraph().getTripCount());
+        assertNull(previous.getStop("E"));
+        assertNotNull(previous.getTrip("t1"));
+        assertTrue(previous.getSearcher().searchPrefix("epsilon").isEmpty());
+
+        // Stops and trips of the previous version are still views over its graph.
+        Stop a = previous.getStop("A");
+        assertSame(previous.getGraph(), a.getGraph());
+        assertEquals(Arrays.asList("t1"), tripIds(a.getTrips()));
+        assertSame(previous.getGraph(), previous.getTrip("t2").getGraph());
+        assertNotSame(a, updater.getCurrent().getStop("A"));
+        assertTrue(updater.getCurrent().getStop("A").getTrips().isEmpty());
+    }
+
+    @Test
+    public void testRejectedDeltas() throws IOException {
+        Network previous = updater.getCurrent();
+
+        assertRejected("Cannot remove stop that was not found: X", "REMOVE\tSTOP\tX\n");
+        assertRejected("Cannot remove trip that was not found: X", "REMOVE\tTRIP\tX\n");
+        assertRejected("Cannot remove stop D, it is used by trip t2", "REMOVE\tSTOP\tD\n");
+        assertRejected("Trip t3 contains stop that was not found: X", "PUT\tTRIP\tt3\tA\tX\n");
+        assertRejected("Trip t3 contains stop that was not found: D",
+                "PUT\tTRIP\tt3\tA\tD\n" +
+                        "REMOVE\tTRIP\tt2\n" +
+                        "REMOVE\tSTOP\tD\n");
+
+        // Earlier lines of a rejected delta are not applied either.
+        assertRejected("Cannot remove trip that was not found: X",
+                "PUT\tSTOP\tE\tEpsilon Place\t1\t2\n" +
+                        "REMOVE\tTRIP\tX\n");
+
+        assertSame(previous, updater.getCurrent());
+        assertNull(updater.getCurrent().getStop("E"));
+    }
+
+    private void assertRejected(String message, String lines) throws IOException {
+        FeedDelta delta = read(lines);
+        ParseError error = assertThrows(ParseError.class, () -> updater.apply(delta));
+        assertEquals(message, error.getMessage());
+    }
+
+    private Network apply(String lines) throws IOException {
+        return updater.apply(read(lines));
+    }
+
+    private FeedDelta read(String lines) throws IOException {
+        File file = File.createTempFile("delta", ".txt", directory);
+        Files.write(file.toPath(), (HEADER + lines).getBytes(StandardCharsets.UTF_8));
+        return FeedDelta.read(file);
+    }
+
+    private static List<String> ids(Collection<Stop> stops) {
+        return stops.stream().map(Stop::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> tripIds(List<Trip> trips) {
+        return trips.stream().map(Trip::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,135 @@
+package io;
+
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class lineReaderTests {
+    private static final long SMALL_CHUNK = 16; // A few lines per chunk
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testChunksMatchSequential() throws IOException {
+        StringBuilder text = new StringBuilder("header\tline\n");
+        for (int i = 0; i < 200; ++i)
+            text.append("id").append(i).append('\t').append(i * 7).append(i % 3 == 0 ? "\r\n" : "\n");
+        text.append("last\tline"); // No trailing newline
+        File file = write("lines.txt", text.toString());
+
+        Map<Integer, String> sequential = readLines(file, false, LineReader.MIN_CHUNK_SIZE);
+        assertEquals(201, sequential.size());
+        assertEquals("id0|0", sequential.get(2));
+        assertEquals("last|line", sequential.get(202));
+
+        assertEquals(sequential, readLines(file, false, SMALL_CHUNK));
+        assertEquals(sequential, readLines(file, true, SMALL_CHUNK));
+    }
+
+    @Test
+    public void testGraphMatchesSequential() throws IOException {
+        StringBuilder stops = new StringBuilder("stop_id\tname\tlat\tlon\n");
+        for (int i = 0; i < 100; ++i)
+            stops.append("S").append(i).append("\tStop ").append(i).append('\t').append(-36 - i * 0.01).append('\t').append(174 + i * 0.01).append('\n');
+        StringBuilder trips = new StringBuilder("trip_id\tstops\n");
+        for (int i = 0; i < 50; ++i)
+            trips.append("T").append(i).append("\tS").append(i).append("\tS").append(i + 1).append("\tS").append(99 - i).append('\n');
+
+        File stopsFile = write("stops.txt", stops.toString());
+        File tripsFile = write("trips.txt", trips.toString());
+
+        StopGraph sequential = JourneyReader.readGraph(stopsFile, tripsFile, false);
+        StopGraph chunked = JourneyReader.readGraph(stopsFile, tripsFile, true, SMALL_CHUNK);
+
+        assertEquals(sequential.getStopCount(), chunked.getStopCount());
+        assertEquals(sequential.getTripCount(), chunked.getTripCount());
+        assertEquals(sequential.getConnectionCount(), chunked.getConnectionCount());
+        assertEquals(describe(sequential), describe(chunked));
+    }
+
+    @Test
+    public void testErrorLineNumbers() throws IOException {
+        StringBuilder stops = new StringBuilder("stop_id\tname\tlat\tlon\n");
+        for (int i = 0; i < 60; ++i)
+            stops.append("S").append(i).append("\tStop\t1\t2\n");
+        stops.append("S60\tStop\tnot a number\t2\n"); // Line 62
+        File stopsFile = write("stops.txt", stops.toString());
+        File tripsFile = write("trips.txt", "trip_id\tstops\n");
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            ParseError error = assertThrows(ParseError.class,
+                    () -> JourneyReader.readGraph(stopsFile, tripsFile, parallel, SMALL_CHUNK));
+            assertTrue(error.getMessage().contains("line 62"), error.getMessage());
+        }
+    }
+
+    @Test
+    public void testDuplicatesAcrossChunks() throws IOException {
+        StringBuilder stops = new StringBuilder("stop_id\tname\tlat\tlon\n");
+        for (int i = 0; i < 60; ++i)
+            stops.append("S").append(i).append("\tStop\t1\t2\n");
+        File tripsFile = write("trips.txt", "trip_id\tstops\n");
+
+        // First and last lines are many chunks apart.
+        File duplicateStops = write("duplicateStops.txt", stops + "S0\tAgain\t3\t4\n"); // Line 62
+        ParseError error = assertThrows(ParseError.class,
+                () -> JourneyReader.readGraph(duplicateStops, tripsFile, true, SMALL_CHUNK));
+        assertTrue(error.getMessage().contains("S0"), error.getMessage());
+
+        // Read in order, the second of the two lines is the duplicate.
+        error = assertThrows(ParseError.class,
+                () -> JourneyReader.readGraph(duplicateStops, tripsFile, false, SMALL_CHUNK));
+        assertEquals("Duplicate stop found on line 62: S0", error.getMessage());
+
+        StringBuilder trips = new StringBuilder("trip_id\tstops\n");
+        for (int i = 0; i < 40; ++i)
+            trips.append("T").append(i).append("\tS").append(i).append('\n');
+        File stopsFile = write("stops.txt", stops.toString());
+        File duplicateTrips = write("duplicateTrips.txt", trips + "T0\tS1\n"); // Line 42
+        error = assertThrows(ParseError.class,
+                () -> JourneyReader.readGraph(stopsFile, duplicateTrips, true, SMALL_CHUNK));
+        assertTrue(error.getMessage().contains("T0"), error.getMessage());
+    }
+
+    private Map<Integer, String> readLines(File file, boolean parallel, long chunkSize) throws IOException {
+        Map<Integer, String> lines = new ConcurrentHashMap<>();
+        LineReader.forEachLine(file, parallel, chunkSize, (fields, lineNumber) -> {
+            StringJoiner joined = new StringJoiner("|");
+            while (fields.next())
+                joined.add(fields.string());
+            assertNull(lines.put(lineNumber, joined.toString()), "Line read twice");
+        });
+        return new TreeMap<>(lines);
+    }
+
+    /**
+     * Describes every trip by its ID and stop IDs, which does not depend on the order stops were read in.
+     */
+    private static Set<String> describe(StopGraph graph) {
+        Set<String> trips = new HashSet<>();
+        for (int i = 0; i < graph.getTripCount(); ++i) {
+            Trip trip = graph.getTrip(i);
+            trips.add(trip.getId() + ":" + trip.getStops().stream().map(Stop::getId).collect(Collectors.joining(",")));
+        }
+        return trips;
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+package io;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class networkSnapshotTests {
+    @TempDir
+    File directory;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Stop a = new Stop("A", "Stop A", new Location(1.5, -2.25));
+        Stop b = new Stop("B", "Stöp B", new Location(3, 4));
+        Stop c = new Stop("C", "", new Location(-7, 0.125));
+        Stop lonely = new Stop("L", "No trips", new Location(9, 9));
+        StopGraph graph = new StopGraph.Builder(Arrays.asList(a, b, c, lonely))
+                .addTrip(new Trip("t1"), c, a, b)
+                .addTrip(new Trip("single"), b) // No connections, but still a trip
+                .addTrip(new Trip("loop"), a, b, a)
+                .build();
+
+        File file = new File(directory, "network.snapshot");
+        NetworkSnapshot.write(graph, file);
+        StopGraph read = NetworkSnapshot.read(file);
+
+        assertEquals(graph.getStopCount(), read.getStopCount());
+        for (int i = 0; i < graph.getStopCount(); ++i) {
+            Stop expected = graph.getStop(i);
+            Stop actual = read.getStop(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getLocation().x, actual.getLocation().x);
+            assertEquals(expected.getLocation().y, actual.getLocation().y);
+        }
+
+        assertEquals(graph.getTripCount(), read.getTripCount());
+        for (int i = 0; i < graph.getTripCount(); ++i) {
+            assertEquals(graph.getTrip(i).getId(), read.getTrip(i).getId());
+            assertEquals(graph.getTrip(i).getStops(), read.getTrip(i).getStops());
+        }
+        assertEquals(graph.getConnectionCount(), read.getConnectionCount());
+    }
+
+    @Test
+    public void testCorruptCounts() throws IOException {
+        // Header followed by a stop count that is negative, or larger than the file can hold.
+        assertThrows(ParseError.class, () -> NetworkSnapshot.read(write(0x4A50534E, 1, -1)));
+        assertThrows(ParseError.class, () -> NetworkSnapshot.read(write(0x4A50534E, 1, Integer.MAX_VALUE)));
+
+        // No stops, then one trip with an empty ID and a huge number of stops.
+        assertThrows(ParseError.class, () -> NetworkSnapshot.read(write(0x4A50534E, 1, 0, 1, 0, Integer.MAX_VALUE)));
+
+        // A string longer than the file.
+        assertThrows(ParseError.class, () -> NetworkSnapshot.read(write(0x4A50534E, 1, 1, Integer.MAX_VALUE)));
+
+        assertThrows(ParseError.class, () -> NetworkSnapshot.read(write(0x12345678, 1, 0, 0)));
+    }
+
+    private File write(int... values) throws IOException {
+        File file = new File(directory, "corrupt.snapshot");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for (int value : values)
+                out.writeInt(value);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,129 @@
+package io;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class tabTokenizerTests {
+    @Test
+    public void testParseDoubleMatchesJdk() {
+        String[] values = {
+                "0", "-0", "+0", "1", "-1", "+1", "12.37345", "-36.8485", "174.7633",
+                "1.", "-1.", ".5", "-.5", "+.5", "0.1", "0.3", "000123.4500",
+                "1e5", "1E-5", "-2.5e+3", "1.7976931348623157E308", "4.9e-324",
+                "9007199254740991", "9007199254740993", "12345678901234567890.123",
+                "0.1234567890123456789012345", "1.0000000000000000000000000001",
+                "Infinity", "-Infinity", "NaN", " 1.5", "1.5d", "0x1p3"
+        };
+
+        for (String value : values) {
+            double expected = Double.parseDouble(value);
+            assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(parse(value)), value);
+        }
+    }
+
+    @Test
+    public void testParseDoubleInvalid() {
+        String[] values = {"", "-", "+", ".", "-.", "1..2", "1.2.3", "--1", "1-", "abc", "1,5", "1e", "e5"};
+
+        for (String value : values) {
+            assertThrows(NumberFormatException.class, () -> Double.parseDouble(value), value);
+            assertThrows(NumberFormatException.class, () -> parse(value), value);
+        }
+    }
+
+    @Test
+    public void testFields() {
+        assertEquals(Arrays.asList("a", "b", "c"), fields("a\tb\tc"));
+        assertEquals(Arrays.asList("a", "", "c"), fields("a\t\tc"));
+        assertEquals(Arrays.asList("", "b"), fields("\tb"));
+        assertEquals(Arrays.asList("a", "b"), fields("a\tb\t\t")); // Trailing empty fields are ignored
+        assertEquals(Arrays.asList(""), fields(""));
+        assertEquals(Arrays.asList(""), fields("\t\t")); // String.split would give no fields
+        assertEquals(Arrays.asList("Stöp", "ā"), fields("Stöp\tā"));
+
+        // Counting must agree with String.split, which the old reader used.
+        for (String line : new String[]{"a\tb\tc", "a\t\tc", "\tb", "a\tb\t\t", ""})
+            assertEquals(line.split("\t").length, tokenizer(line).countFields(), line);
+    }
+
+    @Test
+    public void testFieldPositions() {
+        // Line in the middle of a buffer, the tokenizer must stay inside it.
+        byte[] bytes = "skip\nid\t-1.5\t2\nnext".getBytes(StandardCharsets.UTF_8);
+        TabTokenizer fields = new TabTokenizer();
+        fields.reset(ByteBuffer.wrap(bytes), 5, 15);
+
+        assertEquals(3, fields.countFields());
+        assertTrue(fields.next());
+        assertEquals(5, fields.fieldStart());
+        assertEquals(7, fields.fieldEnd());
+        assertTrue(fields.next());
+        assertEquals(-1.5, fields.parseDouble());
+        assertTrue(fields.next());
+        assertEquals(2, fields.parseDouble());
+        assertFalse(fields.next());
+    }
+
+    @Test
+    public void testStopIdIndex() {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(i, i)));
+        stops.add(new Stop("Stöp", "Unicode", new Location(0, 0)));
+        StopGraph.Builder builder = new StopGraph.Builder(stops);
+        StopIdIndex index = new StopIdIndex(builder);
+
+        for (int i = 0; i < builder.getStopCount(); ++i)
+            assertEquals(i, lookup(index, builder.getStop(i).getId()));
+
+        assertEquals(-1, lookup(index, "S100"));
+        assertEquals(-1, lookup(index, "S"));
+        assertEquals(-1, lookup(index, "S10 "));
+        assertEquals(-1, lookup(index, ""));
+        assertEquals(-1, lookup(index, "Stop"));
+    }
+
+    @Test
+    public void testStopIdIndexEmpty() {
+        StopIdIndex index = new StopIdIndex(new StopGraph.Builder(new ArrayList<>()));
+        assertEquals(-1, lookup(index, "S0"));
+    }
+
+    private static int lookup(StopIdIndex index, String id) {
+        // Surround the ID with other bytes, as it would be in a line of the trips file.
+        byte[] bytes = ("T1\t" + id + "\tS2").getBytes(StandardCharsets.UTF_8);
+        int start = "T1\t".length();
+        return index.get(ByteBuffer.wrap(bytes), start, start + id.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static double parse(String value) {
+        TabTokenizer fields = tokenizer(value + "\tnext");
+        fields.next();
+        return fields.parseDouble();
+    }
+
+    private static List<String> fields(String line) {
+        TabTokenizer fields = tokenizer(line);
+        List<String> result = new ArrayList<>();
+        while (fields.next())
+            result.add(fields.string());
+        return result;
+    }
+
+    private static TabTokenizer tokenizer(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        TabTokenizer fields = new TabTokenizer();
+        fields.reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+        return fields;
+    }
+}
@@ -0,0 +1,80 @@
+package network;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import search.Network;
+import search.QueryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class networkTests {
+    private static Network build(String prefix, int stopCount) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < stopCount; ++i)
+            stops.add(new Stop(prefix + i, prefix + " Street " + i, new Location(i, i % 7)));
+
+        StopGraph.Builder builder = new StopGraph.Builder(stops);
+        for (int i = 0; i + 1 < stopCount; i += 2)
+            builder.addTrip(new Trip(prefix + "T" + i), stops.get(i), stops.get(i + 1));
+        return new Network(builder.build());
+    }
+
+    @Test
+    public void testQueries() {
+        Network network = build("A", 10);
+
+        assertEquals(10, network.getStopCount());
+        assertEquals(5, network.getTripCount());
+        assertEquals(5, network.getConnectionCount());
+        assertEquals("A Street 3", network.getStop("A3").getName());
+        assertEquals(2, network.getTrip("AT2").getStops().size());
+        assertNull(network.getStop("B3"));
+
+        assertEquals("A4", network.searchClosest(new Location(4.1, 4)).getId());
+        assertEquals(3, network.searchNearest(new Location(4, 4), 3).size());
+        assertEquals("A7", network.searchPrefix("a street 7", 5).get(0).getStop().getId());
+        assertEquals(1, network.searchWords("7 street", 5).size());
+    }
+
+    @Test
+    public void testConcurrentQueriesDuringSwaps() throws Exception {
+        Network first = build("A", 500);
+        Network second = build("B", 500);
+        QueryService service = new QueryService(first);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int thread = 0; thread < 3; ++thread) {
+            readers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    // Every search on one snapshot must agree with that snapshot.
+                    Network network = service.getNetwork();
+                    Stop closest = network.searchClosest(new Location(random.nextDouble(500), random.nextDouble(7)));
+                    assertSame(closest, network.getStop(closest.getId()));
+                    assertFalse(network.searchPrefix(closest.getId(), 1).isEmpty());
+                }
+                return null;
+            }));
+        }
+
+        for (int i = 0; i < 200; ++i)
+            service.swap(i % 2 == 0 ? second : first);
+
+        running.set(false);
+        for (Future<?> reader : readers)
+            reader.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertSame(first, service.getNetwork());
+    }
+}
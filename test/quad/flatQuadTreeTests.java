@@ -0,0 +1,165 @@
+package quad;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import org.junit.jupiter.api.Test;
+import search.quad.FlatQuadTree;
+import search.quad.QuadSearcher;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class flatQuadTreeTests {
+    @Test
+    public void testMatchesQuadSearcher() {
+        Random random = new Random(3);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(random.nextDouble() * 50 - 25, random.nextDouble() * 50 - 25)));
+
+        StopGraph graph = new StopGraph.Builder(stops).build();
+        QuadSearcher searcher = new QuadSearcher(graph);
+
+        for (int leafSize : new int[]{1, 4, 32}) {
+            FlatQuadTree tree = new FlatQuadTree(graph, leafSize);
+            assertEquals(stops.size(), tree.size());
+
+            for (int i = 0; i < 200; ++i) {
+                double x = random.nextDouble() * 70 - 35;
+                double y = random.nextDouble() * 70 - 35;
+                assertEquals(searcher.searchClosest(x, y), tree.searchClosest(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingle() {
+        Random random = new Random(5);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 3000; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(random.nextDouble() * 50 - 25, random.nextDouble() * 50 - 25)));
+
+        StopGraph graph = new StopGraph.Builder(stops).build();
+        FlatQuadTree tree = new FlatQuadTree(graph);
+
+        // Enough queries for several chunks, some outside the tree's bounds.
+        double[] xs = new double[5000];
+        double[] ys = new double[xs.length];
+        for (int i = 0; i < xs.length; ++i) {
+            xs[i] = random.nextDouble() * 70 - 35;
+            ys[i] = random.nextDouble() * 70 - 35;
+        }
+
+        int[] closest = tree.searchClosest(xs, ys);
+        assertEquals(xs.length, closest.length);
+        for (int i = 0; i < xs.length; ++i) {
+            Location query = new Location(xs[i], ys[i]);
+            assertEquals(tree.searchClosest(xs[i], ys[i]).getLocation().distance(query),
+                    graph.getStop(closest[i]).getLocation().distance(query), 1e-12);
+        }
+
+        assertEquals(-1, new FlatQuadTree(new StopGraph.Builder(Collections.emptyList()).build()).searchClosest(new double[]{0}, new double[]{0})[0]);
+        assertThrows(IllegalArgumentException.class, () -> tree.searchClosest(new double[2], new double[1]));
+    }
+
+    @Test
+    public void testNearestMatchesQuadSearcher() {
+        Random random = new Random(7);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(random.nextDouble() * 50 - 25, random.nextDouble() * 50 - 25)));
+
+        StopGraph graph = new StopGraph.Builder(stops).build();
+        QuadSearcher searcher = new QuadSearcher(graph);
+
+        for (int leafSize : new int[]{1, 8, 32}) {
+            FlatQuadTree tree = new FlatQuadTree(graph, leafSize);
+
+            for (int i = 0; i < 100; ++i) {
+                double x = random.nextDouble() * 70 - 35;
+                double y = random.nextDouble() * 70 - 35;
+                int k = 1 + random.nextInt(40);
+                assertEquals(searcher.searchNearest(new Point2D.Double(x, y), k), tree.searchNearest(x, y, k));
+            }
+        }
+
+        FlatQuadTree tree = new FlatQuadTree(graph);
+        assertEquals(stops.size(), tree.searchNearest(0, 0, stops.size() + 10).size());
+        assertTrue(tree.searchNearest(0, 0, 0).isEmpty());
+        assertTrue(new FlatQuadTree(new StopGraph.Builder(Collections.emptyList()).build()).searchNearest(0, 0, 5).isEmpty());
+    }
+
+    @Test
+    public void testAreaSearches() {
+        Random random = new Random(9);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(random.nextDouble() * 20, random.nextDouble() * 20)));
+
+        StopGraph graph = new StopGraph.Builder(stops).build();
+        QuadSearcher searcher = new QuadSearcher(graph);
+        FlatQuadTree tree = new FlatQuadTree(graph, 4);
+
+        Point2D location = new Point2D.Double(7.3, 12.1);
+        assertEquals(searcher.searchWithinRadius(location, 2.5), tree.searchWithinRadius(location.getX(), location.getY(), 2.5));
+
+        Set<Integer> expected = new HashSet<>();
+        searcher.searchWithinRectangle(5, 2, 9, 11, 0, (stop, cluster) -> expected.add(stop));
+        Set<Integer> found = new HashSet<>();
+        tree.searchWithinRectangle(5, 2, 9, 11, 0, (stop, cluster) -> {
+            assertFalse(cluster);
+            assertTrue(found.add(stop));
+        });
+        assertEquals(expected, found);
+
+        // Clustered, one stop is visited for each small node instead of every stop.
+        List<Integer> clusters = new ArrayList<>();
+        tree.searchWithinRectangle(0, 0, 20, 20, 2, (stop, cluster) -> clusters.add(stop));
+        assertTrue(clusters.size() < stops.size() / 4);
+    }
+
+    @Test
+    public void testNaNCoordinates() {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 20; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(i, i)));
+
+        FlatQuadTree tree = new FlatQuadTree(new StopGraph.Builder(stops).build(), 2);
+        FlatQuadTree empty = new FlatQuadTree(new StopGraph.Builder(Collections.emptyList()).build());
+
+        // Single and batch searches both reject NaN, even when the tree is empty.
+        for (FlatQuadTree t : new FlatQuadTree[]{tree, empty}) {
+            assertThrows(IllegalArgumentException.class, () -> t.searchClosest(Double.NaN, 0));
+            assertThrows(IllegalArgumentException.class, () -> t.searchClosest(0, Double.NaN));
+            assertThrows(IllegalArgumentException.class, () -> t.searchNearest(Double.NaN, 0, 3));
+            assertThrows(IllegalArgumentException.class, () -> t.searchClosest(new double[]{1, Double.NaN}, new double[]{1, 1}));
+            assertThrows(IllegalArgumentException.class, () -> t.searchClosest(new double[]{1, 1}, new double[]{Double.NaN, 1}));
+        }
+    }
+
+    @Test
+    public void testDuplicateLocations() {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 20; ++i)
+            stops.add(new Stop("S" + i, "Stop " + i, new Location(1, 1)));
+        stops.add(new Stop("F", "Far", new Location(9, 9)));
+
+        FlatQuadTree tree = new FlatQuadTree(new StopGraph.Builder(stops).build(), 2);
+
+        assertEquals("F", tree.searchClosest(8, 8).getId());
+        assertEquals(1, tree.searchClosest(0, 0).getLocation().x);
+        assertNull(new FlatQuadTree(new StopGraph.Builder(Collections.emptyList()).build()).searchClosest(0, 0));
+    }
+}
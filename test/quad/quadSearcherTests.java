@@ -0,0 +1,91 @@
+package quad;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import org.junit.jupiter.api.Test;
+import search.quad.QuadSearcher;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class quadSearcherTests {
+    private final StopGraph graph;
+    private final List<Stop> stops;
+    private final QuadSearcher searcher;
+
+    public quadSearcherTests() {
+        Random random = new Random(1);
+        List<Stop> unattached = new ArrayList<>();
+        for (int i = 0; i < 500; ++i)
+            unattached.add(new Stop("S" + i, "Stop " + i, new Location(random.nextDouble() * 20, random.nextDouble() * 20)));
+
+        graph = new StopGraph.Builder(unattached).build();
+        stops = graph.getStops();
+        searcher = new QuadSearcher(graph);
+    }
+
+    private List<Stop> bruteForce(Point2D location) {
+        return stops.stream()
+                .sorted(Comparator.comparingDouble(s -> location.distance(s.getLocation().x, s.getLocation().y)))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSearchClosest() {
+        Point2D location = new Point2D.Double(7.3, 12.1);
+
+        assertEquals(bruteForce(location).get(0), searcher.searchClosest(location));
+        assertEquals(bruteForce(location).get(0), searcher.searchClosestElimination(location));
+    }
+
+    @Test
+    public void testSearchNearest() {
+        Point2D location = new Point2D.Double(3.5, 18.2);
+
+        assertEquals(bruteForce(location).subList(0, 10), searcher.searchNearest(location, 10));
+        assertEquals(stops.size(), searcher.searchNearest(location, 10000).size());
+    }
+
+    @Test
+    public void testSearchWithinRadius() {
+        Point2D location = new Point2D.Double(10, 10);
+        List<Stop> expected = bruteForce(location).stream()
+                .filter(s -> location.distance(s.getLocation().x, s.getLocation().y) <= 2.5)
+                .collect(Collectors.toList());
+
+        assertEquals(expected, searcher.searchWithinRadius(location, 2.5));
+    }
+
+    @Test
+    public void testSearchOutsideTree() {
+        Point2D location = new Point2D.Double(-50, 100);
+
+        assertEquals(bruteForce(location).subList(0, 3), searcher.searchNearest(location, 3));
+        assertEquals(0, searcher.searchWithinRadius(location, 1).size());
+    }
+
+    @Test
+    public void testSearchWithinRectangle() {
+        Set<Stop> expected = stops.stream()
+                .filter(s -> s.getLocation().x >= 5 && s.getLocation().x <= 9 && s.getLocation().y >= 2 && s.getLocation().y <= 11)
+                .collect(Collectors.toSet());
+
+        Set<Stop> found = new HashSet<>();
+        searcher.searchWithinRectangle(5, 2, 9, 11, 0, (stop, cluster) -> {
+            assertFalse(cluster);
+            assertTrue(found.add(graph.getStop(stop)));
+        });
+        assertEquals(expected, found);
+
+        // Clustered, one stop is visited for each small quad instead of every stop.
+        List<Integer> clusters = new ArrayList<>();
+        searcher.searchWithinRectangle(0, 0, 20, 20, 5, (stop, cluster) -> clusters.add(stop));
+        assertTrue(clusters.size() < stops.size() / 4);
+    }
+}
@@ -0,0 +1,114 @@
+package route;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import search.route.Journey;
+import search.route.RaptorSearcher;
+import search.route.RouteSearcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class routeTests {
+    private final Stop a = new Stop("A", "Stop A", new Location(0, 0));
+    private final Stop b = new Stop("B", "Stop B", new Location(1, 0));
+    private final Stop c = new Stop("C", "Stop C", new Location(2, 0));
+    private final Stop d = new Stop("D", "Stop D", new Location(2, 1));
+    private final Stop e = new Stop("E", "Stop E", new Location(5, 5));
+
+    public routeTests() {
+        new StopGraph.Builder(Arrays.asList(a, b, c, d, e))
+                .addTrip(new Trip("t1"), a, b, c)
+                .addTrip(new Trip("t2"), c, d)
+                .addTrip(new Trip("t3"), a, e, d) // Long way round
+                .build();
+    }
+
+    @Test
+    public void testRouteWithTransfer() {
+        Journey journey = new RouteSearcher().searchRoute(a, d);
+
+        assertNotNull(journey);
+        assertEquals(Arrays.asList(a, b, c, d), journey.getStops());
+        assertEquals(Arrays.asList(new Trip("t1"), new Trip("t2")), journey.getTrips());
+        assertEquals(Arrays.asList(c), journey.getTransferStops());
+        assertEquals(3, journey.getDistance(), 1e-9);
+    }
+
+    @Test
+    public void testTransferPenaltyAvoidsChange() {
+        // Changing trips costs more than the detour so the direct trip is taken.
+        Journey journey = new RouteSearcher(100).searchRoute(a, d);
+
+        assertEquals(Arrays.asList(a, e, d), journey.getStops());
+        assertEquals(0, journey.getTransferCount());
+    }
+
+    @Test
+    public void testNoRoute() {
+        assertNull(new RouteSearcher().searchRoute(d, a));
+    }
+
+    @Test
+    public void testSameStop() {
+        Journey journey = new RouteSearcher().searchRoute(b, b);
+
+        assertTrue(journey.getLegs().isEmpty());
+        assertEquals(0, journey.getDistance());
+    }
+
+    @Test
+    public void testStopTrips() {
+        assertEquals(Arrays.asList(new Trip("t1"), new Trip("t3")), a.getTrips());
+        assertEquals(Arrays.asList(new Trip("t1"), new Trip("t2")), c.getTrips());
+        assertEquals(Arrays.asList(new Trip("t2"), new Trip("t3")), d.getTrips());
+
+        // A trip through a stop twice is only listed once.
+        Stop f = new Stop("F", "Stop F", new Location(9, 9));
+        StopGraph loop = new StopGraph.Builder(Arrays.asList(a, f))
+                .addTrip(new Trip("loop"), a, f, a)
+                .build();
+        assertEquals(Arrays.asList(new Trip("loop")), loop.getStop(0).getTrips());
+
+        // A stop already in a graph is copied, the first graph is unchanged.
+        assertNotSame(a, loop.getStop(0));
+        assertSame(f, loop.getStop(1));
+        assertSame(loop, loop.getStop(0).getGraph());
+        assertEquals(Arrays.asList(new Trip("t1"), new Trip("t3")), a.getTrips());
+    }
+
+    @Test
+    public void testParetoJourneys() {
+        // A direct trip through three stops, or two trips that skip them.
+        Stop p = new Stop("P", "Stop P", new Location(0, 0));
+        Stop q = new Stop("Q", "Stop Q", new Location(4, 0));
+        Stop x = new Stop("X", "Stop X", new Location(1, 1));
+        Stop y = new Stop("Y", "Stop Y", new Location(2, 1));
+        Stop z = new Stop("Z", "Stop Z", new Location(3, 1));
+        Stop m = new Stop("M", "Stop M", new Location(2, 0));
+
+        new StopGraph.Builder(Arrays.asList(p, q, x, y, z, m))
+                .addTrip(new Trip("slow"), p, x, y, z, q)
+                .addTrip(new Trip("slow2"), p, x, y, z, q) // Same route
+                .addTrip(new Trip("first"), p, m)
+                .addTrip(new Trip("second"), m, q)
+                .build();
+
+        List<Journey> journeys = new RaptorSearcher().searchPareto(p, q);
+
+        assertEquals(2, journeys.size());
+        assertEquals(Arrays.asList(p, x, y, z, q), journeys.get(0).getStops());
+        assertEquals(0, journeys.get(0).getTransferCount());
+        assertEquals(Arrays.asList(p, m, q), journeys.get(1).getStops());
+        assertEquals(Arrays.asList(new Trip("first"), new Trip("second")), journeys.get(1).getTrips());
+        assertEquals(4, journeys.get(1).getDistance(), 1e-9);
+
+        assertTrue(new RaptorSearcher().searchPareto(q, p).isEmpty());
+        assertEquals(1, new RaptorSearcher(0).searchPareto(p, q).size());
+    }
+}
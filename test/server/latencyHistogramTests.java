@@ -0,0 +1,98 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class latencyHistogramTests {
+    @Test
+    public void testBucketEdges() {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(last));
+
+        // Buckets are contiguous: each starts one after the end of the previous one.
+        for (int i = 0; i < last; ++i) {
+            long highest = LatencyHistogram.highestValue(i);
+            assertEquals(i, LatencyHistogram.index(highest), "highest of " + i);
+            assertEquals(i + 1, LatencyHistogram.index(highest + 1), "after " + i);
+        }
+
+        // Small values are exact, larger ones within 1/128 of the bucket's highest value.
+        for (long value = 0; value < 256; ++value)
+            assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram.index(value)));
+
+        for (long value : new long[]{256, 257, 511, 512, 1000, 123_456, 1L << 40, (1L << 40) + 1, Long.MAX_VALUE / 3}) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertTrue(highest >= value, Long.toString(value));
+            assertTrue(highest - value <= value / 128, Long.toString(value));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+
+        for (long value = 1; value <= 10_000; ++value)
+            histogram.record(value);
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 1e-9);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(10_000, histogram.getValueAtPercentile(100));
+
+        for (double percentile : new double[]{10, 50, 90, 99, 99.9}) {
+            double expected = percentile * 100;
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * (1 + 1.0 / 128), percentile + ": " + actual);
+        }
+
+        // A percentile is never more than the largest value, even when its bucket is wider.
+        LatencyHistogram single = new LatencyHistogram();
+        single.record(1000);
+        assertEquals(1000, single.getValueAtPercentile(50));
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.record(-1));
+    }
+
+    @Test
+    public void testRecordCorrected() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // 250 at an interval of 60 held up queries that would have taken 190, 130 and 70.
+        histogram.recordCorrected(250, 60);
+        assertEquals(4, histogram.getCount());
+        assertEquals(250, histogram.getMax());
+        assertEquals(160, histogram.getMean(), 1e-9);
+        assertEquals(70, histogram.getValueAtPercentile(25));
+        assertEquals(130, histogram.getValueAtPercentile(50));
+
+        // Nothing is added when the query was on time, or there is no interval.
+        histogram.clear();
+        histogram.recordCorrected(200, 300);
+        histogram.recordCorrected(300, 300);
+        histogram.recordCorrected(5000, 0);
+        assertEquals(3, histogram.getCount());
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        first.record(20);
+        second.record(3000);
+
+        first.add(second);
+        assertEquals(3, first.getCount());
+        assertEquals(3000, first.getMax());
+        assertEquals(20, first.getValueAtPercentile(50));
+        assertEquals(3000, first.getValueAtPercentile(100));
+
+        first.clear();
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getMax());
+        assertEquals(0, first.getMean());
+    }
+}
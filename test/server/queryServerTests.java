@@ -0,0 +1,84 @@
+package server;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import search.Network;
+import search.QueryService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class queryServerTests {
+    private QueryServer server;
+
+    @BeforeEach
+    public void start() throws IOException {
+        Stop a = new Stop("A", "Main Street", new Location(0, 0));
+        Stop b = new Stop("B", "Market \"Square\"", new Location(3, 4));
+        StopGraph graph = new StopGraph.Builder(Arrays.asList(a, b))
+                .addTrip(new Trip("t1"), a, b)
+                .build();
+
+        server = new QueryServer(new QueryService(new Network(graph)), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        URL url = new URL("http", "localhost", server.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        assertEquals(expectedStatus, connection.getResponseCode());
+
+        try (InputStream in = expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testEndpoints() throws IOException {
+        assertEquals("{\"stops\":2,\"trips\":1,\"connections\":1,",
+                get("/status", 200).substring(0, 37));
+        assertEquals("{\"query\":\"mar\",\"stops\":[{\"id\":\"B\",\"name\":\"Market \\\"Square\\\"\",\"x\":3.0,\"y\":4.0}]}",
+                get("/stops/search?q=mar", 200));
+        assertEquals("{\"stops\":[{\"id\":\"B\",\"name\":\"Market \\\"Square\\\"\",\"x\":3.0,\"y\":4.0,\"distance\":1.0}]}",
+                get("/stops/nearest?x=3&y=3", 200));
+        assertEquals("{\"id\":\"A\",\"name\":\"Main Street\",\"x\":0.0,\"y\":0.0,\"trips\":[\"t1\"]}",
+                get("/stops/A", 200));
+        assertEquals("{\"id\":\"t1\",\"stops\":[{\"id\":\"A\",\"name\":\"Main Street\",\"x\":0.0,\"y\":0.0}," +
+                        "{\"id\":\"B\",\"name\":\"Market \\\"Square\\\"\",\"x\":3.0,\"y\":4.0}]}",
+                get("/trips/t1", 200));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertEquals("{\"error\":\"Stop not found.\"}", get("/stops/Z", 404));
+        assertEquals("{\"error\":\"Missing query parameter q.\"}", get("/stops/search", 400));
+        assertEquals("{\"error\":\"Parameter x must be a number.\"}", get("/stops/nearest?x=a&y=1", 400));
+        assertEquals("{\"error\":\"Parameter count must be between 1 and 100.\"}", get("/stops/search?q=m&count=0", 400));
+    }
+
+    @Test
+    public void testJsonEscaping() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginArray().value("a\\b\n\u0001").value(Double.NaN).beginObject().endObject().endArray();
+        assertEquals("[\"a\\\\b\\n\\u0001\",null,{}]", out.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package token;
+
+import common.Location;
+import common.Stop;
+import common.StopGraph;
+import common.Trip;
+import org.junit.jupiter.api.Test;
+import search.token.TokenIndex;
+import search.trie.PrefixMatch;
+import search.trie.PrefixScore;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class tokenIndexTests {
+    private static final String[] WORDS = {"casuarina", "interchange", "shops", "parap", "road", "park", "school", "stuart", "street"};
+
+    private static Set<String> ids(Collection<PrefixMatch> matches) {
+        return matches.stream().map(m -> m.getStop().getId()).collect(Collectors.toSet());
+    }
+
+    private static Set<String> bruteForce(Collection<Stop> stops, String query) {
+        String[] words = TokenIndex.tokenize(query);
+        return stops.stream()
+                .filter(s -> Arrays.stream(words).allMatch(w ->
+                        Arrays.stream(TokenIndex.tokenize(s.getName())).anyMatch(n -> n.startsWith(w))))
+                .map(Stop::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testTokenize() {
+        assertArrayEquals(new String[]{"casuarina", "interchange", "bay", "2"}, TokenIndex.tokenize("Casuarina Interchange - Bay 2, bay"));
+        assertEquals(0, TokenIndex.tokenize(" -- ").length);
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(8);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 1 + random.nextInt(3); j > 0; --j)
+                name.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            stops.add(new Stop("S" + i, name.toString().trim(), new Location(i, 0)));
+        }
+
+        TokenIndex index = new TokenIndex(stops, m -> m.getStop().getLocation().x);
+
+        for (String query : new String[]{"inter", "Interchange", "s", "st", "park road", "p r", "shops casuarina", "casuarinas", "s p i"}) {
+            Set<String> expected = bruteForce(stops, query);
+            assertEquals(expected, ids(index.search(query)), query);
+
+            // The ranked search returns the matching stops with the largest x first.
+            List<String> top = index.search(query, 5).stream().map(m -> m.getStop().getId()).collect(Collectors.toList());
+            List<String> expectedTop = stops.stream()
+                    .filter(s -> expected.contains(s.getId()))
+                    .sorted(Comparator.comparingDouble((Stop s) -> s.getLocation().x).reversed())
+                    .limit(5)
+                    .map(Stop::getId)
+                    .collect(Collectors.toList());
+            assertEquals(expectedTop, top, query);
+        }
+    }
+
+    @Test
+    public void testPopularityRanking() {
+        Stop quiet = new Stop("S1", "Quiet Interchange", new Location(0, 0));
+        Stop busy = new Stop("S2", "Busy Interchange", new Location(1, 0));
+        Stop other = new Stop("S3", "Other Stop", new Location(2, 0));
+        StopGraph graph = new StopGraph.Builder(Arrays.asList(quiet, busy, other))
+                .addTrip(new Trip("t1"), quiet, other)
+                .addTrip(new Trip("t2"), busy, other)
+                .addTrip(new Trip("t3"), other, busy)
+                .build();
+
+        // Scored once attached to the graph, so the stop with the most trips ranks first.
+        TokenIndex index = new TokenIndex(graph.getStops(), PrefixScore.POPULARITY);
+        assertEquals(Arrays.asList("S2", "S1"), index.search("interchange", 2).stream()
+                .map(m -> m.getStop().getId()).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,133 @@
+package trie;
+
+import common.Location;
+import common.Stop;
+import org.junit.jupiter.api.Test;
+import search.trie.PrefixMatch;
+import search.trie.PrefixSearcher;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class prefixSearcherTests {
+    private final List<Stop> stops = new ArrayList<>(Arrays.asList(
+            new Stop("S1", "Casuarina Interchange", new Location(0, 0)),
+            new Stop("S2", "Casuarina Shops", new Location(1, 0)),
+            new Stop("S3", "Cas", new Location(2, 0)),
+            new Stop("S10", "Parap Road", new Location(3, 0)),
+            new Stop("S11", "Parap", new Location(4, 0))));
+
+    private static Set<String> tokens(Collection<PrefixMatch> matches) {
+        return matches.stream().map(PrefixMatch::getTokenMatched).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testSearchPrefix() {
+        PrefixSearcher searcher = new PrefixSearcher(stops);
+
+        assertEquals(Set.of("Casuarina Interchange", "Casuarina Shops"), tokens(searcher.searchPrefix("CASUA")));
+        assertEquals(Set.of("Casuarina Interchange", "Casuarina Shops", "Cas"), tokens(searcher.searchPrefix("ca")));
+        assertEquals(Set.of("S1", "S2", "S3", "S10", "S11"), tokens(searcher.searchPrefix("s")));
+        assertTrue(searcher.searchPrefix("casx").isEmpty());
+        assertTrue(searcher.searchPrefix("").isEmpty());
+    }
+
+    @Test
+    public void testExactMatch() {
+        PrefixSearcher searcher = new PrefixSearcher(stops);
+
+        // An exact match hides the longer names that it is a prefix of.
+        assertEquals(Set.of("Cas"), tokens(searcher.searchPrefix("cas")));
+        assertEquals(Set.of("Parap"), tokens(searcher.searchPrefix("Parap")));
+        assertEquals(Set.of("S1"), tokens(searcher.searchPrefix("S1")));
+    }
+
+    @Test
+    public void testSearchTop() {
+        List<Stop> many = new ArrayList<>();
+        for (int i = 0; i < 100; ++i)
+            many.add(new Stop("T" + i, "Stop " + "x".repeat(i % 37), new Location(i, 0)));
+
+        // Rank the longest names first, so the ranking differs from key order.
+        PrefixSearcher searcher = new PrefixSearcher(many, m -> m.getTokenMatched().length());
+        List<String> expected = many.stream()
+                .map(Stop::getName)
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .collect(Collectors.toList());
+
+        for (int count : new int[]{1, 5, 16, 40}) {
+            List<String> top = searcher.searchPrefix("stop", count).stream()
+                    .map(PrefixMatch::getTokenMatched)
+                    .collect(Collectors.toList());
+            assertEquals(expected.subList(0, count), top);
+        }
+
+        assertEquals(100, searcher.searchPrefix("stop", 1000).size());
+        assertEquals(List.of("Stop "), searcher.searchPrefix("stop ", 5).stream()
+                .map(PrefixMatch::getTokenMatched).distinct().collect(Collectors.toList()));
+    }
+
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); ++i)
+            for (int j = 0; j <= b.length(); ++j)
+                d[i][j] = i == 0 ? j : j == 0 ? i : Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+        return d[a.length()][b.length()];
+    }
+
+    private static int prefixDistance(String query, String token) {
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i <= token.length(); ++i)
+            best = Math.min(best, distance(query, token.substring(0, i).toLowerCase()));
+        return best;
+    }
+
+    @Test
+    public void testSearchFuzzy() {
+        PrefixSearcher searcher = new PrefixSearcher(stops);
+
+        assertEquals(Set.of("Casuarina Interchange", "Casuarina Shops"), tokens(searcher.searchFuzzy("casaurina", 2, 10)));
+        assertEquals(Set.of("Parap Road", "Parap"), tokens(searcher.searchFuzzy("prap", 1, 10)));
+        assertTrue(searcher.searchFuzzy("prap", 0, 10).isEmpty());
+
+        // Closest matches come first.
+        assertEquals("Parap", searcher.searchFuzzy("parapx", 2, 10).get(0).getTokenMatched());
+        assertEquals(1, searcher.searchFuzzy("parapx", 2, 1).size());
+    }
+
+    @Test
+    public void testSearchFuzzyMatchesBruteForce() {
+        Random random = new Random(5);
+        String letters = "abcde ";
+        List<Stop> many = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 1 + random.nextInt(8); j > 0; --j)
+                name.append(letters.charAt(random.nextInt(letters.length())));
+            many.add(new Stop("id" + i, name.toString(), new Location(i, 0)));
+        }
+
+        PrefixSearcher searcher = new PrefixSearcher(many, m -> 0);
+
+        for (String query : new String[]{"abc", "ba d", "eeac", "dd", "cabde"}) {
+            for (int maxDistance = 0; maxDistance <= 2; ++maxDistance) {
+                List<PrefixMatch> result = searcher.searchFuzzy(query, maxDistance, 10000);
+                Set<String> expected = new HashSet<>();
+                for (Stop stop : many)
+                    for (String token : new String[]{stop.getId(), stop.getName()})
+                        if (prefixDistance(query, token) <= maxDistance)
+                            expected.add(token + "/" + stop.getId());
+
+                assertEquals(expected, result.stream().map(m -> m.getTokenMatched() + "/" + m.getStop().getId()).collect(Collectors.toSet()));
+
+                // Results are ordered by distance.
+                for (int i = 1; i < result.size(); ++i)
+                    assertTrue(prefixDistance(query, result.get(i - 1).getTokenMatched()) <= prefixDistance(query, result.get(i).getTokenMatched()));
+            }
+        }
+    }
+}